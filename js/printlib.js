@@ -1592,6 +1592,14 @@ var printlib = (function() {
          *   @param {number} [data.options.x] Optional with <code>[raw]</code> type + <code>[image]</code> format. The X position of the image.
          *   @param {number} [data.options.y] Optional with <code>[raw]</code> type + <code>[image]</code> format. The Y position of the image.
          *   @param {string|number} [data.options.dotDensity] Optional with <code>[raw]</code> type + <code>[image]</code> format.
+         *   @param {string} [data.options.imageMode="column"] Optional with <code>[raw]</code> type + <code>[image]</code> format + <code>ESCPOS</code> language.
+         *       Image command used, valid values are <code>[column* | raster | graphics]</code>.
+         *   @param {string} [data.options.dither="none"] Optional with <code>[raw]</code> type + <code>[image | pdf | html]</code> formats.
+         *       Dithering used in place of a fixed threshold, valid values are <code>[none* | floyd-steinberg | atkinson | bayer | blue-noise]</code>.
+         *   @param {string} [data.options.compression="none"] Optional with <code>[raw]</code> type + <code>[image]</code> format + <code>ZPL</code> language.
+         *       Graphic field compression, valid values are <code>[none* | ascii | b64 | z64]</code>.
+         *   @param {boolean} [data.options.storeGraphic=false] Optional with <code>[raw]</code> type + <code>[image | pdf | html]</code> formats + <code>ZPL</code> language.
+         *       Stores the graphic in printer memory the first time it's sent, and recalls it with <code>^XG</code> afterwards.
          *   @param {number} [data.precision=128] Optional with <code>[raw]</code> type <code>[image]</code> format. Bit precision of the ribbons.
          *   @param {boolean|string|Array<Array<number>>} [data.options.overlay=false] Optional with <code>[raw]</code> type <code>[image]</code> format.
          *       Boolean sets entire layer, string sets mask image, Array sets array of rectangles in format <code>[x1,y1,x2,y2]</code>.
@@ -1699,6 +1707,53 @@ var printlib = (function() {
         },
 
 
+        /**
+         * Calls related to label templates, printed by sending only the values that change between labels.
+         * @namespace printlib.templates
+         */
+        templates: {
+            /**
+             * Registers a template for this connection, replacing any registered under the same name.
+             * Templates can also be shared by every connection as files in the <code>templates</code> folder of the shared directory.
+             *
+             * @param {string} name Name of the template. Letters, digits, <code>_</code>, <code>.</code> and <code>-</code>, such as <code>"shipping.zpl"</code>.
+             * @param {string} data Raw commands, with <code>{{field}}</code> in place of each value filled in per record.
+             *
+             * @returns {Promise<null|Error>}
+             *
+             * @memberof printlib.templates
+             */
+            register: function(name, data) {
+                return _printlib.websocket.dataPromise('templates.register', { name: name, data: data });
+            },
+
+            /**
+             * Prints a registered or shared template once per record, with each <code>{{field}}</code> replaced by the record's value.
+             * Values are encoded with the config's <code>encoding</code>, like raw <code>[plain]</code> commands.
+             *
+             * @param {Object<Config>} config Previously created config object.
+             * @param {string} name Name of the template.
+             * @param {Array<Object>} records Values for each label, such as <code>[{ name: "Box 1", sku: "A100" }]</code>. Every field must be present.
+             * @param {string} [signature] Pre-signed signature of the JSON string containing <code>call</code>, <code>params</code>, and <code>timestamp</code>.
+             * @param {number} [signingTimestamp] Required with <code>signature</code>. Timestamp used with pre-signed content.
+             *
+             * @returns {Promise<null|Error>}
+             *
+             * @see printlib.templates.register
+             *
+             * @memberof printlib.templates
+             */
+            print: function(config, name, records, signature, signingTimestamp) {
+                var params = {
+                    printer: config.getPrinter(),
+                    options: config.getOptions(),
+                    name: name,
+                    records: records
+                };
+                return _printlib.websocket.dataPromise('templates.print', params, signature, signingTimestamp);
+            }
+        },
+
         /**
          * Calls related to interaction with serial ports.
          * @namespace printlib.serial
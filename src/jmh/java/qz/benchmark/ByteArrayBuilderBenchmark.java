@@ -0,0 +1,73 @@
+package qz.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import qz.common.ByteArrayBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulating raw commands, as {@code PrintRaw.parseData} does for each data element, compared to the boxed
+ * {@code List<Byte>} builder it replaced
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ByteArrayBuilderBenchmark {
+
+    @Param({"64", "4096"})
+    public int chunkSize;
+
+    @Param({"1000"})
+    public int chunks;
+
+    private byte[] chunk;
+    private String text;
+
+    @Setup
+    public void setup() {
+        chunk = new byte[chunkSize];
+        for(int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte)('A' + i % 26);
+        }
+        text = new String(chunk, StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public byte[] appendBytes() {
+        ByteArrayBuilder builder = new ByteArrayBuilder();
+        for(int i = 0; i < chunks; i++) {
+            builder.append(chunk);
+        }
+        return builder.getByteArray();
+    }
+
+    @Benchmark
+    public byte[] appendStrings() throws Exception {
+        ByteArrayBuilder builder = new ByteArrayBuilder();
+        for(int i = 0; i < chunks; i++) {
+            builder.append(text, StandardCharsets.UTF_8);
+        }
+        return builder.getByteArray();
+    }
+
+    @Benchmark
+    public byte[] legacyAppendBytes() {
+        LegacyByteArrayBuilder builder = new LegacyByteArrayBuilder();
+        for(int i = 0; i < chunks; i++) {
+            builder.append(chunk);
+        }
+        return builder.getByteArray();
+    }
+
+    @Benchmark
+    public byte[] legacyAppendStrings() throws Exception {
+        LegacyByteArrayBuilder builder = new LegacyByteArrayBuilder();
+        for(int i = 0; i < chunks; i++) {
+            builder.append(text, StandardCharsets.UTF_8);
+        }
+        return builder.getByteArray();
+    }
+
+}
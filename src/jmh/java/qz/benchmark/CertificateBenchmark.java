@@ -0,0 +1,37 @@
+package qz.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import qz.auth.Certificate;
+import qz.auth.CertificateCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating the certificate a connecting site sends, decoding and chaining it every time compared to reusing the
+ * result cached for the same certificate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CertificateBenchmark {
+
+    private String pem;
+
+    @Setup
+    public void setup() throws Exception {
+        pem = Fixtures.certificate();
+    }
+
+    @Benchmark
+    public Certificate cold() throws Exception {
+        CertificateCache.invalidateAll();
+        return CertificateCache.get(pem);
+    }
+
+    @Benchmark
+    public Certificate cached() throws Exception {
+        return CertificateCache.get(pem);
+    }
+
+}
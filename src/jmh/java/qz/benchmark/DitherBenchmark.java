@@ -0,0 +1,43 @@
+package qz.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.action.raw.Dither;
+import qz.printer.action.raw.ImageWrapper;
+import qz.printer.action.raw.MonochromeImage;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a 300 dpi 4x6 inch image to monochrome with each dithering option, compared to the fixed luma threshold
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DitherBenchmark {
+
+    @Param({"NONE", "FLOYD_STEINBERG", "ATKINSON", "BAYER", "BLUE_NOISE"})
+    public Dither dither;
+
+    @Param({"photo", "label"})
+    public String image;
+
+    private BufferedImage source;
+
+    @Setup
+    public void setup() {
+        source = "label".equals(image)? Fixtures.label(300, BufferedImage.TYPE_INT_ARGB):Fixtures.photo(300);
+        // generate the blue noise texture outside of the measurement
+        MonochromeImage.convert(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), Dither.BLUE_NOISE, false);
+    }
+
+    @Benchmark
+    public MonochromeImage convert() {
+        if (dither == Dither.NONE) {
+            return MonochromeImage.convert(source, ImageWrapper.CHECK_LUMA, 127, 127, false);
+        }
+        return MonochromeImage.convert(source, dither, false);
+    }
+
+}
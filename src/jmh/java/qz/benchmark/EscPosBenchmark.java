@@ -0,0 +1,40 @@
+package qz.benchmark;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.action.raw.EscPosRasterEncoder;
+import qz.printer.action.raw.ImageWrapper;
+import qz.printer.action.raw.LanguageType;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a 203 dpi 4x6 inch label to ESC/POS commands as {@code ESC *} column slices, compared to banded raster graphics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EscPosBenchmark {
+
+    @Param({"COLUMN", "RASTER", "GRAPHICS"})
+    public String imageMode;
+
+    private BufferedImage label;
+    private JSONObject opt;
+
+    @Setup
+    public void setup() {
+        label = Fixtures.label(203, BufferedImage.TYPE_INT_ARGB);
+        opt = new JSONObject();
+    }
+
+    @Benchmark
+    public byte[] imageCommand() throws Exception {
+        ImageWrapper iw = new ImageWrapper(label, LanguageType.ESCP);
+        iw.setEscPosMode(EscPosRasterEncoder.Mode.valueOf(imageMode));
+        return iw.getImageCommand(opt);
+    }
+
+}
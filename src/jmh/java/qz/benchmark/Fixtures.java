@@ -0,0 +1,293 @@
+package qz.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import qz.auth.X509Constants;
+import qz.printer.info.NativePrinter;
+
+import javax.print.PrintService;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic inputs for the benchmarks, generated in memory so runs need no network, files or printers.
+ * Everything is seeded so each run sees identical data.
+ */
+public class Fixtures {
+
+    private static final long SEED = 0x51A7E1L;
+
+    /**
+     * A shipping-label style image: text, a 1D barcode, boxes and a gray logo area on white
+     *
+     * @param dpi Label density, 203 or 300 for typical thermal printers
+     */
+    public static BufferedImage label(int dpi, int type) {
+        int width = 4 * dpi;
+        int height = 6 * dpi;
+        Random random = new Random(SEED);
+
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+
+        // address blocks
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, dpi / 8));
+        for(int line = 0; line < 12; line++) {
+            g.drawString("LINE " + line + " " + Long.toHexString(random.nextLong()).toUpperCase(), dpi / 10, dpi / 4 + line * dpi / 6);
+        }
+
+        // boxes
+        g.setStroke(new BasicStroke(dpi / 50f));
+        g.drawRect(dpi / 20, dpi / 20, width - dpi / 10, height / 3);
+        g.drawLine(0, height / 2, width, height / 2);
+
+        // code 128-ish barcode
+        int x = dpi / 4;
+        int barTop = height / 2 + dpi / 4;
+        while(x < width - dpi / 4) {
+            int bar = 2 + random.nextInt(6);
+            g.fillRect(x, barTop, bar, dpi);
+            x += bar + 2 + random.nextInt(6);
+        }
+
+        // gray gradient logo, exercises thresholding
+        for(int i = 0; i < dpi; i++) {
+            g.setColor(new Color(i * 255 / dpi, i * 255 / dpi, i * 255 / dpi));
+            g.drawLine(width - dpi - dpi / 10 + i, height - dpi - dpi / 10, width - dpi - dpi / 10 + i, height - dpi / 10);
+        }
+
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * A 4x6 inch photo-like image: smooth gradients and soft shapes, which a fixed threshold prints as solid blobs
+     */
+    public static BufferedImage photo(int dpi) {
+        int width = 4 * dpi;
+        int height = 6 * dpi;
+        Random random = new Random(SEED);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, new Color(30, 60, 120), width, height, new Color(240, 220, 200)));
+        g.fillRect(0, 0, width, height);
+
+        for(int i = 0; i < 40; i++) {
+            int size = dpi / 4 + random.nextInt(dpi);
+            int x = random.nextInt(width), y = random.nextInt(height);
+            Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+            g.setPaint(new RadialGradientPaint(x, y, size / 2f, new float[] {0f, 1f}, new Color[] {color, new Color(color.getRGB() & 0xFFFFFF, true)}));
+            g.fillOval(x - size / 2, y - size / 2, size, size);
+        }
+        g.dispose();
+
+        return image;
+    }
+
+    /**
+     * A PDF of {@code pages} letter-sized pages with text, ruled lines and filled shapes
+     */
+    public static byte[] pdf(int pages) throws IOException {
+        Random random = new Random(SEED);
+
+        try(PDDocument doc = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for(int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+
+                try(PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    for(int line = 0; line < 50; line++) {
+                        content.beginText();
+                        content.newLineAtOffset(50, 740 - line * 13);
+                        content.showText("Page " + p + " line " + line + " " + Long.toHexString(random.nextLong()));
+                        content.endText();
+                    }
+
+                    content.setLineWidth(0.5f);
+                    for(int rule = 0; rule < 20; rule++) {
+                        content.moveTo(40, 60 + rule * 35);
+                        content.lineTo(570, 60 + rule * 35);
+                    }
+                    content.stroke();
+
+                    content.setNonStrokingColor(0.2f, 0.4f, 0.8f);
+                    content.addRect(400, 600, 150, 120);
+                    content.fill();
+                }
+            }
+
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * A PDF of {@code pages} 4x6 inch shipping labels: address text, a barcode and boxes, one label per page
+     */
+    public static byte[] labelPdf(int pages) throws IOException {
+        Random random = new Random(SEED);
+        PDRectangle size = new PDRectangle(4 * 72, 6 * 72);
+
+        try(PDDocument doc = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for(int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(size);
+                doc.addPage(page);
+
+                try(PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.setFont(PDType1Font.HELVETICA_BOLD, 9);
+                    for(int line = 0; line < 8; line++) {
+                        content.beginText();
+                        content.newLineAtOffset(12, 410 - line * 11);
+                        content.showText("LABEL " + p + " LINE " + line + " " + Long.toHexString(random.nextLong()).toUpperCase());
+                        content.endText();
+                    }
+
+                    content.setLineWidth(1.5f);
+                    content.addRect(6, 300, 276, 126);
+                    content.moveTo(0, 216);
+                    content.lineTo(288, 216);
+                    content.stroke();
+
+                    // code 128-ish barcode
+                    float x = 18;
+                    while(x < 270) {
+                        float bar = 1 + random.nextInt(3);
+                        content.addRect(x, 110, bar, 90);
+                        x += bar + 1 + random.nextInt(3);
+                    }
+                    content.fill();
+                }
+            }
+
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * A raw print request as sent by the JavaScript API, with {@code items} data elements
+     */
+    public static String printRequest(int items) {
+        StringBuilder data = new StringBuilder();
+        for(int i = 0; i < items; i++) {
+            if (i > 0) { data.append(','); }
+            data.append("{\"type\":\"raw\",\"format\":\"command\",\"flavor\":\"plain\",")
+                    .append("\"data\":\"^XA^FO50,50^A0N,50,50^FDItem ").append(i).append("^FS^XZ\",")
+                    .append("\"options\":{\"language\":\"ZPL\"}}");
+        }
+
+        return "{\"call\":\"print\",\"promise\":{},\"timestamp\":1700000000000,\"uid\":\"abc123\"," +
+                "\"params\":{\"printer\":{\"name\":\"ZDesigner GK420d\"}," +
+                "\"options\":{\"bounds\":null,\"colorType\":\"color\",\"copies\":1,\"density\":0,\"duplex\":false," +
+                "\"fallbackDensity\":null,\"interpolation\":\"bicubic\",\"jobName\":null,\"legacy\":false," +
+                "\"margins\":0,\"orientation\":null,\"paperThickness\":null,\"printerTray\":null,\"rasterize\":false," +
+                "\"rotation\":0,\"scaleContent\":true,\"size\":null,\"units\":\"in\",\"altPrinting\":false," +
+                "\"encoding\":null,\"spool\":{}}," +
+                "\"data\":[" + data + "]}," +
+                "\"signature\":\"\",\"signAlgorithm\":\"SHA512\"}";
+    }
+
+    /**
+     * Substitution rules, one of which matches {@link #printRequest(int)}
+     */
+    public static String substitutions(int rules) {
+        StringBuilder json = new StringBuilder("[");
+        for(int i = 0; i < rules; i++) {
+            if (i > 0) { json.append(','); }
+            json.append("{\"use\":{\"printer\":\"Printer ").append(i).append("\"},")
+                    .append("\"for\":{\"printer\":\"Unused ").append(i).append("\"}}");
+        }
+        json.append(",{\"use\":{\"printer\":\"ZDesigner GK420d (Copy 1)\",\"options\":{\"density\":203}},")
+                .append("\"for\":{\"printer\":\"ZDesigner GK420d\"}}");
+        return json.append("]").toString();
+    }
+
+    /**
+     * {@code count} printers named like a large site's queues, e.g. "Warehouse 12 ZDesigner ZT410-203dpi #0042"
+     */
+    public static List<NativePrinter> printers(int count) {
+        String[] sites = {"Warehouse", "Front Office", "Shipping", "Returns", "Lab"};
+        String[] models = {"ZDesigner ZT410-203dpi", "ZDesigner GK420d", "EPSON TM-T88V", "HP LaserJet 4250", "Brother QL-820NWB"};
+        Random random = new Random(SEED);
+
+        List<NativePrinter> printers = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            String name = String.format("%s %d %s #%04d", sites[random.nextInt(sites.length)], random.nextInt(50),
+                                        models[random.nextInt(models.length)], i);
+            NativePrinter printer = new NativePrinter(name);
+            printer.setPrintService(printService(name));
+            printers.add(printer);
+        }
+        return printers;
+    }
+
+    /**
+     * A {@code PrintService} that only knows its name, compared by name like the JDK's
+     */
+    public static PrintService printService(String name) {
+        return (PrintService)Proxy.newProxyInstance(Fixtures.class.getClassLoader(), new Class<?>[] {PrintService.class}, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getName":
+                case "toString":
+                    return name;
+                case "equals":
+                    return args[0] instanceof PrintService && name.equals(((PrintService)args[0]).getName());
+                case "hashCode":
+                    return name.hashCode();
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * A PEM encoded client certificate, as sent by a site connecting with {@code setCertificatePromise}
+     */
+    public static String certificate() throws Exception {
+        SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+        random.setSeed(SEED);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048, random);
+        KeyPair keys = generator.generateKeyPair();
+
+        long now = System.currentTimeMillis();
+        X500Name subject = new X500Name("CN=benchmark.example.com, O=Benchmark Fixtures");
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(SEED), new Date(now - 86400000L),
+                                                                              new Date(now + 365 * 86400000L), subject, keys.getPublic());
+        X509Certificate certificate = new JcaX509CertificateConverter()
+                .getCertificate(builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(keys.getPrivate())));
+
+        return X509Constants.BEGIN_CERT + "\n" +
+                Base64.getMimeEncoder(64, new byte[] {'\n'}).encodeToString(certificate.getEncoded()) + "\n" +
+                X509Constants.END_CERT + "\n";
+    }
+
+}
@@ -0,0 +1,83 @@
+package qz.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.action.HostConnectionPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw jobs per second sent to a fake 9100 printer on the loopback interface, reconnecting for every job compared to
+ * reusing a pooled connection
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HostPrintBenchmark {
+
+    @Param({"0", "1"})
+    public String connections;
+
+    private ServerSocket printer;
+    private Thread acceptor;
+    private byte[] job;
+
+    @Setup
+    public void setup() throws IOException {
+        printer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::accept, "fake-9100");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        job = "^XA^FO50,50^A0N,50,50^FDBenchmark label^FS^FO50,120^BY3^BCN,100,Y,N,N^FD0123456789^FS^XZ\n".repeat(10)
+                .getBytes(StandardCharsets.US_ASCII);
+
+        System.setProperty("printer.host.connections", connections);
+        HostConnectionPool.close(); // picks up the property on next use
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        HostConnectionPool.close();
+        System.clearProperty("printer.host.connections");
+        printer.close();
+    }
+
+    @Benchmark
+    public void sendJob() throws IOException {
+        try(HostConnectionPool.Connection connection = HostConnectionPool.open(printer.getInetAddress().getHostAddress(), printer.getLocalPort())) {
+            OutputStream out = connection.getOutputStream();
+            out.write(job);
+            out.flush();
+        }
+    }
+
+    /**
+     * Accepts every connection and discards what's sent, like a printer with an endless buffer
+     */
+    private void accept() {
+        while(!printer.isClosed()) {
+            try {
+                Socket socket = printer.accept();
+                Thread drain = new Thread(() -> {
+                    byte[] buffer = new byte[8192];
+                    try(Socket s = socket; InputStream in = s.getInputStream()) {
+                        while(in.read(buffer) != -1) {}
+                    }
+                    catch(IOException ignore) {}
+                }, "fake-9100-drain");
+                drain.setDaemon(true);
+                drain.start();
+            }
+            catch(IOException ignore) {}
+        }
+    }
+
+}
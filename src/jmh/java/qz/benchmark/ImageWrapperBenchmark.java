@@ -0,0 +1,46 @@
+package qz.benchmark;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.action.raw.ImageWrapper;
+import qz.printer.action.raw.LanguageType;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a rendered label into printer commands, as {@code PrintRaw} does for image, PDF and HTML data
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImageWrapperBenchmark {
+
+    @Param({"ZPL", "EPL", "ESCP", "CPCL"})
+    public String language;
+
+    @Param({"203", "300"})
+    public int dpi;
+
+    @Param({"INT_ARGB", "3BYTE_BGR"})
+    public String imageType;
+
+    private BufferedImage label;
+    private LanguageType languageType;
+    private JSONObject opt;
+
+    @Setup
+    public void setup() {
+        int type = "3BYTE_BGR".equals(imageType)? BufferedImage.TYPE_3BYTE_BGR:BufferedImage.TYPE_INT_ARGB;
+        label = Fixtures.label(dpi, type);
+        languageType = LanguageType.getType(language);
+        opt = new JSONObject();
+    }
+
+    @Benchmark
+    public byte[] imageCommand() throws Exception {
+        return new ImageWrapper(label, languageType).getImageCommand(opt);
+    }
+
+}
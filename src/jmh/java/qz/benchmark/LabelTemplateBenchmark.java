@@ -0,0 +1,64 @@
+package qz.benchmark;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import qz.common.ByteArrayBuilder;
+import qz.printer.action.LabelTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a batch of ZPL labels that differ in a few fields, by encoding each label's full commands as
+ * {@code PrintRaw.parseData} does, compared to merging records into a compiled template
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LabelTemplateBenchmark {
+
+    private static final String LABEL = "^XA^CI28^PW812^LL1218" +
+            "^FO50,50^A0N,40,40^FD%s^FS" +
+            "^FO50,110^A0N,30,30^FD123 Main Street^FS^FO50,150^A0N,30,30^FDSpringfield, IL 62701^FS" +
+            "^FO40,30^GB732,200,4^FS^FO0,609^GB812,0,4^FS" +
+            "^FO100,700^BY3^BCN,200,Y,N,N^FD%s^FS" +
+            "^FO50,1000^A0N,30,30^FDQty: %s^FS^XZ\n";
+
+    @Param({"1000"})
+    public int records;
+
+    private String[] labels;
+    private JSONArray recordData;
+    private LabelTemplate template;
+
+    @Setup
+    public void setup() throws Exception {
+        labels = new String[records];
+        recordData = new JSONArray();
+        for(int i = 0; i < records; i++) {
+            String name = "Customer " + i, sku = String.format("SKU%08d", i), qty = Integer.toString(1 + i % 12);
+            labels[i] = String.format(LABEL, name, sku, qty);
+            recordData.put(new JSONObject().put("name", name).put("sku", sku).put("qty", qty));
+        }
+        template = LabelTemplate.compile("bench.zpl", String.format(LABEL, "{{name}}", "{{sku}}", "{{qty}}"));
+    }
+
+    @Benchmark
+    public byte[] fullCommands() throws Exception {
+        ByteArrayBuilder builder = new ByteArrayBuilder();
+        for(String label : labels) {
+            builder.append(label, StandardCharsets.UTF_8);
+        }
+        return builder.getByteArray();
+    }
+
+    @Benchmark
+    public byte[] templateMerge() throws Exception {
+        ByteArrayBuilder builder = new ByteArrayBuilder();
+        template.merge(recordData, "UTF-8", builder);
+        return builder.getByteArray();
+    }
+
+}
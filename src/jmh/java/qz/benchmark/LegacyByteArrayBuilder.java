@@ -0,0 +1,37 @@
+package qz.benchmark;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The boxed {@code List<Byte>} implementation {@code ByteArrayBuilder} had before it was backed by a primitive array,
+ * kept only as a baseline for {@link ByteArrayBuilderBenchmark}
+ */
+final class LegacyByteArrayBuilder {
+
+    private final List<Byte> buffer;
+
+    LegacyByteArrayBuilder() {
+        buffer = new ArrayList<>(16);
+    }
+
+    LegacyByteArrayBuilder append(byte[] bytes) {
+        for(byte b : bytes) {
+            buffer.add(b);
+        }
+        return this;
+    }
+
+    LegacyByteArrayBuilder append(String string, Charset charset) throws UnsupportedEncodingException {
+        return append(string.getBytes(charset.name()));
+    }
+
+    byte[] getByteArray() {
+        return ArrayUtils.toPrimitive(buffer.toArray(new Byte[buffer.size()]));
+    }
+
+}
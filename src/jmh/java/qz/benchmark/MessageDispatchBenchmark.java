@@ -0,0 +1,41 @@
+package qz.benchmark;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import qz.utils.PrintingUtilities;
+import qz.ws.SocketMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON handling every request goes through before it reaches a processor: {@code SocketMessage} parsing and
+ * routing, as used by {@code PrintSocketClient.onMessage}, resolving the print format, and serializing the reply
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MessageDispatchBenchmark {
+
+    @Param({"1", "50"})
+    public int items;
+
+    private String message;
+
+    @Setup
+    public void setup() {
+        message = Fixtures.printRequest(items);
+    }
+
+    @Benchmark
+    public String dispatch() throws Exception {
+        SocketMessage parsed = SocketMessage.parse(message);
+
+        JSONObject first = parsed.getFirstData();
+        PrintingUtilities.Type type = PrintingUtilities.getPrintType(first);
+        PrintingUtilities.Format format = PrintingUtilities.getPrintFormat(type, first);
+
+        return SocketMessage.result(parsed.getUid(), format.name()).toString();
+    }
+
+}
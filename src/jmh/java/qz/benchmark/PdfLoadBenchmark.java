@@ -0,0 +1,83 @@
+package qz.benchmark;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.action.pdf.PdfLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preparing a PDF's pages for printing, as {@code PrintPDF.parseData} does, against page count.
+ * <p>
+ * Besides time, reports {@code peakRssMb}: the forked JVM's peak resident memory (Linux only), which grows with the
+ * largest document held at once. Compare with {@code -prof gc} allocation figures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class PdfLoadBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int pages;
+
+    private byte[] pdf;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Memory {
+        public long peakRssMb;
+
+        void record() {
+            try {
+                for(String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                    if (line.startsWith("VmHWM:")) {
+                        peakRssMb = Long.parseLong(line.replaceAll("\\D+", "")) / 1024;
+                    }
+                }
+            }
+            catch(IOException | RuntimeException ignore) {}
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        pdf = Fixtures.pdf(pages);
+    }
+
+    /**
+     * Loading entirely in memory and splitting into a document per page, as done previously
+     */
+    @Benchmark
+    public int splitPerPage(Memory memory) throws IOException {
+        try(PDDocument doc = PDDocument.load(new ByteArrayInputStream(pdf), MemoryUsageSetting.setupMainMemoryOnly())) {
+            List<PDDocument> split = new Splitter().split(doc);
+            int count = split.size();
+            for(PDDocument page : split) { page.close(); }
+            memory.record();
+            return count;
+        }
+    }
+
+    /**
+     * Loading with a scratch file beyond 16 MB and selecting pages by index, as {@code PdfLoader} does by default
+     */
+    @Benchmark
+    public int selectPages(Memory memory) throws IOException {
+        try(PDDocument doc = PDDocument.load(new ByteArrayInputStream(pdf), MemoryUsageSetting.setupMixed(16L * 1024 * 1024))) {
+            int count = PdfLoader.selectPages(Collections.emptySet(), doc.getNumberOfPages()).length;
+            memory.record();
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package qz.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.action.pdf.ParamPdfRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rasterizing PDF pages, as {@code PrintRaw} does when converting PDFs to raw printer images
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PdfRenderBenchmark {
+
+    @Param({"1", "10"})
+    public int pages;
+
+    @Param({"203"})
+    public int dpi;
+
+    @Param({"false", "true"})
+    public boolean ignoreTransparency;
+
+    private byte[] pdf;
+    private PDDocument document;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        pdf = Fixtures.pdf(pages);
+        document = PDDocument.load(pdf);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public PDDocument load() throws IOException {
+        try(PDDocument doc = PDDocument.load(pdf)) {
+            return doc;
+        }
+    }
+
+    @Benchmark
+    public BufferedImage renderAllPages() throws IOException {
+        ParamPdfRenderer renderer = new ParamPdfRenderer(document, false, ignoreTransparency);
+        BufferedImage last = null;
+        for(int i = 0; i < document.getNumberOfPages(); i++) {
+            last = renderer.renderImageWithDPI(i, dpi, ImageType.RGB);
+        }
+        return last;
+    }
+
+}
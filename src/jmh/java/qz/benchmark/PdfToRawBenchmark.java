@@ -0,0 +1,67 @@
+package qz.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.action.pdf.PdfLoader;
+import qz.printer.action.pdf.PdfRasterizer;
+import qz.printer.action.raw.ImageWrapper;
+import qz.printer.action.raw.LanguageType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a 200 page shipping label PDF to ZPL at 203 dpi, as {@code PrintRaw} does for raw {@code pdf} data.
+ * Scores are labels per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(PdfToRawBenchmark.PAGES)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class PdfToRawBenchmark {
+
+    static final int PAGES = 200;
+    private static final float SCALE = 203 / 72f;
+
+    private byte[] pdf;
+    private int[] pages;
+    private JSONObject opt;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        pdf = Fixtures.labelPdf(PAGES);
+        pages = PdfLoader.selectPages(Collections.emptySet(), PAGES);
+        opt = new JSONObject();
+    }
+
+    /**
+     * Rendering and converting one page after another from a single document
+     */
+    @Benchmark
+    public long sequential() throws Exception {
+        long length = 0;
+        try(PDDocument doc = PdfLoader.load(new ByteArrayInputStream(pdf))) {
+            PDFRenderer renderer = new PDFRenderer(doc);
+            for(int page : pages) {
+                length += new ImageWrapper(renderer.renderImage(page, SCALE), LanguageType.ZPL).getImageCommand(opt).length;
+            }
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long parallel() throws Exception {
+        long[] length = new long[1];
+        PdfRasterizer.rasterize(pdf, pages, rect -> SCALE,
+                                page -> new ImageWrapper(page, LanguageType.ZPL).getImageCommand(opt),
+                                command -> length[0] += command.length);
+        return length[0];
+    }
+
+}
@@ -0,0 +1,84 @@
+package qz.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import qz.printer.info.NativePrinter;
+import qz.printer.info.PrinterIndex;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding a printer by (partial) name, as done for every print and {@code printers.find} call
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrinterMatchBenchmark {
+
+    @Param({"10", "1000"})
+    public int printers;
+
+    @Param({"exact", "prefix", "contains", "missing"})
+    public String match;
+
+    private List<NativePrinter> list;
+    private PrinterIndex index;
+    private String query;
+
+    @Setup
+    public void setup() {
+        list = Fixtures.printers(printers);
+        index = new PrinterIndex();
+        list.forEach(index::add);
+
+        String name = list.get(list.size() / 2).getName();
+        switch(match) {
+            case "exact":
+                query = name.toUpperCase(Locale.ENGLISH);
+                break;
+            case "prefix":
+                query = name.substring(0, name.length() - 2);
+                break;
+            case "contains":
+                query = name.substring(name.indexOf(' ') + 1);
+                break;
+            default:
+                query = "Nonexistent Printer";
+        }
+    }
+
+    @Benchmark
+    public NativePrinter index() {
+        return index.find(query);
+    }
+
+    /**
+     * The linear scan {@code PrintServiceMatcher} used before the index
+     */
+    @Benchmark
+    public NativePrinter scan() {
+        NativePrinter exact = null, begins = null, partial = null;
+        String search = query.toLowerCase(Locale.ENGLISH);
+        for(NativePrinter printer : list) {
+            String name = printer.getName().toLowerCase(Locale.ENGLISH);
+            if (name.equals(search)) { exact = printer; break; }
+            if (name.startsWith(search)) { begins = printer; continue; }
+            if (name.contains(search)) { partial = printer; }
+        }
+        return exact != null? exact:begins != null? begins:partial;
+    }
+
+    /**
+     * Keeping the index current as a refresh replaces a printer
+     */
+    @Benchmark
+    public int update() {
+        NativePrinter printer = list.get(list.size() / 2);
+        index.remove(printer);
+        index.add(printer);
+        return index.size();
+    }
+
+}
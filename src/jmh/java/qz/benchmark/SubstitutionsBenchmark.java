@@ -0,0 +1,46 @@
+package qz.benchmark;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import qz.ws.substitutions.Substitutions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying {@code substitutions.json} rules to an incoming print request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubstitutionsBenchmark {
+
+    @Param({"1", "25", "500"})
+    public int rules;
+
+    @Param({"1", "20"})
+    public int items;
+
+    private Substitutions substitutions;
+    private String request;
+
+    @Setup
+    public void setup() throws Exception {
+        substitutions = new Substitutions(Fixtures.substitutions(rules));
+        request = Fixtures.printRequest(items);
+    }
+
+    /**
+     * Baseline for {@link #replace()}, which has to parse a fresh request as substitution modifies it in place
+     */
+    @Benchmark
+    public JSONObject parseOnly() throws Exception {
+        return new JSONObject(request);
+    }
+
+    @Benchmark
+    public JSONObject replace() throws Exception {
+        return substitutions.replace(new JSONObject(request));
+    }
+
+}
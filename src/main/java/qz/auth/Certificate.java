@@ -189,6 +189,7 @@ public class Certificate {
                             log.debug("Adding CA certificate: CN={}, O={} ({})",
                                       caCert.getCommonName(), caCert.getOrganization(), caCert.getFingerprint());
                             rootCAs.add(caCert);
+                            CertificateCache.invalidateAll();
                         } else {
                             log.warn("CA cert exists, skipping: {}", certPath.getKey());
                         }
@@ -543,6 +544,7 @@ public class Certificate {
             }
         }
         Certificate.trustBuiltIn = trustBuiltIn;
+        CertificateCache.invalidateAll();
     }
 
     public static boolean isTrustBuiltIn() {
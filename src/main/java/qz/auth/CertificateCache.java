@@ -0,0 +1,152 @@
+package qz.auth;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
+
+import java.security.cert.CertificateException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the outcome of decoding and chaining client certificates, keyed by the SHA-256 of the certificate text.
+ * <p>
+ * Reconnecting tabs send the same certificate over and over; each distinct certificate is validated once per
+ * {@code security.cert.cache.ttl} seconds, with any concurrent requests for it waiting on that single validation.
+ * Entries never outlive the certificate's validity window, and are dropped whenever the trusted root CAs change.
+ */
+public class CertificateCache {
+    private static final Logger log = LogManager.getLogger(CertificateCache.class);
+
+    private static final ConcurrentHashMap<String,Entry> entries = new ConcurrentHashMap<>();
+
+    private static volatile boolean configured;
+    private static volatile long ttl;
+    private static volatile int maxEntries;
+
+    private static class Entry {
+        final CompletableFuture<Certificate> future = new CompletableFuture<>();
+        volatile long expires = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return expires <= now;
+        }
+    }
+
+    /**
+     * Decodes and validates {@code pem}, reusing a previous result for the same certificate when available
+     *
+     * @see Certificate#Certificate(String)
+     */
+    public static Certificate get(String pem) throws CertificateException {
+        configure();
+        if (ttl <= 0 || maxEntries <= 0) {
+            return new Certificate(pem);
+        }
+
+        String key = DigestUtils.sha256Hex(pem);
+        while(true) {
+            long now = System.currentTimeMillis();
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(key, entry);
+                entry = null;
+            }
+
+            if (entry == null) {
+                Entry created = new Entry();
+                entry = entries.putIfAbsent(key, created);
+                if (entry == null) {
+                    return validate(key, pem, created, now);
+                }
+            }
+
+            try {
+                return entry.future.join();
+            }
+            catch(CompletionException e) {
+                if (e.getCause() instanceof CertificateException) {
+                    throw (CertificateException)e.getCause();
+                }
+                throw new CertificateException(e.getCause());
+            }
+        }
+    }
+
+    private static Certificate validate(String key, String pem, Entry entry, long now) throws CertificateException {
+        try {
+            Certificate certificate = new Certificate(pem);
+            entry.expires = expiry(certificate, now);
+            entry.future.complete(certificate);
+            trim(now);
+            return certificate;
+        }
+        catch(CertificateException | RuntimeException e) {
+            // failures aren't cached, the next attempt validates again
+            entries.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * The cached result must be thrown away once the certificate starts or stops being within its valid dates
+     */
+    private static long expiry(Certificate certificate, long now) {
+        long expires = now + ttl;
+        for(Instant boundary : new Instant[] {certificate.getValidFromDate(), certificate.getValidToDate()}) {
+            if (boundary != null && boundary.toEpochMilli() > now) {
+                expires = Math.min(expires, boundary.toEpochMilli());
+            }
+        }
+        return expires;
+    }
+
+    /**
+     * Removes expired entries, then those closest to expiring, until the cache fits within {@code maxEntries}
+     */
+    private static synchronized void trim(long now) {
+        if (entries.size() <= maxEntries) { return; }
+
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+        while(entries.size() > maxEntries) {
+            Map.Entry<String,Entry> oldest = null;
+            for(Map.Entry<String,Entry> e : entries.entrySet()) {
+                if (e.getValue().future.isDone() && (oldest == null || e.getValue().expires < oldest.getValue().expires)) {
+                    oldest = e;
+                }
+            }
+            if (oldest == null) { break; }
+            entries.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    /**
+     * Forgets all cached results, for when the trusted root CAs change
+     */
+    public static void invalidateAll() {
+        if (!entries.isEmpty()) {
+            log.debug("Clearing {} cached certificate validation(s)", entries.size());
+            entries.clear();
+        }
+    }
+
+    private static void configure() {
+        if (!configured) {
+            synchronized(CertificateCache.class) {
+                if (!configured) {
+                    ttl = PrefsSearch.getInt(ArgValue.SECURITY_CERT_CACHE_TTL) * 1000L;
+                    maxEntries = PrefsSearch.getInt(ArgValue.SECURITY_CERT_CACHE_SIZE);
+                    configured = true;
+                }
+            }
+        }
+    }
+
+}
@@ -1,6 +1,10 @@
 package qz.common;
 
 import com.github.zafarkhaja.semver.Version;
+import org.apache.commons.io.FileUtils;
+import qz.printer.action.RawImageCache;
+import qz.printer.info.CachedPrintServiceLookup;
+import qz.printer.status.StatusMonitor;
 import qz.utils.SystemUtilities;
 
 import org.apache.commons.lang3.time.DurationFormatUtils;
@@ -10,6 +14,8 @@ import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
 import qz.utils.StringUtilities;
+import qz.ws.MessageDispatcher;
+import qz.ws.PrintSocketClient;
 import qz.ws.WebsocketPorts;
 
 import org.apache.logging.log4j.LogManager;
@@ -39,6 +45,10 @@ public class AboutInfo {
             about.put("environment", environment());
             about.put("ssl", ssl(certificateProvider));
             about.put("charsets", charsets());
+            about.put("raw cache", rawCache());
+            about.put("printer cache", printerCache());
+            about.put("printer status", printerStatus());
+            about.put("dispatch", dispatch());
         }
         catch(JSONException | GeneralSecurityException e) {
             logger.error("Failed to write JSON data", e);
@@ -102,6 +112,55 @@ public class AboutInfo {
         return ssl;
     }
 
+    private static JSONObject rawCache() throws JSONException {
+        JSONObject rawCache = new JSONObject();
+
+        rawCache
+                .put("hits", RawImageCache.getHits())
+                .put("hits (disk)", RawImageCache.getDiskHits())
+                .put("misses", RawImageCache.getMisses())
+                .put("hit ratio", String.format("%.1f%%", RawImageCache.getHitRatio() * 100))
+                .put("entries", RawImageCache.getMemoryEntries())
+                .put("entries (disk)", RawImageCache.getDiskEntries())
+                .put("size", FileUtils.byteCountToDisplaySize(RawImageCache.getMemorySize()))
+                .put("size (disk)", FileUtils.byteCountToDisplaySize(RawImageCache.getDiskSize()));
+
+        return rawCache;
+    }
+
+    private static JSONObject printerCache() throws JSONException {
+        JSONObject printerCache = new JSONObject();
+
+        printerCache
+                .put("printers", CachedPrintServiceLookup.getPrintServicesStats())
+                .put("default", CachedPrintServiceLookup.getDefaultStats());
+
+        return printerCache;
+    }
+
+    private static JSONObject printerStatus() throws JSONException {
+        JSONObject printerStatus = new JSONObject();
+
+        printerStatus.put("dropped", StatusMonitor.getDroppedStatusCount());
+
+        return printerStatus;
+    }
+
+    private static JSONObject dispatch() throws JSONException {
+        JSONObject dispatch = new JSONObject();
+        MessageDispatcher dispatcher = MessageDispatcher.getInstance();
+
+        dispatch
+                .put("connections", PrintSocketClient.getConnectionCount())
+                .put("in flight", dispatcher.getInFlight())
+                .put("in flight (busiest connection)", PrintSocketClient.getBusiestConnection())
+                .put("queued", dispatcher.getQueueDepth())
+                .put("queued (peak)", dispatcher.getPeakQueueDepth())
+                .put("rejected", dispatcher.getRejectedCount());
+
+        return dispatch;
+    }
+
     public static String formatCert(byte[] encoding) {
         return "-----BEGIN CERTIFICATE-----\r\n" +
                 new String(Base64.getEncoder().encode(encoding), StandardCharsets.UTF_8) +
@@ -0,0 +1,75 @@
+package qz.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads base64 text as the ASCII bytes {@code Base64.Decoder.wrap} expects, skipping the line breaks and spaces that
+ * wrapped base64 often contains.
+ * <p>
+ * The text is checked when the stream is created, so a print job reading from it can't fail part way through because
+ * of invalid data.
+ */
+public class Base64TextInputStream extends InputStream {
+
+    private final CharSequence text;
+    private int pos;
+
+    /**
+     * @throws IOException if {@code text} contains anything other than base64 and whitespace, or is cut short
+     */
+    public Base64TextInputStream(CharSequence text) throws IOException {
+        this.text = text;
+        validate(text);
+    }
+
+    @Override
+    public int read() {
+        while(pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (!isWhitespace(c)) { return c; }
+        }
+        return -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) { return 0; }
+
+        int count = 0;
+        int c;
+        while(count < len && (c = read()) != -1) {
+            b[off + count++] = (byte)c;
+        }
+        return count == 0? -1:count;
+    }
+
+    private static void validate(CharSequence text) throws IOException {
+        int length = 0;
+        int padding = 0;
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) { continue; }
+            if (c == '=') {
+                padding++;
+            } else if (padding > 0 || !isBase64(c)) {
+                throw new IOException(String.format("Invalid base64 character '%s' at position %d", c, i));
+            }
+            length++;
+        }
+
+        // padding is optional, but a single trailing character can't encode a byte
+        if (padding > 2 || length % 4 == 1 || (padding > 0 && length % 4 != 0)) {
+            throw new IOException("Base64 data is truncated");
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == '\r' || c == '\n' || c == ' ' || c == '\t';
+    }
+
+    private static boolean isBase64(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/';
+    }
+
+}
@@ -12,11 +12,13 @@
 
 package qz.common;
 
-import org.apache.commons.lang3.ArrayUtils;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -29,7 +31,10 @@ import java.util.List;
 @SuppressWarnings("UnusedDeclaration") //Library class
 public final class ByteArrayBuilder {
 
-    private List<Byte> buffer;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private byte[] buffer;
+    private int length;
 
 
     /**
@@ -67,17 +72,20 @@ public final class ByteArrayBuilder {
      * @param initialCapacity the initial capacity of the <code>ByteArrayBuilder</code>
      */
     public ByteArrayBuilder(byte[] initialContents, int initialCapacity) {
-        buffer = new ArrayList<>(initialCapacity);
+        if (initialContents != null) {
+            initialCapacity = Math.max(initialCapacity, initialContents.length);
+        }
+        buffer = new byte[Math.max(0, initialCapacity)];
         if (initialContents != null) {
             append(initialContents);
         }
     }
 
     /**
-     * Empties the <code>ByteArrayBuilder</code>
+     * Empties the <code>ByteArrayBuilder</code>, retaining its capacity
      */
     public void clear() {
-        buffer.clear();
+        length = 0;
     }
 
     /**
@@ -87,7 +95,9 @@ public final class ByteArrayBuilder {
      * @param endIndex   Ending index, exclusive
      */
     public final void clearRange(int startIndex, int endIndex) {
-        buffer.subList(startIndex, endIndex).clear();
+        checkRange(startIndex, endIndex);
+        System.arraycopy(buffer, endIndex, buffer, startIndex, length - endIndex);
+        length -= endIndex - startIndex;
     }
 
     /**
@@ -96,7 +106,34 @@ public final class ByteArrayBuilder {
      * @return the number of bytes in the <code>ByteArrayBuilder</code>
      */
     public int getLength() {
-        return buffer.size();
+        return length;
+    }
+
+    /**
+     * Ensures at least <code>minCapacity</code> bytes can be stored without growing
+     *
+     * @param minCapacity the desired minimum capacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity < 0) { throw new OutOfMemoryError("Required capacity exceeds maximum array size"); }
+        if (minCapacity > buffer.length) {
+            // grow by half again, like ArrayList
+            int newCapacity = buffer.length + (buffer.length >> 1) + 16;
+            if (newCapacity < minCapacity || newCapacity < 0) { newCapacity = minCapacity; }
+            buffer = Arrays.copyOf(buffer, Math.min(newCapacity, MAX_CAPACITY));
+        }
+    }
+
+    /**
+     * Appends a single byte to this <code>ByteArrayBuilder</code>.
+     *
+     * @param b the byte to append
+     * @return this <code>ByteArrayBuilder</code>
+     */
+    public final ByteArrayBuilder append(byte b) {
+        ensureCapacity(length + 1);
+        buffer[length++] = b;
+        return this;
     }
 
     /**
@@ -107,19 +144,57 @@ public final class ByteArrayBuilder {
      * @return this <code>ByteArrayBuilder</code>
      */
     public final ByteArrayBuilder append(byte[] bytes) {
-        for(byte b : bytes) {
-            buffer.add(b);
-        }
+        return append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends <code>len</code> bytes of <code>bytes</code>, starting at <code>offset</code>
+     *
+     * @param bytes  the source byte array
+     * @param offset the starting position in <code>bytes</code>
+     * @param len    the number of bytes to append
+     * @return this <code>ByteArrayBuilder</code>
+     */
+    public final ByteArrayBuilder append(byte[] bytes, int offset, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(bytes, offset, buffer, length, len);
+        length += len;
         return this;
     }
 
+    /**
+     * Appends everything remaining in <code>in</code>, reading directly into this builder's buffer
+     *
+     * @param in the stream to drain, left open
+     * @return this <code>ByteArrayBuilder</code>
+     */
+    public final ByteArrayBuilder append(InputStream in) throws IOException {
+        while(true) {
+            ensureCapacity(length + Constants.BYTE_BUFFER_SIZE);
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) { return this; }
+            length += read;
+        }
+    }
+
     public final ByteArrayBuilder append(List<Byte> bytes) {
+        ensureCapacity(length + bytes.size());
         for(byte b : bytes) {
-            buffer.add(b);
+            buffer[length++] = b;
         }
         return this;
     }
 
+    /**
+     * Appends the contents of another <code>ByteArrayBuilder</code>
+     *
+     * @param builder the builder to append
+     * @return this <code>ByteArrayBuilder</code>
+     */
+    public final ByteArrayBuilder append(ByteArrayBuilder builder) {
+        return append(builder.buffer, 0, builder.length);
+    }
+
     /**
      * Convenience method for append(byte[]) combined with a StringBuffer of specified
      * charset
@@ -144,6 +219,48 @@ public final class ByteArrayBuilder {
         return append(stringBuilder.toString(), charset);
     }
 
+    /**
+     * Returns a read-only view of a portion of this <code>ByteArrayBuilder</code> without copying it.
+     * The view is only valid until the builder is next modified.
+     *
+     * @param startIndex Starting index, inclusive
+     * @param endIndex   Ending index, exclusive
+     * @return a read-only <code>ByteBuffer</code> backed by this builder
+     */
+    public ByteBuffer slice(int startIndex, int endIndex) {
+        checkRange(startIndex, endIndex);
+        return ByteBuffer.wrap(buffer, startIndex, endIndex - startIndex).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the full contents of this <code>ByteArrayBuilder</code> to <code>out</code> without copying it.
+     *
+     * @param out the stream to write to
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * Returns an <code>OutputStream</code> that appends everything written to
+     * it to this <code>ByteArrayBuilder</code>.
+     *
+     * @return a stream backed by this builder
+     */
+    public OutputStream asOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                append((byte)b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int len) {
+                append(bytes, offset, len);
+            }
+        };
+    }
+
     /**
      * Returns the full contents of this <code>ByteArrayBuilder</code> as
      * a single <code>byte</code> array.
@@ -151,6 +268,12 @@ public final class ByteArrayBuilder {
      * @return The contents of this <code>ByteArrayBuilder</code> as a single <code>byte</code> array
      */
     public byte[] getByteArray() {
-        return ArrayUtils.toPrimitive(buffer.toArray(new Byte[buffer.size()]));
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void checkRange(int startIndex, int endIndex) {
+        if (startIndex < 0 || endIndex > length || startIndex > endIndex) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) out of bounds for length %d", startIndex, endIndex, length));
+        }
     }
 }
@@ -57,6 +57,13 @@ public class CachedObject<T> {
         lifespan = Math.max(0, milliseconds); // prevent overflow
     }
 
+    /**
+     * @return The lifespan of the cached object in milliseconds
+     */
+    public long getLifespan() {
+        return lifespan;
+    }
+
     /**
      * Retrieves the cached object.
      * If the cached object's lifespan has expired, it gets refreshed before being returned.
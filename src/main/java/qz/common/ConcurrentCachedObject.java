@@ -0,0 +1,199 @@
+package qz.common;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe {@code CachedObject} that refreshes in the background instead of on the calling thread.
+ * <p>
+ * Once 80% of the lifespan has passed the next caller starts a refresh and still receives the current value. After the
+ * lifespan expires the old value keeps being served for up to one more lifespan while that refresh runs. Only callers
+ * with no usable value, or that force a refresh, wait for the supplier. Concurrent refreshes are coalesced so the
+ * supplier never runs more than once at a time.
+ *
+ * @param <T> The type of object to be cached.
+ */
+public class ConcurrentCachedObject<T> extends CachedObject<T> {
+    private static final Logger log = LogManager.getLogger(ConcurrentCachedObject.class);
+
+    private static final double REFRESH_AHEAD = 0.8;
+
+    private static class Entry<T> {
+        final T value;
+        final long timestamp;
+
+        Entry(T value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private volatile Entry<T> current;
+    private final AtomicReference<CompletableFuture<T>> refreshing = new AtomicReference<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshNanos = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Creates a new ConcurrentCachedObject with a default lifespan of 5000 milliseconds
+     *
+     * @param supplier The function to pull new values from
+     */
+    public ConcurrentCachedObject(Supplier<T> supplier) {
+        this(supplier, DEFAULT_LIFESPAN);
+    }
+
+    /**
+     * Creates a new ConcurrentCachedObject
+     *
+     * @param supplier The function to pull new values from
+     * @param lifespan The lifespan of the cached object in milliseconds
+     */
+    public ConcurrentCachedObject(Supplier<T> supplier, long lifespan) {
+        super(supplier, lifespan);
+    }
+
+    /**
+     * Retrieves the cached object.
+     * A value past its lifespan is still returned while a background refresh replaces it, unless it has gone unrefreshed
+     * for twice its lifespan or forceRefresh is true, in which case the caller waits for a new value.
+     *
+     * @param forceRefresh If true, the cached object will be refreshed before being returned regardless of its lifespan
+     * @return The cached object
+     */
+    @Override
+    public T get(boolean forceRefresh) {
+        Entry<T> entry = current;
+        if (!forceRefresh && entry != null) {
+            long age = now() - entry.timestamp;
+            long lifespan = getLifespan();
+
+            if (age < lifespan * REFRESH_AHEAD) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (age < lifespan * 2) {
+                (age < lifespan? hits:staleHits).incrementAndGet();
+                refreshInBackground();
+                return entry.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            return refresh(false).join();
+        }
+        catch(CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void refreshInBackground() {
+        if (refreshing.get() == null) {
+            refresh(true);
+        }
+    }
+
+    /**
+     * Joins the refresh already in progress, or starts one
+     *
+     * @param background Run a newly started refresh on its own thread instead of the caller's
+     */
+    private CompletableFuture<T> refresh(boolean background) {
+        while(true) {
+            CompletableFuture<T> running = refreshing.get();
+            if (running != null) { return running; }
+
+            CompletableFuture<T> created = new CompletableFuture<>();
+            if (refreshing.compareAndSet(null, created)) {
+                if (background) {
+                    Thread.ofVirtual().name("cache-refresh").start(() -> load(created));
+                } else {
+                    load(created);
+                }
+                return created;
+            }
+        }
+    }
+
+    private void load(CompletableFuture<T> future) {
+        long start = System.nanoTime();
+        try {
+            T value = supplier.get();
+            current = new Entry<>(value, now());
+            refreshes.incrementAndGet();
+            refreshNanos.addAndGet(System.nanoTime() - start);
+            refreshing.compareAndSet(future, null);
+            future.complete(value);
+        }
+        catch(Throwable t) {
+            // the previous value, if any, keeps being served and the next caller tries again
+            failures.incrementAndGet();
+            log.warn("Failed to refresh cached value", t);
+            refreshing.compareAndSet(future, null);
+            future.completeExceptionally(t);
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * @return Number of calls answered with a value inside its lifespan
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of calls answered with an expired value while it was being refreshed
+     */
+    public long getStaleCount() {
+        return staleHits.get();
+    }
+
+    /**
+     * @return Number of calls that had to wait on the supplier
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return Average time taken by the supplier, in milliseconds
+     */
+    public double getAverageRefreshMillis() {
+        long count = refreshes.get();
+        return count == 0? 0:refreshNanos.get() / (count * 1_000_000d);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, stale=%d, misses=%d, refreshes=%d (avg %.1fms), failures=%d",
+                             getHitCount(), getStaleCount(), getMissCount(), getRefreshCount(), getAverageRefreshMillis(), getFailureCount());
+    }
+
+}
@@ -218,8 +218,6 @@ public class Constants {
 
     public static boolean MASK_TRAY_SUPPORTED = true;
 
-    public static final long MEMORY_PER_PRINT = 512; //MB
-
     public static final String RAW_PRINT = " Raw Print";
     public static final String IMAGE_PRINT = " Pixel Print";
     public static final String PDF_PRINT = " PDF Print";
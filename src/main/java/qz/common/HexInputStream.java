@@ -0,0 +1,90 @@
+package qz.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes hex text into bytes as it is read, without first copying the text or the result.
+ * <p>
+ * Accepts the same forms as {@code ByteUtilities.hexStringToByteArray}: digit pairs such as {@code "1B40"}, or values
+ * separated by {@code x} such as {@code "x1Bx40"}, where each value keeps only its lowest byte.
+ */
+public class HexInputStream extends InputStream {
+
+    private final CharSequence hex;
+    private final boolean separated;
+    private final int end;
+    private int pos;
+
+    /**
+     * @param hex Hex text, surrounding whitespace is ignored
+     */
+    public HexInputStream(CharSequence hex) {
+        int start = 0;
+        int end = hex.length();
+        while(start < end && Character.isWhitespace(hex.charAt(start))) { start++; }
+        while(end > start && Character.isWhitespace(hex.charAt(end - 1))) { end--; }
+
+        boolean separated = false;
+        for(int i = start; i < end && !separated; i++) {
+            separated = hex.charAt(i) == 'x';
+        }
+        if (separated) {
+            // "x1Bx40x" is read the same as "1Bx40"
+            if (hex.charAt(start) == 'x') { start++; }
+            if (end > start && hex.charAt(end - 1) == 'x') { end--; }
+        }
+
+        this.hex = hex;
+        this.separated = separated;
+        this.pos = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= end) { return -1; }
+
+        int value = 0;
+        if (separated) {
+            int digits = 0;
+            while(pos < end && hex.charAt(pos) != 'x') {
+                value = (value << 4) | digit(hex.charAt(pos++));
+                digits++;
+            }
+            pos++; // skip separator
+            if (digits == 0) { throw new IOException("Empty hex value at position " + (pos - 1)); }
+        } else {
+            value = digit(hex.charAt(pos++));
+            if (pos < end) {
+                value = (value << 4) | digit(hex.charAt(pos++));
+            }
+        }
+
+        return value & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) { return 0; }
+        if (pos >= end) { return -1; }
+
+        int count = 0;
+        while(count < len && pos < end) {
+            b[off + count++] = (byte)read();
+        }
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return separated? 0:(end - pos + 1) / 2;
+    }
+
+    private int digit(char c) throws IOException {
+        int digit = Character.digit(c, 16);
+        if (digit < 0) { throw new IOException(String.format("Invalid hex character '%s' at position %d", c, pos - 1)); }
+        return digit;
+    }
+
+}
@@ -0,0 +1,10 @@
+package qz.exception;
+
+/**
+ * Thrown when a print job is refused before processing, such as when there isn't enough memory to print it
+ */
+public class PrintRejectedException extends javax.print.PrintException {
+    public PrintRejectedException(String msg) {
+        super(msg);
+    }
+}
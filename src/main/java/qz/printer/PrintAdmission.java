@@ -0,0 +1,255 @@
+package qz.printer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import qz.exception.PrintRejectedException;
+import qz.printer.action.pdf.PdfRasterizer;
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
+import qz.utils.PrintingUtilities.Flavor;
+import qz.utils.PrintingUtilities.Format;
+import qz.utils.PrintingUtilities.Type;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits print jobs based on how much heap each is expected to need, rather than a fixed number of jobs at a time.
+ * <p>
+ * Every job reserves its estimated cost from a budget of {@code printer.memory.budget} percent of the maximum heap,
+ * waiting up to {@code printer.memory.wait} for other jobs to release enough. Large jobs are admitted in the order they
+ * arrive, while small jobs are let through whenever they fit, so a label is never stuck behind a large rendering job.
+ * <p>
+ * Waiting uses a lock rather than {@code synchronized}, so a job waiting on a virtual thread doesn't pin its carrier.
+ */
+public class PrintAdmission {
+    private static final Logger log = LogManager.getLogger(PrintAdmission.class);
+
+    private static final long MB = 1024L * 1024L;
+
+    // jobs estimated at or under this never wait behind larger jobs
+    private static final long SMALL_JOB = 16 * MB;
+
+    // working memory beyond the print data itself
+    private static final long RAW_OVERHEAD = MB;
+    private static final long IMAGE_EXPANSION = 8; // decoded bitmap vs. compressed image data
+    private static final long IMAGE_OVERHEAD = 32 * MB; // rasterizing to the printer's density
+    private static final long PDF_RENDER = 64 * MB; // per page being rendered
+    private static final long PDF_PAGE = 256 * 1024; // page tree and resources kept per page
+    private static final long PDF_BYTES_PER_PAGE = 64 * 1024; // to guess a page count when no ranges are given
+    private static final long HTML_RENDER = 128 * MB; // per concurrently rendered page
+    private static final long UNKNOWN_SIZE = 8 * MB; // file and xml data isn't sized until it's fetched
+
+    private static long budget = -1;
+    private static long reserved;
+    private static final ArrayDeque<Object> largeWaiting = new ArrayDeque<>();
+
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static final Condition changed = lock.newCondition();
+
+    /**
+     * Heap held by an admitted job, released when closed
+     */
+    public static final class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean released;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (released) { return; }
+                released = true;
+                reserved -= bytes;
+                changed.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits until the job described by {@code printData} fits in the memory budget and reserves it
+     *
+     * @throws PrintRejectedException if the job could never fit, or memory didn't free up in time
+     */
+    public static Reservation reserve(Type type, Format format, JSONArray printData) throws PrintRejectedException, InterruptedException {
+        return reserve(estimate(type, format, printData));
+    }
+
+    /**
+     * Waits until a raw job of about {@code length} bytes of commands fits in the memory budget and reserves it
+     *
+     * @throws PrintRejectedException if the job could never fit, or memory didn't free up in time
+     */
+    public static Reservation reserveCommands(long length) throws PrintRejectedException, InterruptedException {
+        // the commands, plus the copy made when sending
+        return reserve(length * 2 + RAW_OVERHEAD);
+    }
+
+    private static Reservation reserve(long cost) throws PrintRejectedException, InterruptedException {
+        Object ticket = new Object();
+        boolean large = cost > SMALL_JOB;
+
+        lock.lock();
+        try {
+            long available = getBudget();
+            if (cost > available) {
+                throw new PrintRejectedException(String.format("Print job needs about %d MB of memory, but only %d MB is available for printing. " +
+                                                                       "Print fewer pages at once or increase the maximum heap size.", cost / MB, available / MB));
+            }
+
+            long wait = PrefsSearch.getInt(ArgValue.PRINTER_MEMORY_WAIT);
+            long deadline = System.currentTimeMillis() + wait;
+            if (large) { largeWaiting.add(ticket); }
+
+            try {
+                while(reserved + cost > available || (large && largeWaiting.peek() != ticket)) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new PrintRejectedException(String.format("Timed out after %d seconds waiting for %d MB of memory to print, %d MB is in use by other print jobs",
+                                                                       wait / 1000, cost / MB, reserved / MB));
+                    }
+                    log.debug("Waiting for {} MB to print, {}/{} MB reserved", cost / MB, reserved / MB, available / MB);
+                    changed.await(remaining, TimeUnit.MILLISECONDS);
+                }
+
+                reserved += cost;
+                log.trace("Reserved {} MB to print, {}/{} MB reserved", cost / MB, reserved / MB, available / MB);
+                return new Reservation(cost);
+            }
+            finally {
+                if (large) {
+                    largeWaiting.remove(ticket);
+                    changed.signalAll();
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rough heap needed to process a job, from its format, the flavor and size of each data item, and any page ranges
+     */
+    static long estimate(Type type, Format format, JSONArray printData) {
+        long data = 0;
+        long render = 0;
+
+        for(int i = 0; i < printData.length(); i++) {
+            JSONObject item = printData.optJSONObject(i);
+            long size;
+            Format itemFormat = format;
+            if (item == null) {
+                size = printData.optString(i, "").length();
+            } else {
+                size = decodedSize(item);
+                if (type == Type.RAW) {
+                    // raw jobs may convert images, pdfs and html into printer commands
+                    try { itemFormat = Format.valueOf(item.optString("format", "COMMAND").toUpperCase(Locale.ENGLISH)); }
+                    catch(IllegalArgumentException ignore) {}
+                }
+            }
+
+            switch(itemFormat) {
+                case DIRECT:
+                    // streamed to the spooler
+                    data += RAW_OVERHEAD;
+                    break;
+                case IMAGE:
+                    data += size * IMAGE_EXPANSION;
+                    render = Math.max(render, IMAGE_OVERHEAD);
+                    break;
+                case PDF:
+                    long pages = pageCount(item, size);
+                    data += Math.min(size, pdfMemory()) + pages * PDF_PAGE;
+                    if (type == Type.RAW) {
+                        // converted from a copy of the document per rendering thread
+                        int threads = PdfRasterizer.getThreads((int)Math.min(pages, Integer.MAX_VALUE));
+                        data += size + (threads - 1) * Math.min(size, pdfMemory());
+                        render = Math.max(render, threads * PDF_RENDER);
+                    } else {
+                        render = Math.max(render, PDF_RENDER);
+                    }
+                    break;
+                case HTML:
+                    data += size;
+                    render += HTML_RENDER;
+                    break;
+                case COMMAND:
+                default:
+                    // decoded data, plus the copy made when sending
+                    data += size * 2;
+                    render = Math.max(render, RAW_OVERHEAD);
+            }
+        }
+
+        return data + render;
+    }
+
+    private static long decodedSize(JSONObject item) {
+        long length = item.optString("data", "").length();
+        switch(Flavor.parse(item, Flavor.PLAIN)) {
+            case BASE64:
+                return length * 3 / 4;
+            case HEX:
+                return length / 2;
+            case FILE:
+            case XML:
+                return UNKNOWN_SIZE;
+            case PLAIN:
+            default:
+                return length;
+        }
+    }
+
+    private static long pageCount(JSONObject item, long size) {
+        JSONObject options = item == null? null:item.optJSONObject("options");
+        String ranges = options == null? "":options.optString("pageRanges", "");
+
+        long pages = 0;
+        for(String range : ranges.split(",")) {
+            String[] period = range.trim().split("-");
+            try {
+                int start = Integer.parseInt(period[0].trim());
+                int end = Integer.parseInt(period[period.length - 1].trim());
+                pages += Math.max(1, end - start + 1);
+            }
+            catch(NumberFormatException ignore) {}
+        }
+
+        return pages > 0? pages:Math.max(1, size / PDF_BYTES_PER_PAGE);
+    }
+
+    private static long pdfMemory() {
+        long megabytes = PrefsSearch.getInt(ArgValue.PRINTER_PDF_MEMORY);
+        return megabytes > 0? megabytes * MB:Long.MAX_VALUE;
+    }
+
+    private static long getBudget() {
+        if (budget < 0) {
+            long max = Runtime.getRuntime().maxMemory();
+            int percent = Math.max(1, Math.min(100, PrefsSearch.getInt(ArgValue.PRINTER_MEMORY_BUDGET)));
+            budget = max == Long.MAX_VALUE? Long.MAX_VALUE:max / 100 * percent;
+            log.debug("Allowing print jobs to reserve up to {} MB of memory", budget / MB);
+        }
+        return budget;
+    }
+
+}
@@ -93,10 +93,6 @@ public class PrintServiceMatcher {
      * @param printerSearch Search query to compare against service names.
      */
     public static NativePrinter matchPrinter(String printerSearch, boolean silent) {
-        NativePrinter exact = null;
-        NativePrinter begins = null;
-        NativePrinter partial = null;
-
         if (!silent) { log.debug("Searching for PrintService matching {}", printerSearch); }
 
         // Fix for https://github.com/qzind/tray/issues/931
@@ -107,55 +103,8 @@ public class PrintServiceMatcher {
             return defaultPrinter;
         }
 
-        printerSearch = printerSearch.toLowerCase(Locale.ENGLISH);
-
-        // Search services for matches
-        for(NativePrinter printer : getNativePrinterList(silent).values()) {
-            if (printer.getName() == null) {
-                continue;
-            }
-            String printerName = printer.getName().toLowerCase(Locale.ENGLISH);
-            if (printerName.equals(printerSearch)) {
-                exact = printer;
-                break;
-            }
-            if (printerName.startsWith(printerSearch)) {
-                begins = printer;
-                continue;
-            }
-            if (printerName.contains(printerSearch)) {
-                partial = printer;
-                continue;
-            }
-
-            if (false) {
-                // 1.9 compat: fallback for old style names
-                PrinterName name = printer.getLegacyName();
-                if (name == null || name.getValue() == null) { continue; }
-                printerName = name.getValue().toLowerCase(Locale.ENGLISH);
-                if (printerName.equals(printerSearch)) {
-                    exact = printer;
-                    continue;
-                }
-                if (printerName.startsWith(printerSearch)) {
-                    begins = printer;
-                    continue;
-                }
-                if (printerName.contains(printerSearch)) {
-                    partial = printer;
-                }
-            }
-        }
-
-        // Return closest match
-        NativePrinter use = null;
-        if (exact != null) {
-            use = exact;
-        } else if (begins != null) {
-            use = begins;
-        } else if (partial != null) {
-            use = partial;
-        }
+        // Closest match: exact, then starts with, then contains, ignoring case
+        NativePrinter use = getNativePrinterList(silent).search(printerSearch);
 
         if (use != null) {
             if(!silent) log.debug("Found match: {}", use.getPrintService().value().getName());
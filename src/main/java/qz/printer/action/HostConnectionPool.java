@@ -0,0 +1,230 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action;
+
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps raw TCP connections to network printers (e.g. port 9100) open between jobs.
+ * <p>
+ * Connections are keyed by host and port, checked for a closed peer before each checkout, and closed once idle for
+ * longer than {@code printer.host.idle} milliseconds. Most printers only accept a single connection at a time, so the
+ * idle time is kept short: long enough to reuse the connection across a burst of jobs, without locking other
+ * workstations out of the printer in between. A job waits at most {@code printer.host.wait} milliseconds for a
+ * connection another job is using. Setting {@code printer.host.connections} to {@code 0} opens a new connection for
+ * every job instead.
+ */
+public class HostConnectionPool {
+
+    private static final Logger log = LogManager.getLogger(HostConnectionPool.class);
+
+    // how long to wait for a pending close when checking a pooled connection
+    private static final int PEEK_TIMEOUT = 1;
+
+    private static GenericKeyedObjectPool<InetSocketAddress,Socket> pool;
+    private static boolean initialized;
+
+    // sockets opened but not yet checked out
+    private static final Set<Socket> opened = ConcurrentHashMap.newKeySet();
+
+    private static synchronized GenericKeyedObjectPool<InetSocketAddress,Socket> getPool() {
+        if (!initialized) {
+            initialized = true;
+            int perHost = PrefsSearch.getInt(ArgValue.PRINTER_HOST_CONNECTIONS);
+            if (perHost > 0) {
+                int idle = Math.max(100, PrefsSearch.getInt(ArgValue.PRINTER_HOST_IDLE));
+                int wait = Math.max(0, PrefsSearch.getInt(ArgValue.PRINTER_HOST_WAIT));
+
+                pool = new GenericKeyedObjectPool<>(new SocketFactory());
+                pool.setMaxTotalPerKey(perHost);
+                pool.setMaxIdlePerKey(perHost);
+                pool.setMaxWait(Duration.ofMillis(wait));
+                pool.setTestOnBorrow(true);
+                pool.setMinEvictableIdleDuration(Duration.ofMillis(idle));
+                pool.setDurationBetweenEvictionRuns(Duration.ofMillis(Math.max(100, idle / 2)));
+                pool.setNumTestsPerEvictionRun(-1); // check every idle connection each run
+                log.debug("Pooling up to {} connection(s) per host, closing after {}ms idle, waiting up to {}ms for one", perHost, idle, wait);
+            }
+        }
+
+        return pool;
+    }
+
+    /**
+     * Checks out a connection to {@code host:port}, opening one if none are idle.
+     * Waits up to {@code printer.host.wait} milliseconds for another job to finish if the host already has its maximum
+     * number of connections in use.
+     */
+    public static Connection open(String host, int port) throws IOException {
+        InetSocketAddress key = InetSocketAddress.createUnresolved(host, port);
+        GenericKeyedObjectPool<InetSocketAddress,Socket> pool = getPool();
+        if (pool == null) {
+            return new Connection(null, key, new Socket(host, port), true);
+        }
+
+        try {
+            Socket socket = pool.borrowObject(key);
+            return new Connection(pool, key, socket, opened.remove(socket));
+        }
+        catch(IOException e) {
+            throw e;
+        }
+        catch(NoSuchElementException e) {
+            throw new IOException(String.format("Timed out waiting for the connection to %s:%s in use by another job", host, port), e);
+        }
+        catch(Exception e) {
+            throw new IOException(String.format("Unable to connect to %s:%s", host, port), e);
+        }
+    }
+
+    public static synchronized void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        initialized = false;
+    }
+
+    /**
+     * A checked out connection, returned to the pool on {@code close()} unless it was invalidated
+     */
+    public static class Connection implements AutoCloseable {
+        private final GenericKeyedObjectPool<InetSocketAddress,Socket> pool;
+        private final InetSocketAddress key;
+        private final Socket socket;
+        private final boolean opened;
+        private boolean invalid;
+
+        private Connection(GenericKeyedObjectPool<InetSocketAddress,Socket> pool, InetSocketAddress key, Socket socket, boolean opened) {
+            this.pool = pool;
+            this.key = key;
+            this.socket = socket;
+            this.opened = opened;
+        }
+
+        /**
+         * @return {@code true} if the connection was opened for this checkout rather than reused, in which case the
+         * printer may have restarted since the last job
+         */
+        public boolean isOpened() {
+            return opened;
+        }
+
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        /**
+         * Marks the connection as broken so it is closed rather than reused
+         */
+        public void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (pool == null) {
+                socket.close();
+                return;
+            }
+
+            try {
+                if (invalid) {
+                    pool.invalidateObject(key, socket);
+                } else {
+                    socket.getOutputStream().flush();
+                    pool.returnObject(key, socket);
+                }
+            }
+            catch(IOException e) {
+                invalidate();
+                close();
+                throw e;
+            }
+            catch(Exception e) {
+                log.warn("Unable to release connection to {}", key, e);
+            }
+        }
+    }
+
+    private static class SocketFactory extends BaseKeyedPooledObjectFactory<InetSocketAddress,Socket> {
+
+        @Override
+        public Socket create(InetSocketAddress key) throws IOException {
+            log.debug("Opening connection to {}:{}", key.getHostString(), key.getPort());
+            Socket socket = new Socket(key.getHostString(), key.getPort());
+            socket.setKeepAlive(true);
+            opened.add(socket);
+            return socket;
+        }
+
+        @Override
+        public PooledObject<Socket> wrap(Socket socket) {
+            return new DefaultPooledObject<>(socket);
+        }
+
+        /**
+         * A printer that timed out the connection will have closed its end; a read with a very short timeout tells
+         * us without sending it anything
+         */
+        @Override
+        public boolean validateObject(InetSocketAddress key, PooledObject<Socket> p) {
+            Socket socket = p.getObject();
+            if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+                return false;
+            }
+
+            try {
+                int timeout = socket.getSoTimeout();
+                socket.setSoTimeout(PEEK_TIMEOUT);
+                try {
+                    InputStream in = socket.getInputStream();
+                    // discard any status the printer sent back, nothing else reads from it
+                    while(true) {
+                        if (in.read() == -1) { return false; }
+                    }
+                }
+                catch(SocketTimeoutException e) {
+                    return true;
+                }
+                finally {
+                    if (!socket.isClosed()) { socket.setSoTimeout(timeout); }
+                }
+            }
+            catch(IOException e) {
+                log.debug("Discarding connection to {}: {}", key, e.getMessage());
+                return false;
+            }
+        }
+
+        @Override
+        public void destroyObject(InetSocketAddress key, PooledObject<Socket> p) throws IOException {
+            log.debug("Closing connection to {}:{}", key.getHostString(), key.getPort());
+            opened.remove(p.getObject());
+            p.getObject().close();
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action;
+
+import com.ibm.icu.text.ArabicShapingException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import qz.common.ByteArrayBuilder;
+import qz.utils.FileUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Raw commands, such as a ZPL or EPL label, with {@code {{field}}} placeholders filled in from each record of a job.
+ * <p>
+ * A template is parsed once into the literal text between its fields, and the literal text is encoded once per
+ * encoding, so printing a batch of records only encodes the field values and copies the rest. IBM864 is the exception:
+ * its Arabic shaping depends on neighbouring letters, so each record is merged to text first and converted whole.
+ * Templates are either registered by a connection, or shared by every connection as files in the {@code templates}
+ * folder of the shared directory.
+ */
+public class LabelTemplate {
+
+    private static final Logger log = LogManager.getLogger(LabelTemplate.class);
+
+    public static final String SHARED_FOLDER = "templates";
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_][A-Za-z0-9_.-]*");
+    private static final Pattern VALID_FIELD = Pattern.compile("[A-Za-z0-9_.-]+");
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private static final Map<String,LabelTemplate> shared = new ConcurrentHashMap<>();
+
+    private final String name;
+    // always one more literal than fields, either may be empty
+    private final String[] literals;
+    private final String[] fields;
+    private final long lastModified;
+    private final int literalLength;
+
+    // literals encoded by destination encoding
+    private final Map<String,byte[][]> encoded = new ConcurrentHashMap<>();
+
+    private LabelTemplate(String name, String[] literals, String[] fields, long lastModified) {
+        this.name = name;
+        this.literals = literals;
+        this.fields = fields;
+        this.lastModified = lastModified;
+
+        int length = 0;
+        for(String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parses {@code source} into its literal text and fields
+     *
+     * @throws IllegalArgumentException if the name or a field is invalid, or a field isn't closed
+     */
+    public static LabelTemplate compile(String name, String source) {
+        return compile(name, source, 0);
+    }
+
+    private static LabelTemplate compile(String name, String source, long lastModified) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid template name \"" + name + "\"");
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        int start = 0;
+        int open;
+        while((open = source.indexOf(OPEN, start)) >= 0) {
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException(String.format("Template \"%s\" has an unclosed field at %d", name, open));
+            }
+            String field = source.substring(open + OPEN.length(), close).trim();
+            if (!VALID_FIELD.matcher(field).matches()) {
+                throw new IllegalArgumentException(String.format("Template \"%s\" has an invalid field \"%s\" at %d", name, field, open));
+            }
+
+            literals.add(source.substring(start, open));
+            fields.add(field);
+            start = close + CLOSE.length();
+        }
+        literals.add(source.substring(start));
+
+        return new LabelTemplate(name, literals.toArray(new String[0]), fields.toArray(new String[0]), lastModified);
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && VALID_NAME.matcher(name).matches();
+    }
+
+    /**
+     * Finds a template shared in {@code SHARED_DIR/templates}, reading it again only if the file changed
+     *
+     * @return The template, or {@code null} if there is no such file
+     */
+    public static LabelTemplate findShared(String name) throws IOException {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid template name \"" + name + "\"");
+        }
+
+        Path path = FileUtilities.SHARED_DIR.resolve(SHARED_FOLDER).resolve(name);
+        File file = path.toFile();
+        if (!file.isFile()) {
+            shared.remove(name);
+            return null;
+        }
+
+        long modified = file.lastModified();
+        LabelTemplate template = shared.get(name);
+        if (template == null || template.lastModified != modified) {
+            log.debug("Loading shared template {}", path);
+            template = compile(name, new String(Files.readAllBytes(path), StandardCharsets.UTF_8), modified);
+            shared.put(name, template);
+        }
+
+        return template;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String[] getFields() {
+        return fields.clone();
+    }
+
+    /**
+     * @return A rough number of characters {@code records} merge into, to size buffers and reserve memory
+     */
+    public long estimateLength(JSONArray records) {
+        long length = (long)literalLength * records.length();
+        for(int i = 0; i < records.length(); i++) {
+            JSONObject record = records.optJSONObject(i);
+            if (record == null) { continue; }
+            for(String field : fields) {
+                length += record.optString(field, "").length();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Appends the template once per record to {@code out}, with its fields replaced by the record's values
+     *
+     * @param encoding Destination encoding, handled as {@code PrintRaw} handles plain commands
+     * @throws IllegalArgumentException if a record isn't an object or is missing a field
+     */
+    public void merge(JSONArray records, String encoding, ByteArrayBuilder out) throws ArabicShapingException, IOException {
+        out.ensureCapacity((int)Math.min(Integer.MAX_VALUE - 8, out.getLength() + estimateLength(records)));
+
+        // arabic letters are shaped by their neighbours, which may be across a field boundary
+        if (PrintRaw.isShaped(encoding)) {
+            StringBuilder merged = new StringBuilder();
+            for(int i = 0; i < records.length(); i++) {
+                JSONObject record = getRecord(records, i);
+                merged.setLength(0);
+                merged.append(literals[0]);
+                for(int f = 0; f < fields.length; f++) {
+                    merged.append(getValue(record, i, f)).append(literals[f + 1]);
+                }
+                out.append(PrintRaw.getBytes(merged.toString(), encoding));
+            }
+            return;
+        }
+
+        byte[][] literalBytes = encode(encoding);
+        for(int i = 0; i < records.length(); i++) {
+            JSONObject record = getRecord(records, i);
+            out.append(literalBytes[0]);
+            for(int f = 0; f < fields.length; f++) {
+                String value = getValue(record, i, f);
+                if (!value.isEmpty()) {
+                    out.append(PrintRaw.getBytes(value, encoding));
+                }
+                out.append(literalBytes[f + 1]);
+            }
+        }
+    }
+
+    private JSONObject getRecord(JSONArray records, int i) {
+        JSONObject record = records.optJSONObject(i);
+        if (record == null) {
+            throw new IllegalArgumentException(String.format("Record %d for template \"%s\" is not an object", i, name));
+        }
+        return record;
+    }
+
+    /**
+     * @return The record's value for field {@code f}, empty if it's {@code null}
+     */
+    private String getValue(JSONObject record, int i, int f) {
+        Object value = record.opt(fields[f]);
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("Record %d for template \"%s\" has no \"%s\" field", i, name, fields[f]));
+        }
+        return value == JSONObject.NULL? "":String.valueOf(value);
+    }
+
+    private byte[][] encode(String encoding) throws ArabicShapingException, IOException {
+        byte[][] bytes = encoded.get(encoding);
+        if (bytes == null) {
+            bytes = new byte[literals.length][];
+            for(int i = 0; i < literals.length; i++) {
+                bytes[i] = PrintRaw.getBytes(literals[i], encoding);
+            }
+            encoded.put(encoding, bytes);
+        }
+        return bytes;
+    }
+
+}
@@ -1,6 +1,5 @@
 package qz.printer.action;
 
-import org.apache.commons.codec.binary.Base64InputStream;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
@@ -20,7 +19,6 @@ import javax.print.SimpleDoc;
 import javax.print.attribute.HashPrintRequestAttributeSet;
 import javax.print.attribute.PrintRequestAttributeSet;
 import javax.print.attribute.standard.JobName;
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -34,6 +32,7 @@ public class PrintDirect extends PrintRaw {
 
     private ArrayList<String> prints = new ArrayList<>();
     private ArrayList<PrintingUtilities.Flavor> flavors = new ArrayList<>();
+    private ArrayList<String> xmlTags = new ArrayList<>();
 
 
     @Override
@@ -49,6 +48,8 @@ public class PrintDirect extends PrintRaw {
 
             prints.add(data.getString("data"));
             flavors.add(PrintingUtilities.Flavor.parse(data, PrintingUtilities.Flavor.PLAIN));
+            JSONObject opt = data.optJSONObject("options");
+            xmlTags.add(opt == null? null:opt.optString("xmlTag", null));
         }
     }
 
@@ -62,16 +63,13 @@ public class PrintDirect extends PrintRaw {
             InputStream stream = null;
 
             try {
+                // decoded as the spooler reads it, rather than holding the whole job in memory first
                 switch(flavors.get(i)) {
-                    case BASE64:
-                        stream = new Base64InputStream(new ByteArrayInputStream(prints.get(i).getBytes("UTF-8")));
-                        break;
                     case FILE:
                         stream = new DataInputStream(new URL(prints.get(i)).openStream());
                         break;
-                    case PLAIN:
                     default:
-                        stream = new ByteArrayInputStream(prints.get(i).getBytes("UTF-8"));
+                        stream = flavors.get(i).open(prints.get(i), xmlTags.get(i));
                         break;
                 }
 
@@ -94,6 +92,7 @@ public class PrintDirect extends PrintRaw {
     public void cleanup() {
         prints.clear();
         flavors.clear();
+        xmlTags.clear();
     }
 
 }
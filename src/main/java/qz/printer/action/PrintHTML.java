@@ -33,6 +33,7 @@ import javax.print.attribute.standard.CopiesSupported;
 import javax.print.attribute.standard.Sides;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.awt.print.PageFormat;
 import java.awt.print.PrinterException;
 import java.io.IOException;
@@ -44,6 +45,10 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PrintHTML extends PrintImage implements PrintProcessor {
 
@@ -151,22 +156,28 @@ public class PrintHTML extends PrintImage implements PrintProcessor {
             printLegacy(output, options);
         } else if (options.getPixelOptions().isRasterize()) {
             //grab a snapshot of the pages for PrintImage instead of printing directly
-            for(WebAppModel model : models) {
-                try { images.add(WebApp.raster(model)); }
-                catch(Throwable t) {
-                    if (model.getZoom() > 1 && t instanceof IllegalArgumentException) {
-                        //probably a unrecognized image loader error, try at default zoom
-                        try {
-                            log.warn("Capture failed with increased zoom, attempting with default value");
-                            model.setZoom(1);
-                            images.add(WebApp.raster(model));
-                        }
-                        catch(Throwable tt) {
-                            throw new PrinterException(tt.getMessage());
-                        }
-                    } else {
-                        throw new PrinterException(t.getMessage());
+            if (models.size() > 1) {
+                //pages render on separate engines at once, collected back in order
+                try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                    List<Future<BufferedImage>> captures = new ArrayList<>(models.size());
+                    for(WebAppModel model : models) {
+                        captures.add(executor.submit(() -> raster(model)));
                     }
+                    for(Future<BufferedImage> capture : captures) {
+                        images.add(capture.get());
+                    }
+                }
+                catch(ExecutionException e) {
+                    if (e.getCause() instanceof PrinterException) { throw (PrinterException)e.getCause(); }
+                    throw new PrinterException(e.getCause().getMessage());
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PrinterException(e.getMessage());
+                }
+            } else {
+                for(WebAppModel model : models) {
+                    images.add(raster(model));
                 }
             }
 
@@ -296,6 +307,25 @@ public class PrintHTML extends PrintImage implements PrintProcessor {
         }
     }
 
+    private static BufferedImage raster(WebAppModel model) throws PrinterException {
+        try { return WebApp.raster(model); }
+        catch(Throwable t) {
+            if (model.getZoom() > 1 && t instanceof IllegalArgumentException) {
+                //probably a unrecognized image loader error, try at default zoom
+                try {
+                    log.warn("Capture failed with increased zoom, attempting with default value");
+                    model.setZoom(1);
+                    return WebApp.raster(model);
+                }
+                catch(Throwable tt) {
+                    throw new PrinterException(tt.getMessage());
+                }
+            } else {
+                throw new PrinterException(t.getMessage());
+            }
+        }
+    }
+
     private void printLegacy(PrintOutput output, PrintOptions options) throws PrinterException {
         PrintOptions.Pixel pxlOpts = options.getPixelOptions();
 
@@ -0,0 +1,122 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
+
+import javax.print.Doc;
+import javax.print.DocPrintJob;
+import javax.print.PrintException;
+import javax.print.attribute.PrintRequestAttributeSet;
+import javax.print.event.PrintJobEvent;
+import javax.print.event.PrintJobListener;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tracks a {@code DocPrintJob} through its {@code PrintJobListener} events.
+ * <p>
+ * The returned future completes on the first event that means the spooler is done with the job: data transferred,
+ * job completed or no more events. Failed and cancelled jobs complete exceptionally with a {@code PrintException}.
+ */
+public class PrintJobCompletion implements PrintJobListener {
+
+    private static final Logger log = LogManager.getLogger(PrintJobCompletion.class);
+
+    private final CompletableFuture<PrintJobEvent> future = new CompletableFuture<>();
+
+    private PrintJobCompletion() {}
+
+    /**
+     * Sends {@code doc} to {@code printJob} without waiting for the spooler
+     *
+     * @return Future completed by the job's listener events
+     */
+    public static CompletableFuture<PrintJobEvent> submit(DocPrintJob printJob, Doc doc, PrintRequestAttributeSet attributes) throws PrintException {
+        PrintJobCompletion completion = new PrintJobCompletion();
+        printJob.addPrintJobListener(completion);
+
+        log.trace("Sending print job to printer");
+        printJob.print(doc, attributes);
+
+        return completion.future;
+    }
+
+    /**
+     * Sends {@code doc} to {@code printJob}, waiting up to {@code printer.job.timeout} milliseconds for the spooler
+     */
+    public static void print(DocPrintJob printJob, Doc doc, PrintRequestAttributeSet attributes) throws PrintException {
+        await(submit(printJob, doc, attributes), PrefsSearch.getInt(ArgValue.PRINTER_JOB_TIMEOUT));
+    }
+
+    /**
+     * Waits for a submitted job to finish
+     *
+     * @param timeout Milliseconds to wait, or {@code 0} or less to wait indefinitely
+     */
+    public static PrintJobEvent await(CompletableFuture<PrintJobEvent> future, long timeout) throws PrintException {
+        try {
+            PrintJobEvent event = timeout > 0? future.get(timeout, TimeUnit.MILLISECONDS):future.get();
+            log.trace("Print job received by printer");
+            return event;
+        }
+        catch(ExecutionException e) {
+            if (e.getCause() instanceof PrintException) {
+                throw (PrintException)e.getCause();
+            }
+            throw new PrintException(e);
+        }
+        catch(TimeoutException e) {
+            throw new PrintException(String.format("Timed out after %sms waiting for the print job to be spooled", timeout));
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PrintException("Interrupted while waiting for the print job to be spooled");
+        }
+    }
+
+    @Override
+    public void printDataTransferCompleted(PrintJobEvent printJobEvent) {
+        log.debug("{}", printJobEvent);
+        future.complete(printJobEvent);
+    }
+
+    @Override
+    public void printJobCompleted(PrintJobEvent printJobEvent) {
+        log.debug("{}", printJobEvent);
+        future.complete(printJobEvent);
+    }
+
+    @Override
+    public void printJobFailed(PrintJobEvent printJobEvent) {
+        log.error("{}", printJobEvent);
+        future.completeExceptionally(new PrintException("Print job failed"));
+    }
+
+    @Override
+    public void printJobCanceled(PrintJobEvent printJobEvent) {
+        log.warn("{}", printJobEvent);
+        future.completeExceptionally(new PrintException("Print job cancelled"));
+    }
+
+    @Override
+    public void printJobNoMoreEvents(PrintJobEvent printJobEvent) {
+        log.debug("{}", printJobEvent);
+        future.complete(printJobEvent);
+    }
+
+    @Override
+    public void printJobRequiresAttention(PrintJobEvent printJobEvent) {
+        log.info("{}", printJobEvent);
+    }
+
+}
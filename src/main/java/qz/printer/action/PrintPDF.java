@@ -6,7 +6,6 @@ import qz.utils.SystemUtilities;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.pdfbox.io.IOUtils;
-import org.apache.pdfbox.multipdf.Splitter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -22,6 +21,7 @@ import qz.printer.PrintOptions;
 import qz.printer.PrintOutput;
 import qz.printer.action.pdf.BookBundle;
 import qz.printer.action.pdf.PDFWrapper;
+import qz.printer.action.pdf.PdfLoader;
 import qz.utils.ConnectionUtilities;
 import qz.utils.PrintingUtilities;
 
@@ -38,16 +38,13 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class PrintPDF extends PrintPixel implements PrintProcessor {
 
     private static final Logger log = LogManager.getLogger(PrintPDF.class);
 
     private List<PDDocument> originals;
-    private List<PDDocument> printables;
-    private Splitter splitter = new Splitter();
+    private List<PageSelection> printables;
 
     private double docWidth = 0;
     private double docHeight = 0;
@@ -88,27 +85,7 @@ public class PrintPDF extends PrintPixel implements PrintProcessor {
                 altFontRendering = dataOpt.optBoolean("altFontRendering", false);
 
                 if (!dataOpt.isNull("pageRanges")) {
-                    String[] ranges = dataOpt.optString("pageRanges", "").split(",");
-                    for(String range : ranges) {
-                        range = range.trim();
-                        if(range.isEmpty()) {
-                            continue;
-                        }
-                        String[] period = range.split("-");
-
-                        try {
-                            int start = Integer.parseInt(period[0]);
-                            pagesToPrint.add(start);
-
-                            if (period.length > 1) {
-                                int end = Integer.parseInt(period[period.length - 1]);
-                                pagesToPrint.addAll(IntStream.rangeClosed(start, end).boxed().collect(Collectors.toSet()));
-                            }
-                        }
-                        catch(NumberFormatException nfe) {
-                            log.warn("Unable to parse page range {}.", range);
-                        }
-                    }
+                    pagesToPrint.addAll(PdfLoader.parsePageRanges(dataOpt.optString("pageRanges", "")));
                 }
             }
 
@@ -120,10 +97,14 @@ public class PrintPDF extends PrintPixel implements PrintProcessor {
                     case PLAIN:
                         // There's really no such thing as a 'PLAIN' PDF, assume it's a URL
                     case FILE:
-                        doc = PDDocument.load(ConnectionUtilities.getInputStream(data.getString("data"), true));
+                        try(InputStream in = ConnectionUtilities.getInputStream(data.getString("data"), true)) {
+                            doc = PdfLoader.load(in);
+                        }
                         break;
                     default:
-                        doc = PDDocument.load(new ByteArrayInputStream(flavor.read(data.getString("data"))));
+                        try(InputStream in = flavor.open(data.getString("data"), null)) {
+                            doc = PdfLoader.load(in);
+                        }
                 }
 
                 if (pxlOpts.getBounds() != null) {
@@ -139,19 +120,12 @@ public class PrintPDF extends PrintPixel implements PrintProcessor {
                     }
                 }
 
-                if (pagesToPrint.isEmpty()) {
-                    pagesToPrint.addAll(IntStream.rangeClosed(1, doc.getNumberOfPages()).boxed().collect(Collectors.toSet()));
-                }
-
                 originals.add(doc);
 
-                List<PDDocument> splitPages = splitter.split(doc);
-                originals.addAll(splitPages); //ensures non-ranged page will still get closed
-
-                for(int pg = 0; pg < splitPages.size(); pg++) {
-                    if (pagesToPrint.contains(pg + 1)) { //ranges are 1-indexed
-                        printables.add(splitPages.get(pg));
-                    }
+                // pages are printed straight from the loaded document, rather than split into a document each
+                int[] pages = PdfLoader.selectPages(pagesToPrint, doc.getNumberOfPages());
+                if (pages.length > 0) {
+                    printables.add(new PageSelection(doc, pages));
                 }
             }
             catch(FileNotFoundException e) {
@@ -162,7 +136,7 @@ public class PrintPDF extends PrintPixel implements PrintProcessor {
             }
         }
 
-        log.debug("Parsed {} files for printing", printables.size());
+        log.debug("Parsed {} pages for printing", printables.stream().mapToInt(selection -> selection.pages.length).sum());
     }
 
     @Override
@@ -209,29 +183,40 @@ public class PrintPDF extends PrintPixel implements PrintProcessor {
             }
         }
 
+        //trick pdfbox into an alternate doc size if specified
+        boolean customSize = docWidth > 0 || docHeight > 0;
+        if (customSize) {
+            scale = Scaling.SCALE_TO_FIT; //to get custom size we need to force scaling
+
+            //pdf uses imageable area from Paper, so this can be safely removed
+            attributes.remove(MediaPrintableArea.class);
+        }
+
         BookBundle bundle = new BookBundle();
 
-        for(PDDocument doc : printables) {
-            PageFormat page = job.getPageFormat(null);
-            applyDefaultSettings(pxlOpts, page, output.getSupportedMedia());
+        for(PageSelection selection : printables) {
+            PDDocument doc = selection.document;
 
-            //trick pdfbox into an alternate doc size if specified
-            if (docWidth > 0 || docHeight > 0) {
-                Paper paper = page.getPaper();
+            // pages are rendered as the print job requests them
+            PDFWrapper wrapper = new PDFWrapper(doc, selection.pages, scale, false, ignoreTransparency, altFontRendering,
+                                                (float)(useDensity * pxlOpts.getUnits().as1Inch()),
+                                                false, pxlOpts.getOrientation(), hints);
 
-                if (docWidth <= 0) { docWidth = page.getImageableWidth(); }
-                if (docHeight <= 0) { docHeight = page.getImageableHeight(); }
+            for(int index : selection.pages) {
+                PDPage pd = doc.getPage(index);
+                PageFormat page = job.getPageFormat(null);
+                applyDefaultSettings(pxlOpts, page, output.getSupportedMedia());
 
-                paper.setImageableArea(paper.getImageableX(), paper.getImageableY(), docWidth, docHeight);
-                page.setPaper(paper);
+                if (customSize) {
+                    Paper paper = page.getPaper();
 
-                scale = Scaling.SCALE_TO_FIT; //to get custom size we need to force scaling
+                    if (docWidth <= 0) { docWidth = page.getImageableWidth(); }
+                    if (docHeight <= 0) { docHeight = page.getImageableHeight(); }
 
-                //pdf uses imageable area from Paper, so this can be safely removed
-                attributes.remove(MediaPrintableArea.class);
-            }
+                    paper.setImageableArea(paper.getImageableX(), paper.getImageableY(), docWidth, docHeight);
+                    page.setPaper(paper);
+                }
 
-            for(PDPage pd : doc.getPages()) {
                 if (pxlOpts.getRotation() % 360 != 0) {
                     rotatePage(doc, pd, pxlOpts.getRotation());
                 }
@@ -253,13 +238,9 @@ public class PrintPDF extends PrintPixel implements PrintProcessor {
                         pd.setRotation(pd.getRotation() + 180);
                     }
                 }
-            }
-
-            PDFWrapper wrapper = new PDFWrapper(doc, scale, false, ignoreTransparency, altFontRendering,
-                                                (float)(useDensity * pxlOpts.getUnits().as1Inch()),
-                                                false, pxlOpts.getOrientation(), hints);
 
-            bundle.append(wrapper, page, doc.getNumberOfPages());
+                bundle.append(wrapper, page);
+            }
         }
 
         if (pxlOpts.getSpoolSize() > 0 && bundle.getNumberOfPages() > pxlOpts.getSpoolSize()) {
@@ -311,6 +292,19 @@ public class PrintPDF extends PrintPixel implements PrintProcessor {
         }
     }
 
+    /**
+     * Pages of a loaded document to be printed
+     */
+    private static class PageSelection {
+        final PDDocument document;
+        final int[] pages;
+
+        PageSelection(PDDocument document, int[] pages) {
+            this.document = document;
+            this.pages = pages;
+        }
+    }
+
     @Override
     public void cleanup() {
         for(PDDocument doc : originals) {
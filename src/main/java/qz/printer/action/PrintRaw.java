@@ -14,22 +14,26 @@ import qz.utils.SystemUtilities;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.rendering.PDFRenderer;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
 import qz.common.ByteArrayBuilder;
 import qz.common.Constants;
+import qz.exception.InvalidRawImageException;
 import qz.exception.NullCommandException;
 import qz.exception.NullPrintServiceException;
 import qz.printer.PrintOptions;
 import qz.printer.PrintOutput;
 import qz.printer.action.html.WebApp;
 import qz.printer.action.html.WebAppModel;
+import qz.printer.action.pdf.PdfLoader;
+import qz.printer.action.pdf.PdfRasterizer;
+import qz.printer.action.raw.Dither;
+import qz.printer.action.raw.EscPosRasterEncoder;
 import qz.printer.action.raw.ImageWrapper;
 import qz.printer.action.raw.LanguageType;
+import qz.printer.action.raw.ZplGraphicEncoder;
 import qz.printer.info.NativePrinter;
 import qz.printer.status.CupsUtils;
 import qz.utils.*;
@@ -42,18 +46,20 @@ import javax.print.*;
 import javax.print.attribute.HashPrintRequestAttributeSet;
 import javax.print.attribute.PrintRequestAttributeSet;
 import javax.print.attribute.standard.JobName;
-import javax.print.event.PrintJobEvent;
-import javax.print.event.PrintJobListener;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Map;
 
 /**
  * Sends raw data to the printer, overriding your operating system's print
@@ -67,6 +73,9 @@ public class PrintRaw implements PrintProcessor {
 
     private ByteArrayBuilder commands;
 
+    // ZPL graphics the commands recall from printer memory, by name
+    private final Map<String,ZplGraphicCache.Graphic> graphics = Collections.synchronizedMap(new LinkedHashMap<>());
+
     private String destEncoding = null;
 
     private enum Backend {
@@ -84,16 +93,27 @@ public class PrintRaw implements PrintProcessor {
         return PrintingUtilities.Format.COMMAND;
     }
 
-    private byte[] getBytes(String str, String destEncoding) throws ArabicShapingException, IOException {
+    static byte[] getBytes(String str, String destEncoding) throws ArabicShapingException, IOException {
+        if (isShaped(destEncoding)) {
+            return ArabicConversionUtilities.convertToIBM864(str);
+        }
+        return str.getBytes(destEncoding);
+    }
+
+    /**
+     * @return {@code true} for IBM864, where each Arabic letter's form depends on its neighbours, so text has to be
+     * converted whole rather than in pieces
+     */
+    static boolean isShaped(String destEncoding) {
         switch(destEncoding.toLowerCase(Locale.ENGLISH)) {
             case "ibm864":
             case "cp864":
             case "csibm864":
             case "864":
             case "ibm-864":
-                return ArabicConversionUtilities.convertToIBM864(str);
+                return true;
             default:
-                return str.getBytes(destEncoding);
+                return false;
         }
     }
 
@@ -122,13 +142,9 @@ public class PrintRaw implements PrintProcessor {
             try {
                 switch(format) {
                     case HTML:
-                        commands.append(getHtmlWrapper(cmd, opt, flavor, rawOpts, pxlOpts).getImageCommand(opt));
-                        break;
                     case IMAGE:
-                        commands.append(getImageWrapper(cmd, opt, flavor, rawOpts, pxlOpts).getImageCommand(opt));
-                        break;
                     case PDF:
-                        commands.append(getPdfWrapper(cmd, opt, flavor, rawOpts, pxlOpts).getImageCommand(opt));
+                        appendConverted(format, cmd, opt, flavor, rawOpts, pxlOpts);
                         break;
                     case COMMAND:
                     default:
@@ -137,7 +153,9 @@ public class PrintRaw implements PrintProcessor {
                                 commands.append(getBytes(cmd, destEncoding));
                                 break;
                             default:
-                                commands.append(seekConversion(flavor.read(cmd, opt.optString("xmlTag", null)), rawOpts));
+                                try(InputStream in = open(flavor, cmd, opt.optString("xmlTag", null), rawOpts)) {
+                                    commands.append(in);
+                                }
                         }
                         break;
                 }
@@ -148,6 +166,21 @@ public class PrintRaw implements PrintProcessor {
         }
     }
 
+    /**
+     * Merges each of {@code records} into {@code template}, in place of the data a {@code print} call sends
+     */
+    public void parseTemplate(LabelTemplate template, JSONArray records, PrintOptions options) throws UnsupportedOperationException {
+        destEncoding = options.getRawOptions().getDestEncoding();
+        if (destEncoding == null || destEncoding.isEmpty()) { destEncoding = Charset.defaultCharset().name(); }
+
+        try {
+            template.merge(records, destEncoding, commands);
+        }
+        catch(Exception e) {
+            throw new UnsupportedOperationException(String.format("Cannot merge %d record(s) into template \"%s\": %s", records.length(), template.getName(), e.getLocalizedMessage()), e);
+        }
+    }
+
     private byte[] seekConversion(byte[] rawBytes, PrintOptions.Raw rawOpts) {
         if (rawOpts.getSrcEncoding() != null) {
             if(rawOpts.getSrcEncoding().equals(rawOpts.getDestEncoding()) || rawOpts.getDestEncoding() == null) {
@@ -165,53 +198,166 @@ public class PrintRaw implements PrintProcessor {
         return rawBytes;
     }
 
-    private ImageWrapper getImageWrapper(String data, JSONObject opt, PrintingUtilities.Flavor flavor, PrintOptions.Raw rawOpts, PrintOptions.Pixel pxlOpts) throws IOException {
-        BufferedImage bi;
-        // 2.0 compat
-        if (data.startsWith("data:image/") && data.contains(";base64,")) {
-            String[] parts = data.split(";base64,");
-            data = parts[parts.length - 1];
-            flavor = PrintingUtilities.Flavor.BASE64;
+    /**
+     * Opens {@code data} to be decoded as it's read, unless converting its encoding requires the whole payload up front
+     */
+    private InputStream open(PrintingUtilities.Flavor flavor, String data, String xmlTag, PrintOptions.Raw rawOpts) throws IOException {
+        if (rawOpts.getSrcEncoding() != null) {
+            return new ByteArrayInputStream(seekConversion(flavor.read(data, xmlTag), rawOpts));
         }
+        return flavor.open(data, xmlTag);
+    }
 
-        switch(flavor) {
-            case PLAIN:
-                // There's really no such thing as a 'PLAIN' image, assume it's a URL
-            case FILE:
-                bi = ImageIO.read(ConnectionUtilities.getInputStream(data, true));
+    /**
+     * Converts an image, PDF or HTML to printer commands, reusing the commands from an earlier conversion of the same
+     * content with the same options if they're still cached
+     */
+    private void appendConverted(PrintingUtilities.Format format, String data, JSONObject opt, PrintingUtilities.Flavor flavor, PrintOptions.Raw rawOpts, PrintOptions.Pixel pxlOpts) throws IOException, InvalidRawImageException {
+        byte[] source = null;
+        if (format == PrintingUtilities.Format.IMAGE) {
+            // 2.0 compat
+            if (data.startsWith("data:image/") && data.contains(";base64,")) {
+                String[] parts = data.split(";base64,");
+                data = parts[parts.length - 1];
+                flavor = PrintingUtilities.Flavor.BASE64;
+            }
+            source = readSource(data, flavor, rawOpts);
+        } else if (format == PrintingUtilities.Format.PDF) {
+            source = readSource(data, flavor, rawOpts);
+        }
+
+        // html loaded from a url may change without its address changing
+        RawImageCache.Key key = null;
+        if (RawImageCache.isEnabled() && (source != null || flavor != PrintingUtilities.Flavor.FILE)) {
+            key = RawImageCache.key()
+                    .add(format).add(destEncoding).add(opt)
+                    .add(pxlOpts.getOrientation()).add(pxlOpts.getRotation()).add(pxlOpts.getDensity()).add(pxlOpts.getUnits())
+                    .add(pxlOpts.getDithering()).add(pxlOpts.getInterpolation())
+                    .add(ZplGraphicCache.isEnabled())
+                    // html text is decoded using the source encoding
+                    .add(source != null? source:(flavor + ":" + rawOpts.getSrcEncoding() + ":" + data).getBytes(StandardCharsets.UTF_8))
+                    .build();
+
+            RawImageCache.Entry cached = RawImageCache.get(key);
+            // recalls that would print another image in this job with the same name are converted again
+            if (cached != null && !collides(cached.getGraphics())) {
+                commands.append(cached.getCommands());
+                for(ZplGraphicCache.Graphic graphic : cached.getGraphics()) {
+                    graphics.putIfAbsent(graphic.getName(), graphic);
+                }
+                return;
+            }
+        }
+
+        int start = commands.getLength();
+        List<ZplGraphicCache.Graphic> used = Collections.synchronizedList(new ArrayList<>());
+        switch(format) {
+            case HTML:
+                commands.append(getImageCommand(getHtmlWrapper(data, opt, flavor, rawOpts, pxlOpts), opt, used));
+                break;
+            case IMAGE:
+                commands.append(getImageCommand(getWrapper(ImageIO.read(new ByteArrayInputStream(source)), opt, pxlOpts), opt, used));
+                break;
+            case PDF:
+                appendPdfCommands(source, opt, pxlOpts, used);
                 break;
-            default:
-                bi = ImageIO.read(new ByteArrayInputStream(seekConversion(flavor.read(data), rawOpts)));
         }
 
-        return getWrapper(bi, opt, pxlOpts);
+        for(ZplGraphicCache.Graphic graphic : used) {
+            graphics.putIfAbsent(graphic.getName(), graphic);
+        }
+        if (key != null) {
+            ByteBuffer converted = commands.slice(start, commands.getLength());
+            byte[] bytes = new byte[converted.remaining()];
+            converted.get(bytes);
+            RawImageCache.put(key, new RawImageCache.Entry(bytes, new ArrayList<>(used)));
+        }
     }
 
-    private ImageWrapper getPdfWrapper(String data, JSONObject opt, PrintingUtilities.Flavor flavor, PrintOptions.Raw rawOpts, PrintOptions.Pixel pxlOpts) throws IOException {
-        PDDocument doc;
-
+    /**
+     * Reads the whole of an image or PDF
+     */
+    private byte[] readSource(String data, PrintingUtilities.Flavor flavor, PrintOptions.Raw rawOpts) throws IOException {
         switch(flavor) {
             case PLAIN:
-                // There's really no such thing as a 'PLAIN' PDF, assume it's a URL
+                // There's really no such thing as a 'PLAIN' image or PDF, assume it's a URL
             case FILE:
-                doc = PDDocument.load(ConnectionUtilities.getInputStream(data, true));
-                break;
+                try(InputStream in = ConnectionUtilities.getInputStream(data, true)) {
+                    return in.readAllBytes();
+                }
             default:
-                doc = PDDocument.load(new ByteArrayInputStream(seekConversion(flavor.read(data), rawOpts)));
+                try(InputStream in = open(flavor, data, null, rawOpts)) {
+                    return in.readAllBytes();
+                }
+        }
+    }
+
+    /**
+     * Converts each page in the {@code pageRanges} option, or every page, rendering them in parallel
+     */
+    private void appendPdfCommands(byte[] pdf, JSONObject opt, PrintOptions.Pixel pxlOpts, List<ZplGraphicCache.Graphic> used) throws IOException {
+        int[] pages;
+        try(PDDocument doc = PdfLoader.load(new ByteArrayInputStream(pdf))) {
+            pages = PdfLoader.selectPages(PdfLoader.parsePageRanges(opt.optString("pageRanges", "")), doc.getNumberOfPages());
         }
 
-        double scale;
-        PDRectangle rect = doc.getPage(0).getBBox();
         double pw = opt.optDouble("pageWidth", 0), ph = opt.optDouble("pageHeight", 0);
-        if (ph <= 0 || (pw > 0 && (rect.getWidth() / rect.getHeight()) >= (pw / ph))) {
-            scale = pw / rect.getWidth();
-        } else {
-            scale = ph / rect.getHeight();
+        double density = pxlOpts.getDensity() * pxlOpts.getUnits().as1Inch();
+        if (density <= 1) {
+            density = LanguageType.getType(opt.optString("language")).getDefaultDensity();
         }
-        if (scale <= 0) { scale = 1.0; }
+        double dpiScale = density / 72.0;
+
+        PdfRasterizer.rasterize(pdf, pages, rect -> {
+            // fit the requested label size in dots, otherwise render at the printer's density
+            double scale;
+            if (pw <= 0 && ph <= 0) {
+                scale = dpiScale;
+            } else if (ph <= 0 || (pw > 0 && (rect.getWidth() / rect.getHeight()) >= (pw / ph))) {
+                scale = pw / rect.getWidth();
+            } else {
+                scale = ph / rect.getHeight();
+            }
+            return scale > 0? scale:1.0;
+        }, page -> getImageCommand(getWrapper(page, opt, pxlOpts), opt, used), commands::append);
+    }
 
-        BufferedImage bi = new PDFRenderer(doc).renderImage(0, (float)scale);
-        return getWrapper(bi, opt, pxlOpts);
+    /**
+     * With the {@code storeGraphic} option, ZPL images are recalled from printer memory and only downloaded to printers
+     * that don't have them yet; see {@link ZplGraphicCache}
+     */
+    private byte[] getImageCommand(ImageWrapper iw, JSONObject opt, List<ZplGraphicCache.Graphic> used) throws InvalidRawImageException, UnsupportedEncodingException {
+        if (iw.getLanguageType() == LanguageType.ZPL && opt.optBoolean("storeGraphic", false) && ZplGraphicCache.isEnabled()) {
+            ZplGraphicCache.Graphic graphic = ZplGraphicCache.graphic(iw.getMonochromeImage(), iw.getZplCompression());
+            if (claim(graphic, used)) {
+                return new ByteArrayBuilder().append(graphic.getRecall(), iw.getCharset()).getByteArray();
+            }
+            log.warn("Another image in this job is stored as {}, sending this one inline", graphic.getName());
+        }
+        return iw.getImageCommand(opt);
+    }
+
+    /**
+     * Adds {@code graphic} to the ones this data recalls, unless a different image in the job already has its name
+     */
+    private boolean claim(ZplGraphicCache.Graphic graphic, List<ZplGraphicCache.Graphic> used) {
+        synchronized(used) {
+            if (graphic.collides(graphics.get(graphic.getName())) || used.stream().anyMatch(graphic::collides)) {
+                return false;
+            }
+            used.add(graphic);
+            return true;
+        }
+    }
+
+    /**
+     * @return {@code true} if any of {@code used} has the same name as a different image already recalled by this job
+     */
+    private boolean collides(Collection<ZplGraphicCache.Graphic> used) {
+        for(ZplGraphicCache.Graphic graphic : used) {
+            if (graphic.collides(graphics.get(graphic.getName()))) { return true; }
+        }
+        return false;
     }
 
     private ImageWrapper getHtmlWrapper(String data, JSONObject opt, PrintingUtilities.Flavor flavor, PrintOptions.Raw rawOpts, PrintOptions.Pixel pxlOpts) throws IOException {
@@ -301,6 +447,12 @@ public class PrintRaw implements PrintProcessor {
             }
         }
         iw.setDotDensity(density);
+        iw.setEscPosMode(EscPosRasterEncoder.Mode.parse(opt.optString("imageMode", null)));
+
+        iw.setDither(Dither.parse(opt.optString("dither", null)));
+
+        //ZPL only
+        iw.setZplCompression(ZplGraphicEncoder.Compression.parse(opt.optString("compression", null)));
 
         //EPL only
         iw.setxPos(opt.optInt("x", 0));
@@ -317,28 +469,66 @@ public class PrintRaw implements PrintProcessor {
     public void print(PrintOutput output, PrintOptions options) throws PrintException {
         PrintOptions.Raw rawOpts = options.getRawOptions();
 
+        // network printers are checked for stored graphics once connected
+        ZplGraphicCache.Batch batch = null;
+        ByteArrayBuilder job = commands;
+        if (!output.isSetHost()) {
+            batch = ZplGraphicCache.prepare(output.isSetFile()? null:ZplGraphicCache.printerTarget(output.getNativePrinter().getPrinterId()), getGraphics());
+            if (!batch.isEmpty()) {
+                byte[] downloads = batch.getCommands();
+                job = new ByteArrayBuilder(downloads.length + commands.getLength());
+                job.append(downloads).append(commands);
+            }
+        }
+
         List<ByteArrayBuilder> pages;
         if (rawOpts.getSpoolSize() > 0 && rawOpts.getSpoolEnd() != null && !rawOpts.getSpoolEnd().isEmpty()) {
             try {
-                pages = ByteUtilities.splitByteArray(commands.getByteArray(), rawOpts.getSpoolEnd().getBytes(destEncoding), rawOpts.getSpoolSize());
+                pages = ByteUtilities.splitByteArray(job.getByteArray(), rawOpts.getSpoolEnd().getBytes(destEncoding), rawOpts.getSpoolSize());
             }
             catch(UnsupportedEncodingException e) {
+                if (batch != null) { batch.complete(false); }
                 throw new PrintException(e);
             }
         } else {
             pages = new ArrayList<>();
-            pages.add(commands);
+            pages.add(job);
+        }
+
+        if (output.isSetHost()) {
+            try {
+                printToHost(output.getHost(), output.getPort(), getGraphics(), pages, rawOpts.getCopies());
+            }
+            catch(IOException e) {
+                throw new PrintException(e);
+            }
+            return;
+        }
+
+        boolean success = false;
+        try {
+            printToService(output, pages, rawOpts);
+            success = true;
         }
+        finally {
+            batch.complete(success);
+        }
+    }
+
+    private List<ZplGraphicCache.Graphic> getGraphics() {
+        synchronized(graphics) {
+            return new ArrayList<>(graphics.values());
+        }
+    }
 
+    private void printToService(PrintOutput output, List<ByteArrayBuilder> pages, PrintOptions.Raw rawOpts) throws PrintException {
         List<File> tempFiles = null;
         for(int i = 0; i < rawOpts.getCopies(); i++) {
             for(int j = 0; j < pages.size(); j++) {
                 ByteArrayBuilder bab = pages.get(j);
                 try {
-                    if (output.isSetHost()) {
-                        printToHost(output.getHost(), output.getPort(), bab.getByteArray());
-                    } else if (output.isSetFile()) {
-                        printToFile(output.getFile(), bab.getByteArray(), true);
+                    if (output.isSetFile()) {
+                        printToFile(output.getFile(), bab, true);
                     } else {
                         if (rawOpts.isForceRaw()) {
                             if(tempFiles == null) {
@@ -348,7 +538,7 @@ public class PrintRaw implements PrintProcessor {
                             if(tempFiles.size() <= j) {
                                 tempFile = File.createTempFile("qz_raw_", null);
                                 tempFiles.add(j, tempFile);
-                                printToFile(tempFile, bab.getByteArray(), false);
+                                printToFile(tempFile, bab, false);
                             } else {
                                 tempFile = tempFiles.get(j);
                             }
@@ -395,13 +585,39 @@ public class PrintRaw implements PrintProcessor {
      * Please note that this will completely bypass the Print Spooler,
      * so the Operating System will have absolutely no printer information.
      * This is printing "blind".
+     * <p/>
+     * All pages and copies are sent over a single connection, which is kept open for the next job to the same host.
+     * Any of {@code graphics} the printer isn't known to hold are downloaded first.
      */
-    private void printToHost(String host, int port, byte[] cmds) throws IOException {
+    static void printToHost(String host, int port, Collection<ZplGraphicCache.Graphic> graphics, List<ByteArrayBuilder> pages, int copies) throws IOException {
         log.debug("Printing to host {}:{}", host, port);
 
-        //throws any exception and auto-closes socket and stream
-        try(Socket socket = new Socket(host, port); DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
-            out.write(cmds);
+        //throws any exception and returns the connection to the pool
+        try(HostConnectionPool.Connection connection = HostConnectionPool.open(host, port)) {
+            String target = ZplGraphicCache.hostTarget(host, port);
+            if (connection.isOpened()) {
+                ZplGraphicCache.invalidate(target);
+            }
+            ZplGraphicCache.Batch batch = ZplGraphicCache.prepare(target, graphics);
+
+            try {
+                OutputStream out = connection.getOutputStream();
+                if (!batch.isEmpty()) {
+                    out.write(batch.getCommands());
+                }
+                for(int i = 0; i < copies; i++) {
+                    for(ByteArrayBuilder page : pages) {
+                        page.writeTo(out);
+                    }
+                }
+                out.flush();
+                batch.complete(true);
+            }
+            catch(IOException e) {
+                batch.complete(false);
+                connection.invalidate();
+                throw e;
+            }
         }
     }
 
@@ -410,7 +626,7 @@ public class PrintRaw implements PrintProcessor {
      *
      * @param file File to be written
      */
-    private void printToFile(File file, byte[] cmds, boolean locationRestricted) throws IOException {
+    private void printToFile(File file, ByteArrayBuilder cmds, boolean locationRestricted) throws IOException {
         if(file == null) throw new IOException("No file specified");
 
         if(locationRestricted && !PrefsSearch.getBoolean(ArgValue.SECURITY_PRINT_TOFILE)) {
@@ -423,7 +639,7 @@ public class PrintRaw implements PrintProcessor {
 
         //throws any exception and auto-closes stream
         try(OutputStream out = new FileOutputStream(file)) {
-            out.write(cmds);
+            cmds.writeTo(out);
         }
     }
 
@@ -445,52 +661,7 @@ public class PrintRaw implements PrintProcessor {
     }
 
     protected void waitForPrint(DocPrintJob printJob, Doc doc, PrintRequestAttributeSet attributes) throws PrintException {
-        final AtomicBoolean finished = new AtomicBoolean(false);
-        printJob.addPrintJobListener(new PrintJobListener() {
-            @Override
-            public void printDataTransferCompleted(PrintJobEvent printJobEvent) {
-                log.debug("{}", printJobEvent);
-                finished.set(true);
-            }
-
-            @Override
-            public void printJobCompleted(PrintJobEvent printJobEvent) {
-                log.debug("{}", printJobEvent);
-                finished.set(true);
-            }
-
-            @Override
-            public void printJobFailed(PrintJobEvent printJobEvent) {
-                log.error("{}", printJobEvent);
-                finished.set(true);
-            }
-
-            @Override
-            public void printJobCanceled(PrintJobEvent printJobEvent) {
-                log.warn("{}", printJobEvent);
-                finished.set(true);
-            }
-
-            @Override
-            public void printJobNoMoreEvents(PrintJobEvent printJobEvent) {
-                log.debug("{}", printJobEvent);
-                finished.set(true);
-            }
-
-            @Override
-            public void printJobRequiresAttention(PrintJobEvent printJobEvent) {
-                log.info("{}", printJobEvent);
-            }
-        });
-
-        log.trace("Sending print job to printer");
-        printJob.print(doc, attributes);
-
-        while(!finished.get()) {
-            try { Thread.sleep(100); } catch(Exception ignore) {}
-        }
-
-        log.trace("Print job received by printer");
+        PrintJobCompletion.print(printJob, doc, attributes);
     }
 
     /**
@@ -528,6 +699,7 @@ public class PrintRaw implements PrintProcessor {
     @Override
     public void cleanup() {
         commands.clear();
+        graphics.clear();
         destEncoding = null;
     }
 
@@ -0,0 +1,351 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import qz.utils.ArgValue;
+import qz.utils.FileUtilities;
+import qz.utils.PrefsSearch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the printer commands converted from raw images, PDFs and HTML, so a batch of jobs printing the same content
+ * with the same options only converts it once.
+ * <p>
+ * Entries are keyed by a hash of the source content together with every option that affects the conversion. Up to
+ * {@code printer.raw.cache.memory} megabytes of the most recently used commands are kept in memory and, if
+ * {@code printer.raw.cache.disk} is set, up to that many megabytes are also written to disk, surviving restarts.
+ * Commands that recall stored ZPL graphics also need the graphics themselves, so they are only kept in memory.
+ */
+public class RawImageCache {
+
+    private static final Logger log = LogManager.getLogger(RawImageCache.class);
+
+    private static final String DISK_SUFFIX = ".raw";
+
+    // least recently used first
+    private static final LinkedHashMap<Key,Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private static final LinkedHashMap<Key,Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private static long memorySize;
+    private static long diskSize;
+
+    private static boolean initialized;
+    private static long memoryLimit;
+    private static long diskLimit;
+    private static Path directory;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong diskHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private RawImageCache() {}
+
+    private static synchronized void initialize() {
+        if (initialized) { return; }
+        initialized = true;
+
+        memoryLimit = Math.max(0, PrefsSearch.getInt(ArgValue.PRINTER_RAW_CACHE_MEMORY)) * 1024L * 1024L;
+        diskLimit = Math.max(0, PrefsSearch.getInt(ArgValue.PRINTER_RAW_CACHE_DISK)) * 1024L * 1024L;
+        if (memoryLimit > 0 && diskLimit > 0) {
+            directory = FileUtilities.USER_DIR.resolve("cache").resolve("raw");
+            try {
+                Files.createDirectories(directory);
+                loadDisk();
+            }
+            catch(IOException e) {
+                log.warn("Unable to use {} for the raw image cache, caching in memory only: {}", directory, e.getMessage());
+                diskLimit = 0;
+            }
+        }
+        log.debug("Caching up to {}MB of converted raw images in memory and {}MB on disk", memoryLimit / 1024 / 1024, diskLimit / 1024 / 1024);
+    }
+
+    /**
+     * Indexes the files left from previous runs, oldest first
+     */
+    private static void loadDisk() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try(Stream<Path> list = Files.list(directory)) {
+            list.filter(p -> p.getFileName().toString().endsWith(DISK_SUFFIX)).forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+
+        for(Path file : files) {
+            String name = file.getFileName().toString();
+            Key key = Key.parse(name.substring(0, name.length() - DISK_SUFFIX.length()));
+            if (key == null) { continue; }
+            long size = file.toFile().length();
+            disk.put(key, size);
+            diskSize += size;
+        }
+        trimDisk();
+    }
+
+    public static boolean isEnabled() {
+        initialize();
+        return memoryLimit > 0;
+    }
+
+    public static KeyBuilder key() {
+        return new KeyBuilder();
+    }
+
+    /**
+     * @return The cached entry for {@code key}, or {@code null} if it needs to be converted
+     */
+    public static Entry get(Key key) {
+        Long onDisk;
+        synchronized(RawImageCache.class) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                log.debug("Using cached conversion {}", key);
+                return entry;
+            }
+            onDisk = disk.get(key);
+        }
+
+        if (onDisk != null) {
+            try {
+                Path file = directory.resolve(key + DISK_SUFFIX);
+                Entry entry = new Entry(Files.readAllBytes(file), Collections.emptyList());
+                // keeps the least recently used order across restarts
+                file.toFile().setLastModified(System.currentTimeMillis());
+                diskHits.incrementAndGet();
+                log.debug("Using cached conversion {} from disk", key);
+                synchronized(RawImageCache.class) {
+                    putMemory(key, entry);
+                }
+                return entry;
+            }
+            catch(IOException e) {
+                log.warn("Unable to read cached conversion {}: {}", key, e.getMessage());
+                synchronized(RawImageCache.class) {
+                    removeDisk(key);
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public static void put(Key key, Entry entry) {
+        boolean write;
+        synchronized(RawImageCache.class) {
+            putMemory(key, entry);
+            write = diskLimit > 0 && entry.graphics.isEmpty() && !disk.containsKey(key) && entry.commands.length <= diskLimit;
+        }
+        if (!write) { return; }
+
+        Path file = directory.resolve(key + DISK_SUFFIX);
+        try {
+            Path temp = Files.createTempFile(directory, null, ".tmp");
+            try {
+                Files.write(temp, entry.commands);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(temp);
+            }
+            synchronized(RawImageCache.class) {
+                if (disk.put(key, (long)entry.commands.length) == null) {
+                    diskSize += entry.commands.length;
+                }
+                trimDisk();
+            }
+        }
+        catch(IOException e) {
+            log.warn("Unable to write cached conversion {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static void putMemory(Key key, Entry entry) {
+        if (entry.size() > memoryLimit) { return; }
+        Entry replaced = memory.put(key, entry);
+        memorySize += entry.size() - (replaced == null? 0:replaced.size());
+
+        Iterator<Entry> oldest = memory.values().iterator();
+        while(memorySize > memoryLimit && oldest.hasNext()) {
+            memorySize -= oldest.next().size();
+            oldest.remove();
+        }
+    }
+
+    private static void trimDisk() {
+        Iterator<Map.Entry<Key,Long>> oldest = disk.entrySet().iterator();
+        while(diskSize > diskLimit && oldest.hasNext()) {
+            Map.Entry<Key,Long> entry = oldest.next();
+            diskSize -= entry.getValue();
+            oldest.remove();
+            deleteFile(entry.getKey());
+        }
+    }
+
+    private static void removeDisk(Key key) {
+        Long size = disk.remove(key);
+        if (size != null) {
+            diskSize -= size;
+            deleteFile(key);
+        }
+    }
+
+    private static void deleteFile(Key key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key + DISK_SUFFIX));
+        }
+        catch(IOException e) {
+            log.warn("Unable to delete cached conversion {}: {}", key, e.getMessage());
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The fraction of lookups served from memory or disk, {@code 0} before any lookup
+     */
+    public static double getHitRatio() {
+        long found = hits.get() + diskHits.get();
+        long total = found + misses.get();
+        return total == 0? 0:(double)found / total;
+    }
+
+    public static synchronized int getMemoryEntries() {
+        return memory.size();
+    }
+
+    public static synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    public static synchronized int getDiskEntries() {
+        return disk.size();
+    }
+
+    public static synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * Hashes the source and options of a conversion, in the order they're added
+     */
+    public static class KeyBuilder {
+        private final MessageDigest digest;
+
+        private KeyBuilder() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            }
+            catch(NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public KeyBuilder add(byte[] value) {
+            // length first, so consecutive values can't run together
+            digest.update(Integer.toString(value.length).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte)':');
+            digest.update(value);
+            return this;
+        }
+
+        public KeyBuilder add(Object value) {
+            return add(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        public Key build() {
+            return new Key(digest.digest());
+        }
+    }
+
+    public static class Key {
+        private final byte[] hash;
+
+        private Key(byte[] hash) {
+            this.hash = hash;
+        }
+
+        private static Key parse(String hex) {
+            if (hex.length() != 64) { return null; }
+            byte[] hash = new byte[32];
+            for(int i = 0; i < hash.length; i++) {
+                int high = Character.digit(hex.charAt(i * 2), 16), low = Character.digit(hex.charAt(i * 2 + 1), 16);
+                if (high < 0 || low < 0) { return null; }
+                hash[i] = (byte)((high << 4) | low);
+            }
+            return new Key(hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(hash, ((Key)o).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(hash);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for(byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+    }
+
+    /**
+     * Converted commands, ready to send, and any stored ZPL graphics they recall
+     */
+    public static class Entry {
+        private final byte[] commands;
+        private final List<ZplGraphicCache.Graphic> graphics;
+
+        public Entry(byte[] commands, List<ZplGraphicCache.Graphic> graphics) {
+            this.commands = commands;
+            this.graphics = graphics;
+        }
+
+        public byte[] getCommands() {
+            return commands;
+        }
+
+        public List<ZplGraphicCache.Graphic> getGraphics() {
+            return graphics;
+        }
+
+        private long size() {
+            long size = commands.length;
+            for(ZplGraphicCache.Graphic graphic : graphics) {
+                size += graphic.getSize();
+            }
+            return size;
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import qz.printer.action.raw.MonochromeImage;
+import qz.printer.action.raw.ZplGraphicEncoder;
+import qz.printer.status.Status;
+import qz.printer.status.job.NativeJobStatus;
+import qz.printer.status.printer.NativePrinterStatus;
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Tracks which ZPL graphics are stored in each printer's memory, so an image repeated across jobs, such as a logo, is
+ * downloaded once with {@code ~DG} and afterwards only recalled with {@code ^XG}.
+ * <p>
+ * Graphics are named after a hash of their content, so the same image always maps to the same stored object. Each
+ * printer is given {@code printer.graphic.memory} kilobytes, deleting the least recently used graphics to make room.
+ * What a printer holds is forgotten whenever it may have restarted or lost it: on a new connection to a network printer,
+ * after a failed job, or when the printer reports being offline.
+ * <p>
+ * A job's graphics count as stored once the spooler accepts the job, not once it prints. A queued job that's later
+ * cancelled or fails never reaches the printer, which is only noticed from its job status, so only while printer status
+ * is being listened to; otherwise a later job may recall a graphic that was never downloaded.
+ */
+public class ZplGraphicCache {
+
+    private static final Logger log = LogManager.getLogger(ZplGraphicCache.class);
+
+    // stored in DRAM, which printers clear on restart, under an 8 character name: a fixed prefix then the content hash
+    private static final String DEVICE = "R:";
+    private static final String PREFIX = "QZ";
+    private static final int HASH_CHARS = 6;
+    private static final long HASH_RANGE = 2176782336L; // 36^6
+
+    private static final Map<String,Printer> printers = new HashMap<>();
+
+    private ZplGraphicCache() {}
+
+    /**
+     * @return {@code false} if {@code printer.graphic.memory} is {@code 0}, and graphics should be sent inline
+     */
+    public static boolean isEnabled() {
+        return getMemoryLimit() > 0;
+    }
+
+    private static long getMemoryLimit() {
+        return PrefsSearch.getInt(ArgValue.PRINTER_GRAPHIC_MEMORY) * 1024L;
+    }
+
+    public static String hostTarget(String host, int port) {
+        return "host:" + host + ":" + port;
+    }
+
+    public static String printerTarget(String printer) {
+        return "printer:" + printer;
+    }
+
+    public static Graphic graphic(MonochromeImage image, ZplGraphicEncoder.Compression compression) {
+        return new Graphic(image, compression);
+    }
+
+    /**
+     * Works out which of {@code graphics} {@code target} still needs, making room for them if necessary. The graphics
+     * are kept in the printer until the batch is completed.
+     *
+     * @param target The printer the job is sent to, or {@code null} to download every graphic without tracking them
+     */
+    public static Batch prepare(String target, Collection<Graphic> graphics) {
+        if (graphics.isEmpty()) { return new Batch(null, 0, graphics, Collections.emptyList(), new StringBuilder()); }
+
+        StringBuilder commands = new StringBuilder();
+        List<Graphic> missing = new ArrayList<>();
+        Printer printer = null;
+        long generation = 0;
+
+        synchronized(printers) {
+            if (target != null) {
+                printer = printers.computeIfAbsent(target, t -> new Printer());
+                generation = printer.generation;
+            }
+
+            long needed = 0;
+            for(Graphic graphic : graphics) {
+                Stored stored = printer == null? null:printer.stored.get(graphic.name);
+                if (stored == null || stored.hash != graphic.hash) {
+                    missing.add(graphic);
+                    needed += graphic.size;
+                    if (stored != null) { printer.remove(graphic.name); }
+                }
+            }
+
+            if (printer != null) {
+                for(Graphic graphic : graphics) {
+                    printer.pinned.merge(graphic.name, 1, Integer::sum);
+                }
+
+                long limit = getMemoryLimit();
+                Iterator<Map.Entry<String,Stored>> oldest = printer.stored.entrySet().iterator();
+                while(printer.size + needed > limit && oldest.hasNext()) {
+                    Map.Entry<String,Stored> entry = oldest.next();
+                    if (printer.pinned.containsKey(entry.getKey())) { continue; }
+                    commands.append(ZplGraphicEncoder.encodeDelete(entry.getKey()));
+                    printer.size -= entry.getValue().size;
+                    oldest.remove();
+                }
+            }
+        }
+
+        // encoding is the slow part, and doesn't need the lock
+        for(Graphic graphic : missing) {
+            commands.append(ZplGraphicEncoder.encodeDownload(graphic.image, graphic.compression, graphic.name));
+        }
+        if (target != null) {
+            log.debug("Downloading {} of {} graphic(s) to {}", missing.size(), graphics.size(), target);
+        }
+
+        return new Batch(printer, generation, graphics, missing, commands);
+    }
+
+    /**
+     * Forgets every graphic stored in {@code target}, so they're downloaded again by the next job
+     */
+    public static void invalidate(String target) {
+        synchronized(printers) {
+            Printer printer = printers.get(target);
+            if (printer != null && !printer.stored.isEmpty()) {
+                log.debug("Forgetting {} graphic(s) stored in {}", printer.stored.size(), target);
+            }
+            if (printer != null) { printer.clear(); }
+        }
+    }
+
+    /**
+     * Forgets a printer's graphics when it reports a status its memory may not survive, or a job that may not have
+     * downloaded its graphics was cancelled or failed
+     */
+    public static void statusChanged(Status status) {
+        if (status.getCode() instanceof NativePrinterStatus) {
+            switch((NativePrinterStatus)status.getCode()) {
+                case OFFLINE:
+                case NOT_AVAILABLE:
+                case INITIALIZING:
+                case WARMING_UP:
+                    invalidate(printerTarget(status.getPrinter()));
+                    break;
+            }
+        } else if (status.getCode() instanceof NativeJobStatus) {
+            switch((NativeJobStatus)status.getCode()) {
+                case ABORTED:
+                case CANCELED:
+                case ERROR:
+                    invalidate(printerTarget(status.getPrinter()));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * An image to be stored in printer memory, named after its content
+     */
+    public static class Graphic {
+        private final MonochromeImage image;
+        private final ZplGraphicEncoder.Compression compression;
+        private final long hash;
+        private final String name;
+        private final int size;
+
+        private Graphic(MonochromeImage image, ZplGraphicEncoder.Compression compression) {
+            this.image = image;
+            this.compression = compression;
+            this.hash = hash(image);
+            this.size = image.getData().length;
+
+            StringBuilder id = new StringBuilder(Long.toString(Long.remainderUnsigned(hash, HASH_RANGE), 36).toUpperCase(Locale.ENGLISH));
+            while(id.length() < HASH_CHARS) { id.insert(0, '0'); }
+            this.name = DEVICE + PREFIX + id;
+        }
+
+        /**
+         * @return The stored object's name, with its device but without an extension
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Bytes of printer memory the graphic takes
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return The command printing the stored graphic
+         */
+        public String getRecall() {
+            return ZplGraphicEncoder.encodeRecall(name);
+        }
+
+        /**
+         * @return {@code true} if {@code other} is a different image that was given the same name, so the two can't be
+         * stored together
+         */
+        public boolean collides(Graphic other) {
+            return other != null && name.equals(other.name) && hash != other.hash;
+        }
+
+        private static long hash(MonochromeImage image) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(ByteBuffer.allocate(8).putInt(image.getWidth()).putInt(image.getHeight()).array());
+                digest.update(image.getData());
+                return ByteBuffer.wrap(digest.digest()).getLong();
+            }
+            catch(NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * The graphics one job uses, and the commands to download the ones its printer is missing
+     */
+    public static class Batch {
+        private final Printer printer;
+        private final long generation;
+        private final Collection<Graphic> used;
+        private final List<Graphic> missing;
+        private final StringBuilder commands;
+        private boolean completed;
+
+        private Batch(Printer printer, long generation, Collection<Graphic> used, List<Graphic> missing, StringBuilder commands) {
+            this.printer = printer;
+            this.generation = generation;
+            this.used = used;
+            this.missing = missing;
+            this.commands = commands;
+        }
+
+        public boolean isEmpty() {
+            return commands.length() == 0;
+        }
+
+        /**
+         * @return Commands to send ahead of the job, deleting old graphics then downloading new ones
+         */
+        public byte[] getCommands() {
+            return commands.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * Records the downloaded graphics as stored once the job was sent, or forgets the printer's graphics if it failed.
+         * For a spooled job, sent means accepted by the spooler; see {@link #statusChanged(Status)} for jobs that fail
+         * afterwards.
+         */
+        public void complete(boolean success) {
+            if (printer == null || completed) { return; }
+            completed = true;
+
+            synchronized(printers) {
+                for(Graphic graphic : used) {
+                    printer.pinned.computeIfPresent(graphic.name, (name, count) -> count > 1? count - 1:null);
+                }
+
+                if (!success) {
+                    printer.clear();
+                } else if (generation == printer.generation) {
+                    for(Graphic graphic : missing) {
+                        printer.remove(graphic.name);
+                        printer.stored.put(graphic.name, new Stored(graphic.hash, graphic.size));
+                        printer.size += graphic.size;
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Printer {
+        // least recently used first
+        private final LinkedHashMap<String,Stored> stored = new LinkedHashMap<>(16, 0.75f, true);
+        // graphics in use by jobs in progress, never deleted
+        private final Map<String,Integer> pinned = new HashMap<>();
+        private long size;
+        private long generation;
+
+        private void remove(String name) {
+            Stored removed = stored.remove(name);
+            if (removed != null) { size -= removed.size; }
+        }
+
+        private void clear() {
+            stored.clear();
+            size = 0;
+            generation++;
+        }
+    }
+
+    private static class Stored {
+        private final long hash;
+        private final int size;
+
+        private Stored(long hash, int size) {
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+
+}
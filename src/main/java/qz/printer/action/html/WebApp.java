@@ -1,40 +1,23 @@
 package qz.printer.action.html;
 
 import com.github.zafarkhaja.semver.Version;
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
 import qz.utils.SystemUtilities;
-import com.sun.javafx.tk.TKPulseListener;
-import com.sun.javafx.tk.Toolkit;
-import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.beans.value.ChangeListener;
-import javafx.concurrent.Worker;
-import javafx.embed.swing.SwingFXUtils;
-import javafx.print.PageLayout;
 import javafx.print.PrinterJob;
-import javafx.scene.Scene;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.transform.Scale;
-import javafx.scene.transform.Transform;
-import javafx.scene.transform.Translate;
 import javafx.scene.web.WebView;
 import javafx.stage.Stage;
 import qz.common.Constants;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.w3c.dom.Attr;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.IntPredicate;
+import java.util.concurrent.*;
 
 /**
  * JavaFX container for taking HTML snapshots.
@@ -48,21 +31,18 @@ public class WebApp extends Application {
 
     private static volatile WebApp instance = null;
     private static volatile Version webkitVersion = null;
-    private static final int CAPTURE_FRAMES = 2;
+    private static volatile String userAgent = null;
     private static volatile int VECTOR_FRAMES = 1;
-    private static volatile Stage stage;
-    private static volatile WebView webView;
-    private static volatile double pageWidth;
-    private static volatile double pageHeight;
-    private static volatile double pageZoom;
-    private static volatile boolean raster;
     private static volatile boolean headless;
 
     private static volatile CountDownLatch startupLatch;
-    private static volatile CountDownLatch captureLatch;
 
-    private static volatile IntPredicate printAction;
-    private static final AtomicReference<Throwable> thrown = new AtomicReference<>();
+    // render engines, handed out in request order and created on demand up to poolSize
+    private static final long MEMORY_PER_ENGINE = 256L * 1024 * 1024;
+    private static final LinkedBlockingDeque<WebAppEngine> idleEngines = new LinkedBlockingDeque<>();
+    private static volatile Semaphore enginePermits;
+    private static volatile int poolSize = 1;
+    private static volatile int recycleAfter;
 
     // JDK-8283686: Printing WebView may results in empty page
     private static final Version JDK_8283686_START = Version.valueOf(/* WebKit */ "609.1.0");
@@ -70,92 +50,6 @@ public class WebApp extends Application {
     private static final int JDK_8283686_VECTOR_FRAMES = 30;
 
 
-    //listens for a Succeeded state to activate image capture
-    private static ChangeListener<Worker.State> stateListener = (ov, oldState, newState) -> {
-        logger.trace("New state: {} > {}", oldState, newState);
-
-        // Cancelled should probably throw exception listener, but does not
-        if (newState == Worker.State.CANCELLED) {
-            // This can happen for file downloads, e.g. "response-content-disposition=attachment"
-            // See https://github.com/qzind/tray/issues/1183
-            unlatch(new IOException("Page load was cancelled for an unknown reason"));
-        }
-        if (newState == Worker.State.SUCCEEDED) {
-            boolean hasBody = (boolean)webView.getEngine().executeScript("document.body != null");
-            if (!hasBody) {
-                logger.warn("Loaded page has no body - likely a redirect, skipping state");
-                return;
-            }
-
-            //ensure html tag doesn't use scrollbars, clipping page instead
-            Document doc = webView.getEngine().getDocument();
-            NodeList tags = doc.getElementsByTagName("html");
-            if (tags != null && tags.getLength() > 0) {
-                Node base = tags.item(0);
-                Attr applied = (Attr)base.getAttributes().getNamedItem("style");
-                if (applied == null) {
-                    applied = doc.createAttribute("style");
-                }
-                applied.setValue(applied.getValue() + "; overflow: hidden;");
-                base.getAttributes().setNamedItem(applied);
-            }
-
-            //width was resized earlier (for responsive html), then calculate the best fit height
-            // FIXME: Should only be needed when height is unknown but fixes blank vector prints
-            double fittedHeight = findHeight();
-            boolean heightNeeded = pageHeight <= 0;
-
-            if (heightNeeded) {
-                pageHeight = fittedHeight;
-            }
-
-            // find and set page zoom for increased quality
-            double usableZoom = calculateSupportedZoom(pageWidth, pageHeight);
-            if (usableZoom < pageZoom) {
-                logger.warn("Zoom level {} decreased to {} due to physical memory limitations", pageZoom, usableZoom);
-                pageZoom = usableZoom;
-            }
-            webView.setZoom(pageZoom);
-            logger.trace("Zooming in by x{} for increased quality", pageZoom);
-
-            adjustSize(pageWidth * pageZoom, pageHeight * pageZoom);
-
-            //need to check for height again as resizing can cause partial results
-            if (heightNeeded) {
-                fittedHeight = findHeight();
-                if (fittedHeight != pageHeight) {
-                    adjustSize(pageWidth * pageZoom, fittedHeight * pageZoom);
-                }
-            }
-
-            logger.trace("Set HTML page height to {}", pageHeight);
-
-            autosize(webView);
-
-            Platform.runLater(() -> new AnimationTimer() {
-                int frames = 0;
-
-                @Override
-                public void handle(long l) {
-                    if (printAction.test(++frames)) {
-                        stop();
-                    }
-                }
-            }.start());
-        }
-    };
-
-    //listens for load progress
-    private static ChangeListener<Number> workDoneListener = (ov, oldWork, newWork) -> logger.trace("Done: {} > {}", oldWork, newWork);
-
-    private static ChangeListener<String> msgListener = (ov, oldMsg, newMsg) -> logger.trace("New status: {}", newMsg);
-
-    //listens for failures
-    private static ChangeListener<Throwable> exceptListener = (obs, oldExc, newExc) -> {
-        if (newExc != null) { unlatch(newExc); }
-    };
-
-
     /**
      * Called by JavaFX thread.
      * Note: This constructor is required by JavaFX Application framework.
@@ -245,10 +139,10 @@ public class WebApp extends Application {
 
     @Override
     public void start(Stage st) throws Exception {
-        startupLatch.countDown();
         logger.debug("Started JavaFX");
 
-        webView = new WebView();
+        WebAppEngine engine = new WebAppEngine(st);
+        userAgent = engine.getWebView().getEngine().getUserAgent();
 
         // JDK-8283686: Printing WebView may results in empty page
         // See also https://github.com/qzind/tray/issues/778
@@ -258,19 +152,16 @@ public class WebApp extends Application {
             VECTOR_FRAMES = JDK_8283686_VECTOR_FRAMES; // Additional pulses needed for vector graphics
         }
 
-        st.setScene(new Scene(webView));
-        stage = st;
-        stage.setWidth(1);
-        stage.setHeight(1);
-
-        Worker<Void> worker = webView.getEngine().getLoadWorker();
-        worker.stateProperty().addListener(stateListener);
-        worker.workDoneProperty().addListener(workDoneListener);
-        worker.exceptionProperty().addListener(exceptListener);
-        worker.messageProperty().addListener(msgListener);
+        poolSize = calculateSupportedEngines();
+        recycleAfter = PrefsSearch.getInt(ArgValue.HTML_ENGINES_RECYCLE);
+        enginePermits = new Semaphore(poolSize, true);
+        idleEngines.add(engine);
+        logger.debug("Rendering HTML with up to {} engine(s)", poolSize);
 
         //prevents JavaFX from shutting down when hiding window
         Platform.setImplicitExit(false);
+
+        startupLatch.countDown();
     }
 
     /**
@@ -280,199 +171,76 @@ public class WebApp extends Application {
      * @param model The model specifying the web page parameters
      * @throws Throwable JavaFx will throw a generic {@code Throwable} class for any issues
      */
-    public static synchronized void print(final PrinterJob job, final WebAppModel model) throws Throwable {
-        model.setZoom(1); //vector prints do not need to use zoom
-        raster = false;
-
-        load(model, (int frames) -> {
-            if(frames == VECTOR_FRAMES) {
-                try {
-                    double printScale = 72d / 96d;
-                    webView.getTransforms().add(new Scale(printScale, printScale));
-
-                    PageLayout layout = job.getJobSettings().getPageLayout();
-                    if (model.isScaled()) {
-                        double viewWidth = webView.getWidth() * printScale;
-                        double viewHeight = webView.getHeight() * printScale;
-
-                        double scale;
-                        if ((viewWidth / viewHeight) >= (layout.getPrintableWidth() / layout.getPrintableHeight())) {
-                            scale = (layout.getPrintableWidth() / viewWidth);
-                        } else {
-                            scale = (layout.getPrintableHeight() / viewHeight);
-                        }
-                        webView.getTransforms().add(new Scale(scale, scale));
-                    }
-
-                    Platform.runLater(() -> {
-                        double useScale = 1;
-                        for(Transform t : webView.getTransforms()) {
-                            if (t instanceof Scale) { useScale *= ((Scale)t).getX(); }
-                        }
-
-                        PageLayout page = job.getJobSettings().getPageLayout();
-                        Rectangle printBounds = new Rectangle(0, 0, page.getPrintableWidth(), page.getPrintableHeight());
-                        logger.debug("Paper area: {},{}:{},{}", (int)page.getLeftMargin(), (int)page.getTopMargin(),
-                                  (int)page.getPrintableWidth(), (int)page.getPrintableHeight());
-
-                        Translate activePage = new Translate();
-                        webView.getTransforms().add(activePage);
-
-                        int columnsNeed = Math.max(1, (int)Math.ceil(webView.getWidth() / printBounds.getWidth() * useScale - 0.1));
-                        int rowsNeed = Math.max(1, (int)Math.ceil(webView.getHeight() / printBounds.getHeight() * useScale - 0.1));
-                        logger.debug("Document will be printed across {} pages", columnsNeed * rowsNeed);
-
-                        try {
-                            for(int row = 0; row < rowsNeed; row++) {
-                                for(int col = 0; col < columnsNeed; col++) {
-                                    activePage.setX((-col * printBounds.getWidth()) / useScale);
-                                    activePage.setY((-row * printBounds.getHeight()) / useScale);
-
-                                    job.printPage(webView);
-                                }
-                            }
-
-                            unlatch(null);
-                        }
-                        catch(Exception e) {
-                            unlatch(e);
-                        }
-                        finally {
-                            //reset state
-                            webView.getTransforms().clear();
-                        }
-                    });
-                }
-                catch(Exception e) { unlatch(e); }
-            }
-            return frames >= VECTOR_FRAMES;
-        });
-
-        logger.trace("Waiting on print..");
-        captureLatch.await(); //released when unlatch is called
-
-        if (thrown.get() != null) { throw thrown.get(); }
+    public static void print(final PrinterJob job, final WebAppModel model) throws Throwable {
+        WebAppEngine engine = acquire();
+        try {
+            engine.print(job, model);
+        }
+        finally {
+            release(engine);
+        }
     }
 
-    public static synchronized BufferedImage raster(final WebAppModel model) throws Throwable {
-        AtomicReference<BufferedImage> capture = new AtomicReference<>();
-
-        //ensure JavaFX has started before we run
-        if (startupLatch.getCount() > 0) {
-            throw new IOException("JavaFX has not been started");
+    public static BufferedImage raster(final WebAppModel model) throws Throwable {
+        WebAppEngine engine = acquire();
+        try {
+            return engine.raster(model);
         }
-
-        // Check if stage and webView are properly initialized
-        if (stage == null || webView == null) {
-            throw new IOException("JavaFX components are not properly initialized");
+        finally {
+            release(engine);
         }
-
-        //raster still needs to show stage for valid capture
-        Platform.runLater(() -> {
-            if (stage != null) {
-                stage.show();
-                stage.toBack();
-            }
-        });
-
-        raster = true;
-
-        load(model, (int frames) -> {
-            if (frames == CAPTURE_FRAMES) {
-                logger.debug("Attempting image capture");
-
-                Toolkit.getToolkit().addPostSceneTkPulseListener(new TKPulseListener() {
-                    @Override
-                    public void pulse() {
-                        try {
-                            // TODO: Revert to Callback once JDK-8244588/SUPQZ-5 is avail (JDK11+ only)
-                            capture.set(SwingFXUtils.fromFXImage(webView.snapshot(null, null), null));
-                            unlatch(null);
-                        }
-                        catch(Exception e) {
-                            unlatch(e);
-                        }
-                        finally {
-                            Toolkit.getToolkit().removePostSceneTkPulseListener(this);
-                        }
-                    }
-                });
-                Toolkit.getToolkit().requestNextPulse();
-            }
-
-            return frames >= CAPTURE_FRAMES;
-        });
-
-        logger.trace("Waiting on capture..");
-        captureLatch.await(); //released when unlatch is called
-
-        if (thrown.get() != null) { throw thrown.get(); }
-
-        return capture.get();
     }
 
     /**
-     * Prints the loaded source specified in the passed {@code model}.
-     *
-     * @param model  The model specifying the web page parameters.
-     * @param action EventHandler that will be ran when the WebView completes loading.
+     * Waits for an engine to become available, creating a new one if the pool has room
      */
-    private static synchronized void load(WebAppModel model, IntPredicate action) {
-        captureLatch = new CountDownLatch(1);
-        thrown.set(null);
-
-        Platform.runLater(() -> {
-            // Check if webView is properly initialized
-            if (webView == null) {
-                unlatch(new IOException("WebView is not properly initialized"));
-                return;
-            }
-
-            //zoom should only be factored on raster prints
-            pageZoom = model.getZoom();
-            pageWidth = model.getWebWidth();
-            pageHeight = model.getWebHeight();
-
-            logger.trace("Setting starting size {}:{}", pageWidth, pageHeight);
-            adjustSize(pageWidth * pageZoom, pageHeight * pageZoom);
+    private static WebAppEngine acquire() throws IOException, InterruptedException {
+        //ensure JavaFX has started before we run
+        if (startupLatch == null || startupLatch.getCount() > 0) {
+            throw new IOException("JavaFX has not been started");
+        }
 
-            if (pageHeight == 0) {
-                webView.setMinHeight(1);
-                webView.setPrefHeight(1);
-                webView.setMaxHeight(1);
+        enginePermits.acquire();
+        WebAppEngine engine = idleEngines.pollFirst();
+        if (engine == null) {
+            try {
+                FutureTask<WebAppEngine> create = new FutureTask<>(() -> new WebAppEngine(new Stage()));
+                Platform.runLater(create);
+                engine = create.get();
+                logger.trace("Created new HTML render engine");
             }
-
-            autosize(webView);
-
-            printAction = action;
-
-            if (model.isPlainText()) {
-                webView.getEngine().loadContent(model.getSource(), "text/html");
-            } else {
-                webView.getEngine().load(model.getSource());
+            catch(ExecutionException e) {
+                enginePermits.release();
+                throw new IOException("JavaFX components are not properly initialized", e.getCause());
             }
-        });
-    }
+            catch(InterruptedException e) {
+                enginePermits.release();
+                throw e;
+            }
+        }
 
-    private static double findHeight() {
-        String heightText = webView.getEngine().executeScript("Math.max(document.body.offsetHeight, document.body.scrollHeight)").toString();
-        return Double.parseDouble(heightText);
+        return engine;
     }
 
-    private static void adjustSize(double toWidth, double toHeight) {
-        if (webView != null) {
-            webView.setMinSize(toWidth, toHeight);
-            webView.setPrefSize(toWidth, toHeight);
-            webView.setMaxSize(toWidth, toHeight);
+    private static void release(WebAppEngine engine) {
+        if (recycleAfter > 0 && engine.getJobs() >= recycleAfter) {
+            logger.trace("Recycling HTML render engine after {} jobs", engine.getJobs());
+            engine.dispose();
         } else {
-            logger.warn("Cannot adjust size: webView is null");
+            // most recently used first, so idle engines beyond what's needed stay idle
+            idleEngines.addFirst(engine);
         }
+        enginePermits.release();
+    }
+
+    static int getVectorFrames() {
+        return VECTOR_FRAMES;
     }
 
     /**
      * Fix blank page after autosize is called
      */
-    public static void autosize(WebView webView) {
+    public static void autosize(WebView webView, boolean raster) {
         webView.autosize();
 
         if (!raster) {
@@ -497,37 +265,43 @@ public class WebApp extends Application {
         }
     }
 
-    private static double calculateSupportedZoom(double width, double height) {
+    /**
+     * Number of engines allowed to render at once, each budgeted {@code MEMORY_PER_ENGINE} of the heap, or twice that
+     * when rendering in software on a headless system
+     */
+    private static int calculateSupportedEngines() {
         long memory = Runtime.getRuntime().maxMemory();
-        int allowance = (memory / 1048576L) > 1024? 3:2;
-        if (headless) { allowance--; }
-        long availSpace = memory << allowance;
+        long perEngine = headless? MEMORY_PER_ENGINE * 2:MEMORY_PER_ENGINE;
+        int supported = (int)Math.max(1, memory / perEngine);
 
-        // Memory needed for print is roughly estimated as
-        // (width * height) [pixels needed] * (pageZoom * 72d) [print density used] * 3 [rgb channels]
-        return Math.sqrt(availSpace / ((width * height) * (pageZoom * 72d) * 3));
+        int preferred = PrefsSearch.getInt(ArgValue.HTML_ENGINES);
+        if (preferred > 0 && preferred < supported) {
+            return preferred;
+        }
+        if (preferred > supported) {
+            logger.warn("Limiting HTML render engines to {} due to physical memory limitations", supported);
+        }
+        return supported;
     }
 
     /**
-     * Final cleanup when no longer capturing
+     * Largest zoom for a page of {@code width} by {@code height}, leaving enough memory for every engine in the pool to
+     * render at once
      */
-    public static void unlatch(Throwable t) {
-        if (t != null) {
-            thrown.set(t);
-        }
+    static double calculateSupportedZoom(double width, double height, double pageZoom) {
+        long memory = Runtime.getRuntime().maxMemory();
+        int allowance = (memory / 1048576L) > 1024? 3:2;
+        if (headless) { allowance--; }
+        long availSpace = (memory << allowance) / poolSize;
 
-        captureLatch.countDown();
-        if (stage != null) {
-            stage.hide();
-        } else {
-            logger.warn("Cannot hide stage: stage is null");
-        }
+        // Memory needed for print is roughly estimated as
+        // (width * height) [pixels needed] * (pageZoom * 72d) [print density used] * 3 [rgb channels]
+        return Math.sqrt(availSpace / ((width * height) * (pageZoom * 72d) * 3));
     }
 
     public static Version getWebkitVersion() {
         if(webkitVersion == null) {
-            if(webView != null) {
-                String userAgent = webView.getEngine().getUserAgent();
+            if(userAgent != null) {
                 String[] parts = userAgent.split("WebKit/");
                 if (parts.length > 1) {
                     String[] split = parts[1].split(" ");
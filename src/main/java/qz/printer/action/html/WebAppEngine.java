@@ -0,0 +1,374 @@
+package qz.printer.action.html;
+
+import com.sun.javafx.tk.TKPulseListener;
+import com.sun.javafx.tk.Toolkit;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.concurrent.Worker;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.print.PageLayout;
+import javafx.print.PrinterJob;
+import javafx.scene.Scene;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
+import javafx.scene.web.WebView;
+import javafx.stage.Stage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+
+/**
+ * A single off-screen {@code WebView} and its {@code Stage}, rendering one page at a time.
+ * <p/>
+ * Must be constructed on the JavaFX thread. Instances are handed out by {@code WebApp}, which limits how many exist and
+ * recycles each one after a number of jobs to bound WebKit's memory growth.
+ */
+class WebAppEngine {
+
+    private static final Logger logger = LogManager.getLogger(WebAppEngine.class);
+
+    private static final int CAPTURE_FRAMES = 2;
+
+    private final Stage stage;
+    private final WebView webView;
+    private int jobs;
+
+    private volatile double pageWidth;
+    private volatile double pageHeight;
+    private volatile double pageZoom;
+    private volatile boolean raster;
+
+    private volatile CountDownLatch captureLatch;
+    private volatile IntPredicate printAction;
+    private final AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+    //listens for a Succeeded state to activate image capture
+    private final ChangeListener<Worker.State> stateListener = (ov, oldState, newState) -> {
+        logger.trace("New state: {} > {}", oldState, newState);
+
+        // Cancelled should probably throw exception listener, but does not
+        if (newState == Worker.State.CANCELLED) {
+            // This can happen for file downloads, e.g. "response-content-disposition=attachment"
+            // See https://github.com/qzind/tray/issues/1183
+            unlatch(new IOException("Page load was cancelled for an unknown reason"));
+        }
+        if (newState == Worker.State.SUCCEEDED) {
+            boolean hasBody = (boolean)getWebView().getEngine().executeScript("document.body != null");
+            if (!hasBody) {
+                logger.warn("Loaded page has no body - likely a redirect, skipping state");
+                return;
+            }
+
+            //ensure html tag doesn't use scrollbars, clipping page instead
+            Document doc = getWebView().getEngine().getDocument();
+            NodeList tags = doc.getElementsByTagName("html");
+            if (tags != null && tags.getLength() > 0) {
+                Node base = tags.item(0);
+                Attr applied = (Attr)base.getAttributes().getNamedItem("style");
+                if (applied == null) {
+                    applied = doc.createAttribute("style");
+                }
+                applied.setValue(applied.getValue() + "; overflow: hidden;");
+                base.getAttributes().setNamedItem(applied);
+            }
+
+            //width was resized earlier (for responsive html), then calculate the best fit height
+            // FIXME: Should only be needed when height is unknown but fixes blank vector prints
+            double fittedHeight = findHeight();
+            boolean heightNeeded = pageHeight <= 0;
+
+            if (heightNeeded) {
+                pageHeight = fittedHeight;
+            }
+
+            // find and set page zoom for increased quality
+            double usableZoom = WebApp.calculateSupportedZoom(pageWidth, pageHeight, pageZoom);
+            if (usableZoom < pageZoom) {
+                logger.warn("Zoom level {} decreased to {} due to physical memory limitations", pageZoom, usableZoom);
+                pageZoom = usableZoom;
+            }
+            getWebView().setZoom(pageZoom);
+            logger.trace("Zooming in by x{} for increased quality", pageZoom);
+
+            adjustSize(pageWidth * pageZoom, pageHeight * pageZoom);
+
+            //need to check for height again as resizing can cause partial results
+            if (heightNeeded) {
+                fittedHeight = findHeight();
+                if (fittedHeight != pageHeight) {
+                    adjustSize(pageWidth * pageZoom, fittedHeight * pageZoom);
+                }
+            }
+
+            logger.trace("Set HTML page height to {}", pageHeight);
+
+            WebApp.autosize(getWebView(), raster);
+
+            Platform.runLater(() -> new AnimationTimer() {
+                int frames = 0;
+
+                @Override
+                public void handle(long l) {
+                    if (printAction.test(++frames)) {
+                        stop();
+                    }
+                }
+            }.start());
+        }
+    };
+
+    //listens for load progress
+    private final ChangeListener<Number> workDoneListener = (ov, oldWork, newWork) -> logger.trace("Done: {} > {}", oldWork, newWork);
+
+    private final ChangeListener<String> msgListener = (ov, oldMsg, newMsg) -> logger.trace("New status: {}", newMsg);
+
+    //listens for failures
+    private final ChangeListener<Throwable> exceptListener = (obs, oldExc, newExc) -> {
+        if (newExc != null) { unlatch(newExc); }
+    };
+
+
+    WebAppEngine(Stage stage) {
+        this.stage = stage;
+        webView = new WebView();
+
+        stage.setScene(new Scene(webView));
+        stage.setWidth(1);
+        stage.setHeight(1);
+
+        Worker<Void> worker = webView.getEngine().getLoadWorker();
+        worker.stateProperty().addListener(stateListener);
+        worker.workDoneProperty().addListener(workDoneListener);
+        worker.exceptionProperty().addListener(exceptListener);
+        worker.messageProperty().addListener(msgListener);
+    }
+
+    WebView getWebView() {
+        return webView;
+    }
+
+    /**
+     * @return Number of pages this engine has loaded
+     */
+    int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Prints the loaded source specified in the passed {@code model}.
+     *
+     * @param job   A setup JavaFx {@code PrinterJob}
+     * @param model The model specifying the web page parameters
+     * @throws Throwable JavaFx will throw a generic {@code Throwable} class for any issues
+     */
+    void print(final PrinterJob job, final WebAppModel model) throws Throwable {
+        model.setZoom(1); //vector prints do not need to use zoom
+        raster = false;
+
+        load(model, (int frames) -> {
+            if(frames == WebApp.getVectorFrames()) {
+                try {
+                    double printScale = 72d / 96d;
+                    webView.getTransforms().add(new Scale(printScale, printScale));
+
+                    PageLayout layout = job.getJobSettings().getPageLayout();
+                    if (model.isScaled()) {
+                        double viewWidth = webView.getWidth() * printScale;
+                        double viewHeight = webView.getHeight() * printScale;
+
+                        double scale;
+                        if ((viewWidth / viewHeight) >= (layout.getPrintableWidth() / layout.getPrintableHeight())) {
+                            scale = (layout.getPrintableWidth() / viewWidth);
+                        } else {
+                            scale = (layout.getPrintableHeight() / viewHeight);
+                        }
+                        webView.getTransforms().add(new Scale(scale, scale));
+                    }
+
+                    Platform.runLater(() -> {
+                        double useScale = 1;
+                        for(Transform t : webView.getTransforms()) {
+                            if (t instanceof Scale) { useScale *= ((Scale)t).getX(); }
+                        }
+
+                        PageLayout page = job.getJobSettings().getPageLayout();
+                        Rectangle printBounds = new Rectangle(0, 0, page.getPrintableWidth(), page.getPrintableHeight());
+                        logger.debug("Paper area: {},{}:{},{}", (int)page.getLeftMargin(), (int)page.getTopMargin(),
+                                  (int)page.getPrintableWidth(), (int)page.getPrintableHeight());
+
+                        Translate activePage = new Translate();
+                        webView.getTransforms().add(activePage);
+
+                        int columnsNeed = Math.max(1, (int)Math.ceil(webView.getWidth() / printBounds.getWidth() * useScale - 0.1));
+                        int rowsNeed = Math.max(1, (int)Math.ceil(webView.getHeight() / printBounds.getHeight() * useScale - 0.1));
+                        logger.debug("Document will be printed across {} pages", columnsNeed * rowsNeed);
+
+                        try {
+                            for(int row = 0; row < rowsNeed; row++) {
+                                for(int col = 0; col < columnsNeed; col++) {
+                                    activePage.setX((-col * printBounds.getWidth()) / useScale);
+                                    activePage.setY((-row * printBounds.getHeight()) / useScale);
+
+                                    job.printPage(webView);
+                                }
+                            }
+
+                            unlatch(null);
+                        }
+                        catch(Exception e) {
+                            unlatch(e);
+                        }
+                        finally {
+                            //reset state
+                            webView.getTransforms().clear();
+                        }
+                    });
+                }
+                catch(Exception e) { unlatch(e); }
+            }
+            return frames >= WebApp.getVectorFrames();
+        });
+
+        logger.trace("Waiting on print..");
+        captureLatch.await(); //released when unlatch is called
+
+        if (thrown.get() != null) { throw thrown.get(); }
+    }
+
+    BufferedImage raster(final WebAppModel model) throws Throwable {
+        AtomicReference<BufferedImage> capture = new AtomicReference<>();
+
+        //raster still needs to show stage for valid capture
+        Platform.runLater(() -> {
+            stage.show();
+            stage.toBack();
+        });
+
+        raster = true;
+
+        load(model, (int frames) -> {
+            if (frames == CAPTURE_FRAMES) {
+                logger.debug("Attempting image capture");
+
+                Toolkit.getToolkit().addPostSceneTkPulseListener(new TKPulseListener() {
+                    @Override
+                    public void pulse() {
+                        try {
+                            // TODO: Revert to Callback once JDK-8244588/SUPQZ-5 is avail (JDK11+ only)
+                            capture.set(SwingFXUtils.fromFXImage(webView.snapshot(null, null), null));
+                            unlatch(null);
+                        }
+                        catch(Exception e) {
+                            unlatch(e);
+                        }
+                        finally {
+                            Toolkit.getToolkit().removePostSceneTkPulseListener(this);
+                        }
+                    }
+                });
+                Toolkit.getToolkit().requestNextPulse();
+            }
+
+            return frames >= CAPTURE_FRAMES;
+        });
+
+        logger.trace("Waiting on capture..");
+        captureLatch.await(); //released when unlatch is called
+
+        if (thrown.get() != null) { throw thrown.get(); }
+
+        return capture.get();
+    }
+
+    /**
+     * Prints the loaded source specified in the passed {@code model}.
+     *
+     * @param model  The model specifying the web page parameters.
+     * @param action EventHandler that will be ran when the WebView completes loading.
+     */
+    private void load(WebAppModel model, IntPredicate action) {
+        captureLatch = new CountDownLatch(1);
+        thrown.set(null);
+        jobs++;
+
+        Platform.runLater(() -> {
+            //zoom should only be factored on raster prints
+            pageZoom = model.getZoom();
+            pageWidth = model.getWebWidth();
+            pageHeight = model.getWebHeight();
+
+            logger.trace("Setting starting size {}:{}", pageWidth, pageHeight);
+            adjustSize(pageWidth * pageZoom, pageHeight * pageZoom);
+
+            if (pageHeight == 0) {
+                webView.setMinHeight(1);
+                webView.setPrefHeight(1);
+                webView.setMaxHeight(1);
+            }
+
+            WebApp.autosize(webView, raster);
+
+            printAction = action;
+
+            if (model.isPlainText()) {
+                webView.getEngine().loadContent(model.getSource(), "text/html");
+            } else {
+                webView.getEngine().load(model.getSource());
+            }
+        });
+    }
+
+    private double findHeight() {
+        String heightText = webView.getEngine().executeScript("Math.max(document.body.offsetHeight, document.body.scrollHeight)").toString();
+        return Double.parseDouble(heightText);
+    }
+
+    private void adjustSize(double toWidth, double toHeight) {
+        webView.setMinSize(toWidth, toHeight);
+        webView.setPrefSize(toWidth, toHeight);
+        webView.setMaxSize(toWidth, toHeight);
+    }
+
+    /**
+     * Final cleanup when no longer capturing
+     */
+    private void unlatch(Throwable t) {
+        if (t != null) {
+            thrown.set(t);
+        }
+
+        captureLatch.countDown();
+        stage.hide();
+    }
+
+    /**
+     * Unloads the page and closes the stage, releasing WebKit's resources for this engine
+     */
+    void dispose() {
+        Platform.runLater(() -> {
+            Worker<Void> worker = webView.getEngine().getLoadWorker();
+            worker.stateProperty().removeListener(stateListener);
+            worker.workDoneProperty().removeListener(workDoneListener);
+            worker.exceptionProperty().removeListener(exceptListener);
+            worker.messageProperty().removeListener(msgListener);
+
+            webView.getEngine().load(null);
+            stage.close();
+        });
+    }
+
+}
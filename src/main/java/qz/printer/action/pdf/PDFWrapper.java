@@ -28,9 +28,18 @@ public class PDFWrapper implements Printable {
     private OrientationRequested orientation = OrientationRequested.PORTRAIT;
 
     private PDFPrintable printable;
+    private int[] pages;
 
     public PDFWrapper(PDDocument document, Scaling scaling, boolean showPageBorder, boolean ignoreTransparency, boolean useAlternateFontRendering, float dpi, boolean center, PrintOptions.Orientation orientation, RenderingHints hints) {
+        this(document, null, scaling, showPageBorder, ignoreTransparency, useAlternateFontRendering, dpi, center, orientation, hints);
+    }
+
+    /**
+     * @param pages Zero-based indexes of the document pages to print, in order, or {@code null} for every page
+     */
+    public PDFWrapper(PDDocument document, int[] pages, Scaling scaling, boolean showPageBorder, boolean ignoreTransparency, boolean useAlternateFontRendering, float dpi, boolean center, PrintOptions.Orientation orientation, RenderingHints hints) {
         this.document = document;
+        this.pages = pages;
         this.scaling = scaling;
         if (orientation != null) {
             this.orientation = orientation.getAsOrientRequested();
@@ -47,6 +56,11 @@ public class PDFWrapper implements Printable {
         log.debug("Paper area: {},{}:{},{}", (int)pageFormat.getImageableX(), (int)pageFormat.getImageableY(),
                   (int)pageFormat.getImageableWidth(), (int)pageFormat.getImageableHeight());
 
+        if (pages != null) {
+            if (pageIndex >= pages.length) { return NO_SUCH_PAGE; }
+            pageIndex = pages[pageIndex];
+        }
+
         graphics.drawString(" ", 0, 0);
 
         //reverse fix for OSX
@@ -0,0 +1,92 @@
+package qz.printer.action.pdf;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Loads PDFs with a bounded amount of heap, buffering the remainder of large documents to a temporary scratch file.
+ * <p>
+ * Pages are selected by index on the loaded document rather than split into a {@code PDDocument} each, and are only
+ * rendered when the print job asks for them.
+ */
+public class PdfLoader {
+    private static final Logger log = LogManager.getLogger(PdfLoader.class);
+
+    private PdfLoader() {}
+
+    /**
+     * Reads a PDF from {@code in}, which is left open
+     */
+    public static PDDocument load(InputStream in) throws IOException {
+        return PDDocument.load(in, getMemoryUsage());
+    }
+
+    /**
+     * Heap allowed per document from {@code printer.pdf.memory}, anything beyond it goes to a scratch file
+     */
+    public static MemoryUsageSetting getMemoryUsage() {
+        long megabytes = PrefsSearch.getInt(ArgValue.PRINTER_PDF_MEMORY);
+        if (megabytes <= 0) {
+            return MemoryUsageSetting.setupMainMemoryOnly();
+        }
+        return MemoryUsageSetting.setupMixed(megabytes * 1024L * 1024L);
+    }
+
+    /**
+     * One-based page numbers listed in a {@code pageRanges} option such as {@code "1-3,5"}, skipping any that can't be parsed
+     */
+    public static Set<Integer> parsePageRanges(String pageRanges) {
+        Set<Integer> pages = new HashSet<>();
+        for(String range : pageRanges.split(",")) {
+            range = range.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            String[] period = range.split("-");
+
+            try {
+                int start = Integer.parseInt(period[0]);
+                int end = period.length > 1? Integer.parseInt(period[period.length - 1]):start;
+                for(int page = start; page <= end; page++) {
+                    pages.add(page);
+                }
+                pages.add(start);
+            }
+            catch(NumberFormatException nfe) {
+                log.warn("Unable to parse page range {}.", range);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Zero-based page indexes to print, in document order
+     *
+     * @param pages     One-based page numbers requested, all pages when empty
+     * @param pageCount Number of pages in the document, requested pages beyond it are ignored
+     */
+    public static int[] selectPages(Set<Integer> pages, int pageCount) {
+        if (pages.isEmpty()) {
+            int[] all = new int[pageCount];
+            for(int i = 0; i < pageCount; i++) { all[i] = i; }
+            return all;
+        }
+
+        return new TreeSet<>(pages).stream()
+                .filter(page -> page >= 1 && page <= pageCount)
+                .mapToInt(page -> page - 1)
+                .toArray();
+    }
+
+}
@@ -0,0 +1,146 @@
+package qz.printer.action.pdf;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Renders pages of a PDF to images on a small pool of threads shared by all jobs, and hands back the converted results
+ * in page order, so later pages render while earlier ones are being consumed.
+ * <p>
+ * PDFBox documents aren't safe to render from several threads, so each worker renders from its own copy of the
+ * document, loaded with {@link PdfLoader}'s memory limit. A job never uses more than {@link #getThreads} workers, so it
+ * never loads more copies than that, and at most one rendered image per worker is held at a time.
+ */
+public class PdfRasterizer {
+    private static final Logger log = LogManager.getLogger(PdfRasterizer.class);
+
+    public static final int MAX_THREADS = 4;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static ExecutorService executor;
+
+    @FunctionalInterface
+    public interface Converter<T> {
+        T convert(BufferedImage page) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Consumer<T> {
+        void accept(T converted) throws IOException;
+    }
+
+    private PdfRasterizer() {}
+
+    /**
+     * Threads used to render {@code pages} pages
+     */
+    public static int getThreads(int pages) {
+        return Math.max(1, Math.min(pages, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * Renders each of {@code pages} of {@code pdf} and passes it through {@code converter}, then to {@code consumer} in
+     * the order given
+     *
+     * @param pdf       The PDF file's bytes
+     * @param pages     Zero-based page indexes
+     * @param scale     Render scale for a page given its bounding box, 1.0 renders at 72 dpi
+     * @param converter Called on the rendering thread, the image isn't used after it returns
+     * @param consumer  Called on the calling thread
+     */
+    public static <T> void rasterize(byte[] pdf, int[] pages, ToDoubleFunction<PDRectangle> scale, Converter<T> converter, Consumer<T> consumer) throws IOException {
+        if (pages.length == 0) { return; }
+
+        int threads = getThreads(pages.length);
+        log.debug("Rendering {} PDF pages on {} threads", pages.length, threads);
+
+        List<CompletableFuture<T>> results = new ArrayList<>(pages.length);
+        for(int i = 0; i < pages.length; i++) {
+            results.add(new CompletableFuture<>());
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean aborted = new AtomicBoolean();
+
+        for(int i = 0; i < threads; i++) {
+            getExecutor().execute(() -> render(pdf, pages, scale, converter, results, next, aborted));
+        }
+
+        try {
+            for(CompletableFuture<T> result : results) {
+                consumer.accept(result.get());
+            }
+        }
+        catch(ExecutionException e) {
+            if (e.getCause() instanceof IOException) { throw (IOException)e.getCause(); }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering PDF", e);
+        }
+        finally {
+            // workers stop after their current page and close their copy of the document
+            aborted.set(true);
+        }
+    }
+
+    /**
+     * Renders the next unclaimed page until none are left, from a copy of the document loaded on first use
+     */
+    private static <T> void render(byte[] pdf, int[] pages, ToDoubleFunction<PDRectangle> scale, Converter<T> converter,
+                                   List<CompletableFuture<T>> results, AtomicInteger next, AtomicBoolean aborted) {
+        PDDocument doc = null;
+        try {
+            int i;
+            while(!aborted.get() && (i = next.getAndIncrement()) < pages.length) {
+                try {
+                    if (doc == null) {
+                        doc = PdfLoader.load(new ByteArrayInputStream(pdf));
+                    }
+                    float pageScale = (float)scale.applyAsDouble(doc.getPage(pages[i]).getBBox());
+                    results.get(i).complete(converter.convert(new PDFRenderer(doc).renderImage(pages[i], pageScale)));
+                }
+                catch(Throwable t) {
+                    // errors too, or the calling thread would wait on this page forever
+                    results.get(i).completeExceptionally(t);
+                }
+            }
+        }
+        finally {
+            if (doc != null) {
+                try { doc.close(); } catch(IOException ignore) {}
+            }
+        }
+    }
+
+    /**
+     * Rendering threads shared by every job, started on first use and stopped once idle
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threads = getThreads(Integer.MAX_VALUE);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "pdf-raster-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+}
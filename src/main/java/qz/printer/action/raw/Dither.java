@@ -0,0 +1,195 @@
+package qz.printer.action.raw;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Dithering applied when converting an image for a raw printer, in place of a fixed threshold.
+ * <p>
+ * Dithering works from each pixel's luma, composited over white, so the quantization method and its thresholds don't
+ * apply. Error diffusion gives the most detail for photos; ordered patterns are faster and print evenly on every page.
+ */
+public enum Dither {
+    /** Fixed threshold, using the quantization method */
+    NONE,
+    /** Error diffusion to four neighbors, the most accurate tones */
+    FLOYD_STEINBERG,
+    /** Error diffusion of three quarters of the error to six neighbors, higher contrast and less smearing */
+    ATKINSON,
+    /** Ordered 8x8 Bayer matrix, a regular cross-hatch pattern */
+    BAYER,
+    /** Ordered 64x64 blue noise texture, even without a visible pattern */
+    BLUE_NOISE;
+
+    public static Dither parse(String value) {
+        if (value == null || value.isEmpty()) { return NONE; }
+        switch(value.toUpperCase(Locale.ENGLISH).replace('-', '_')) {
+            case "FLOYD_STEINBERG":
+            case "FLOYD":
+            case "FS":
+            case "TRUE":
+                return FLOYD_STEINBERG;
+            case "ATKINSON":
+                return ATKINSON;
+            case "BAYER":
+            case "ORDERED":
+                return BAYER;
+            case "BLUE_NOISE":
+            case "BLUENOISE":
+                return BLUE_NOISE;
+            case "NONE":
+            case "FALSE":
+                return NONE;
+            default:
+                throw new IllegalArgumentException("Unknown dithering \"" + value + "\"");
+        }
+    }
+
+    public boolean isErrorDiffusion() {
+        return this == FLOYD_STEINBERG || this == ATKINSON;
+    }
+
+    /**
+     * Luma thresholds tiled over the image for ordered dithering, {@code size * size} values from 0 to 255
+     */
+    int[] getThresholds() {
+        switch(this) {
+            case BAYER:
+                return Bayer.THRESHOLDS;
+            case BLUE_NOISE:
+                return BlueNoise.THRESHOLDS;
+            default:
+                throw new UnsupportedOperationException(this + " is not an ordered dither");
+        }
+    }
+
+    int getThresholdSize() {
+        return this == BLUE_NOISE? BlueNoise.SIZE:Bayer.SIZE;
+    }
+
+    private static final class Bayer {
+        static final int SIZE = 8;
+        static final int[] THRESHOLDS = new int[SIZE * SIZE];
+
+        static {
+            // each doubling places the next levels in the gaps of the previous: [4m, 4m+2; 4m+3, 4m+1]
+            int[] rank = {0};
+            for(int size = 1; size < SIZE; size *= 2) {
+                int[] next = new int[size * size * 4];
+                for(int y = 0; y < size; y++) {
+                    for(int x = 0; x < size; x++) {
+                        int m = rank[y * size + x] * 4;
+                        next[y * size * 2 + x] = m;
+                        next[y * size * 2 + x + size] = m + 2;
+                        next[(y + size) * size * 2 + x] = m + 3;
+                        next[(y + size) * size * 2 + x + size] = m + 1;
+                    }
+                }
+                rank = next;
+            }
+            for(int i = 0; i < rank.length; i++) {
+                THRESHOLDS[i] = (rank[i] * 2 + 1) * 256 / (SIZE * SIZE * 2);
+            }
+        }
+    }
+
+    /**
+     * Generated once with the void-and-cluster method, which ranks pixels so every threshold level is spread as evenly
+     * as possible and the pattern tiles without seams
+     */
+    private static final class BlueNoise {
+        static final int SIZE = 64;
+        static final int[] THRESHOLDS = generate();
+
+        private static final double SIGMA = 1.5;
+
+        private static int[] generate() {
+            int n = SIZE * SIZE;
+            double[] kernel = kernel();
+            boolean[] on = new boolean[n];
+            double[] energy = new double[n];
+            int[] rank = new int[n];
+
+            // start from sparse random points, then move points from the tightest cluster to the largest void until stable
+            Random random = new Random(0xB1E5EEDL);
+            int ones = n / 10;
+            for(int placed = 0; placed < ones; ) {
+                int p = random.nextInt(n);
+                if (!on[p]) { toggle(on, energy, kernel, p); placed++; }
+            }
+            for(int moves = 0; moves < n; moves++) {
+                int cluster = extreme(on, energy, true);
+                toggle(on, energy, kernel, cluster);
+                int avoid = extreme(on, energy, false);
+                if (avoid == cluster) {
+                    toggle(on, energy, kernel, cluster);
+                    break;
+                }
+                toggle(on, energy, kernel, avoid);
+            }
+
+            // rank the initial points by removing the tightest cluster each time
+            boolean[] initial = on.clone();
+            double[] initialEnergy = energy.clone();
+            for(int r = ones - 1; r >= 0; r--) {
+                int cluster = extreme(on, energy, true);
+                toggle(on, energy, kernel, cluster);
+                rank[cluster] = r;
+            }
+
+            // then rank every remaining pixel by filling the largest void each time
+            on = initial;
+            energy = initialEnergy;
+            for(int r = ones; r < n; r++) {
+                int avoid = extreme(on, energy, false);
+                toggle(on, energy, kernel, avoid);
+                rank[avoid] = r;
+            }
+
+            int[] thresholds = new int[n];
+            for(int p = 0; p < n; p++) {
+                thresholds[p] = (rank[p] * 2 + 1) * 256 / (n * 2);
+            }
+            return thresholds;
+        }
+
+        /**
+         * Gaussian weight by wrapped offset, so the pattern tiles
+         */
+        private static double[] kernel() {
+            double[] kernel = new double[SIZE * SIZE];
+            for(int dy = 0; dy < SIZE; dy++) {
+                for(int dx = 0; dx < SIZE; dx++) {
+                    int wx = Math.min(dx, SIZE - dx), wy = Math.min(dy, SIZE - dy);
+                    kernel[dy * SIZE + dx] = Math.exp(-(wx * wx + wy * wy) / (2 * SIGMA * SIGMA));
+                }
+            }
+            return kernel;
+        }
+
+        private static void toggle(boolean[] on, double[] energy, double[] kernel, int p) {
+            on[p] = !on[p];
+            double sign = on[p]? 1:-1;
+            int px = p % SIZE, py = p / SIZE;
+            for(int y = 0; y < SIZE; y++) {
+                int row = ((y - py) & (SIZE - 1)) * SIZE;
+                for(int x = 0; x < SIZE; x++) {
+                    energy[y * SIZE + x] += sign * kernel[row + ((x - px) & (SIZE - 1))];
+                }
+            }
+        }
+
+        /**
+         * @return The set pixel with the most energy (tightest cluster), or unset pixel with the least (largest void)
+         */
+        private static int extreme(boolean[] on, double[] energy, boolean cluster) {
+            int found = -1;
+            for(int p = 0; p < on.length; p++) {
+                if (on[p] != cluster) { continue; }
+                if (found < 0 || (cluster? energy[p] > energy[found]:energy[p] < energy[found])) { found = p; }
+            }
+            return found;
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+package qz.printer.action.raw;
+
+import java.awt.image.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Dithers an image straight into a {@link MonochromeImage}'s packed rows.
+ * <p>
+ * Ordered dithers convert bands of rows independently. Error diffusion can't be split into bands without visible seams,
+ * so rows are instead handed out to workers in order, and each row only advances while the row above it is at least two
+ * pixels ahead: every pixel receives exactly the error it would when dithering one row at a time.
+ */
+class Ditherer {
+
+    // below this many pixels, splitting across threads costs more than it saves
+    static final int PARALLEL_THRESHOLD = 512 * 512;
+    private static final int BAND_HEIGHT = 64;
+
+    // pixels a row may reach before publishing its progress to the row below
+    private static final int PROGRESS_STEP = 32;
+
+    // errors are kept in sixteenths of a luma step, so every diffusion weight is a whole number
+    private static final int SCALE = 16;
+    private static final int WHITE = 255 * SCALE;
+    private static final int MIDPOINT = 128 * SCALE;
+
+    private Ditherer() {}
+
+    static MonochromeImage dither(BufferedImage image, Dither dither, boolean invert) {
+        return dither(image, dither, invert, (long)image.getWidth() * image.getHeight() >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallel Whether to spread the work across threads, which gives the same image as without
+     */
+    static MonochromeImage dither(BufferedImage image, Dither dither, boolean invert, boolean parallel) {
+        MonochromeImage mono = new MonochromeImage(image.getWidth(), image.getHeight());
+        LumaReader reader = lumaReader(image);
+
+        if (dither.isErrorDiffusion()) {
+            diffuse(mono, reader, dither, invert, parallel);
+        } else {
+            ordered(mono, reader, dither, invert, parallel);
+        }
+        return mono;
+    }
+
+    private static void ordered(MonochromeImage mono, LumaReader reader, Dither dither, boolean invert, boolean parallel) {
+        int[] thresholds = dither.getThresholds();
+        int size = dither.getThresholdSize();
+        int width = mono.getWidth(), height = mono.getHeight(), bytesPerRow = mono.getBytesPerRow();
+        byte[] data = mono.getData();
+
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        IntStream range = IntStream.range(0, bands);
+        (parallel && bands > 1? range.parallel():range).forEach(band -> {
+            int[] luma = new int[width];
+            int end = Math.min(height, (band + 1) * BAND_HEIGHT);
+            for(int y = band * BAND_HEIGHT; y < end; y++) {
+                reader.read(y, luma);
+                int row = (y & (size - 1)) * size;
+                int offset = y * bytesPerRow;
+                for(int x = 0; x < width; x++) {
+                    if (invert != (luma[x] < thresholds[row + (x & (size - 1))])) { data[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7)); }
+                }
+            }
+        });
+    }
+
+    private static void diffuse(MonochromeImage mono, LumaReader reader, Dither dither, boolean invert, boolean parallel) {
+        int height = mono.getHeight();
+        int workers = parallel? Math.min(height, ForkJoinPool.getCommonPoolParallelism()):1;
+        if (workers <= 1) {
+            // error for the next two rows, reused as rows advance
+            int[][] errors = new int[3][mono.getWidth() + 4];
+            int[] luma = new int[mono.getWidth()];
+            for(int y = 0; y < height; y++) {
+                diffuseRow(mono, reader, dither, invert, y, luma, errors, null);
+            }
+            return;
+        }
+
+        // a row only writes into the next two, and at most one row per worker is in progress
+        int[][] errors = new int[workers + 3][mono.getWidth() + 4];
+        AtomicIntegerArray progress = new AtomicIntegerArray(height);
+        AtomicInteger nextRow = new AtomicInteger();
+
+        IntStream.range(0, workers).parallel().forEach(worker -> {
+            int[] luma = new int[mono.getWidth()];
+            int y;
+            while((y = nextRow.getAndIncrement()) < height) {
+                diffuseRow(mono, reader, dither, invert, y, luma, errors, progress);
+            }
+        });
+    }
+
+    /**
+     * Dithers row {@code y} using the error carried into {@code errors[y % errors.length]}, spreading its own error into
+     * the following rows' buffers
+     *
+     * @param progress Pixels done per row for concurrent rows, {@code null} when rows are dithered in order
+     */
+    private static void diffuseRow(MonochromeImage mono, LumaReader reader, Dither dither, boolean invert, int y, int[] luma, int[][] errors, AtomicIntegerArray progress) {
+        int width = mono.getWidth();
+        byte[] data = mono.getData();
+        int offset = y * mono.getBytesPerRow();
+        int rows = errors.length;
+        // buffers are offset by two so neighbors to the left and right never need bounds checks
+        int[] current = errors[y % rows], below = errors[(y + 1) % rows], twoBelow = errors[(y + 2) % rows];
+        boolean atkinson = dither == Dither.ATKINSON;
+
+        reader.read(y, luma);
+
+        int carry = 0, carryTwo = 0;
+        int ready = progress == null || y == 0? width:0;
+        for(int x = 0; x < width; x++) {
+            if (x + 2 > ready && ready < width) {
+                ready = awaitRow(progress, y - 1, Math.min(width, x + 2), width);
+            }
+
+            int value = luma[x] * SCALE + current[x + 2] + carry;
+            current[x + 2] = 0;
+            boolean black = value < MIDPOINT;
+            int error = value - (black? 0:WHITE);
+            if (invert != black) { data[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7)); }
+
+            if (atkinson) {
+                // an eighth each to two right, three below and one two rows down; the remaining quarter is dropped
+                int eighth = error / 8;
+                carry = carryTwo + eighth;
+                carryTwo = eighth;
+                below[x + 1] += eighth;
+                below[x + 2] += eighth;
+                below[x + 3] += eighth;
+                twoBelow[x + 2] += eighth;
+            } else {
+                // 7/16 right, 3/16 below left, 5/16 below, 1/16 below right
+                carry = error * 7 / 16;
+                below[x + 1] += error * 3 / 16;
+                below[x + 2] += error * 5 / 16;
+                below[x + 3] += error / 16;
+            }
+
+            if (progress != null && (x + 1) % PROGRESS_STEP == 0) {
+                progress.set(y, x + 1);
+            }
+        }
+        if (progress != null) {
+            progress.set(y, width);
+        }
+    }
+
+    /**
+     * Waits for row {@code y} to pass pixel {@code needed}, returning how far it has reached
+     */
+    private static int awaitRow(AtomicIntegerArray progress, int y, int needed, int width) {
+        int done;
+        for(int spins = 0; (done = progress.get(y)) < needed; spins++) {
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return done >= width? width:done;
+    }
+
+    @FunctionalInterface
+    private interface LumaReader {
+        /**
+         * Fills {@code luma} with row {@code y}'s luma, 0 to 255, with transparent pixels blended towards white
+         */
+        void read(int y, int[] luma);
+    }
+
+    private static int luma(int r, int g, int b, int a) {
+        int luma = ((r * 299) + (g * 587) + (b * 114)) / 1000;
+        return 255 - ((255 - luma) * a) / 255;
+    }
+
+    private static int luma(int argb) {
+        return luma((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, argb >>> 24);
+    }
+
+    private static LumaReader lumaReader(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int w = image.getWidth();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+
+        switch(image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                if (!(sm instanceof SinglePixelPackedSampleModel) || !(db instanceof DataBufferInt)) { break; }
+                int[] pixels = ((DataBufferInt)db).getData();
+                int stride = ((SinglePixelPackedSampleModel)sm).getScanlineStride();
+                int base = db.getOffset() + ((SinglePixelPackedSampleModel)sm).getOffset(-tx, -ty);
+                int opaque = image.getType() == BufferedImage.TYPE_INT_RGB? 0xFF000000:0;
+                return (y, luma) -> {
+                    int p = base + y * stride;
+                    for(int x = 0; x < w; x++) {
+                        luma[x] = luma(pixels[p + x] | opaque);
+                    }
+                };
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                if (!(sm instanceof PixelInterleavedSampleModel) || !(db instanceof DataBufferByte)) { break; }
+                PixelInterleavedSampleModel pism = (PixelInterleavedSampleModel)sm;
+                byte[] pixels = ((DataBufferByte)db).getData();
+                int stride = pism.getScanlineStride();
+                int pixelStride = pism.getPixelStride();
+                int[] bands = pism.getBandOffsets();
+                int base = db.getOffset() + (-ty) * stride + (-tx) * pixelStride;
+                boolean alpha = bands.length > 3;
+                return (y, luma) -> {
+                    int p = base + y * stride;
+                    for(int x = 0; x < w; x++, p += pixelStride) {
+                        luma[x] = luma(pixels[p + bands[0]] & 0xFF, pixels[p + bands[1]] & 0xFF, pixels[p + bands[2]] & 0xFF,
+                                       alpha? pixels[p + bands[3]] & 0xFF:0xFF);
+                    }
+                };
+            }
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_BYTE_INDEXED: {
+                if (!(sm instanceof ComponentSampleModel) || !(db instanceof DataBufferByte)) { break; }
+                ComponentSampleModel csm = (ComponentSampleModel)sm;
+                byte[] pixels = ((DataBufferByte)db).getData();
+                int stride = csm.getScanlineStride();
+                int pixelStride = csm.getPixelStride();
+                int base = db.getOffset() + (-ty) * stride + (-tx) * pixelStride + csm.getBandOffsets()[0];
+                // samples go through the color model, as with getRGB()
+                ColorModel cm = image.getColorModel();
+                int[] table = new int[256];
+                for(int i = 0; i < table.length; i++) {
+                    table[i] = luma(cm.getRGB(i));
+                }
+                return (y, luma) -> {
+                    int p = base + y * stride;
+                    for(int x = 0; x < w; x++, p += pixelStride) {
+                        luma[x] = table[pixels[p] & 0xFF];
+                    }
+                };
+            }
+        }
+
+        // any other layout, one row at a time
+        return (y, luma) -> {
+            int[] row = image.getRGB(0, y, w, 1, null, 0, w);
+            for(int x = 0; x < w; x++) {
+                luma[x] = luma(row[x]);
+            }
+        };
+    }
+
+}
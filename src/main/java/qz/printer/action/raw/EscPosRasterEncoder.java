@@ -0,0 +1,176 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action.raw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Encodes packed monochrome rows as ESC/POS raster graphics, one band of rows per command.
+ * <p>
+ * Raster rows are sent as-is, so the output is about a third the size of {@code ESC *} column slices. With a
+ * {@link BandSource}, each band is converted only when it's reached, so a long receipt is never converted to monochrome
+ * all at once. Bands are written to {@code out} as they're encoded, but for a print job that's the job's command buffer,
+ * which is only sent to the printer once the whole job is built.
+ */
+public class EscPosRasterEncoder {
+
+    public enum Mode {
+        /** {@code ESC *} 8 or 24 dot column slices, supported by nearly every ESC/POS and ESC/P printer */
+        COLUMN,
+        /** {@code GS v 0} raster bit image */
+        RASTER,
+        /** {@code GS ( L} raster graphics, stored in the print buffer then printed; for newer printers */
+        GRAPHICS;
+
+        public static Mode parse(String value) {
+            if (value == null || value.isEmpty()) { return COLUMN; }
+            switch(value.toUpperCase(Locale.ENGLISH)) {
+                case "COLUMN":
+                case "SLICE":
+                case "ESC*":
+                    return COLUMN;
+                case "RASTER":
+                case "GSV0":
+                    return RASTER;
+                case "GRAPHICS":
+                case "GSL":
+                    return GRAPHICS;
+                default:
+                    throw new IllegalArgumentException("Unknown ESC/POS image mode \"" + value + "\"");
+            }
+        }
+    }
+
+    /**
+     * Supplies packed rows a band at a time
+     */
+    @FunctionalInterface
+    public interface BandSource {
+        /**
+         * @return Rows {@code y} to {@code y + rows - 1} as a monochrome image whose first row is {@code y}
+         */
+        MonochromeImage getBand(int y, int rows);
+    }
+
+    // rows per band, a multiple of every ordered dither size so patterns line up across bands
+    static final int BAND_ROWS = 128;
+
+    // GS ( L parameters: m, fn, a (monochrome), bx, by (no scaling), c (first color), then xL xH yL yH
+    private static final int GRAPHICS_HEADER = 10;
+    private static final int MAX_SHORT_PARAMETERS = 0xFFFF;
+    private static final int HEADER_SIZE = 17;
+
+    // GS ( L fn 50: print the stored graphics
+    private static final byte[] PRINT_GRAPHICS = {0x1D, 0x28, 0x4C, 0x02, 0x00, 0x30, 0x32};
+
+    private EscPosRasterEncoder() {}
+
+    /**
+     * Writes an already converted image, one band at a time
+     */
+    public static void encode(MonochromeImage image, Mode mode, OutputStream out) throws IOException {
+        int bytesPerRow = image.getBytesPerRow();
+        int bandRows = getBandRows(mode, bytesPerRow);
+        byte[] header = new byte[HEADER_SIZE];
+        for(int y = 0; y < image.getHeight(); y += bandRows) {
+            int rows = Math.min(bandRows, image.getHeight() - y);
+            writeBand(image.getData(), y * bytesPerRow, image.getWidth(), rows, mode, header, out);
+        }
+    }
+
+    /**
+     * Writes the image one band at a time, converting each band only when it's reached
+     *
+     * @param width  Width of the image in dots
+     * @param height Height of the image in dots
+     */
+    public static void encode(BandSource source, int width, int height, Mode mode, OutputStream out) throws IOException {
+        int bytesPerRow = (width + 7) / 8;
+        int bandRows = getBandRows(mode, bytesPerRow);
+        byte[] header = new byte[HEADER_SIZE];
+        for(int y = 0; y < height; y += bandRows) {
+            int rows = Math.min(bandRows, height - y);
+            MonochromeImage band = source.getBand(y, rows);
+            if (band.getBytesPerRow() != bytesPerRow || band.getHeight() < rows) {
+                throw new IllegalStateException("Band size doesn't match the image");
+            }
+            writeBand(band.getData(), 0, width, rows, mode, header, out);
+        }
+    }
+
+    private static int getBandRows(Mode mode, int bytesPerRow) {
+        switch(mode) {
+            case RASTER:
+                return BAND_ROWS;
+            case GRAPHICS:
+                // keep each band within a short GS ( L when rows allow it
+                return Math.max(1, Math.min(BAND_ROWS, (MAX_SHORT_PARAMETERS - GRAPHICS_HEADER) / Math.max(1, bytesPerRow)));
+            default:
+                throw new IllegalArgumentException(mode + " images are encoded by ImageWrapper");
+        }
+    }
+
+    private static void writeBand(byte[] data, int offset, int width, int rows, Mode mode, byte[] header, OutputStream out) throws IOException {
+        int bytesPerRow = (width + 7) / 8;
+        int length = mode == Mode.RASTER? rasterHeader(header, bytesPerRow, rows):graphicsHeader(header, width, rows, bytesPerRow * rows);
+        out.write(header, 0, length);
+        out.write(data, offset, bytesPerRow * rows);
+        if (mode == Mode.GRAPHICS) {
+            out.write(PRINT_GRAPHICS);
+        }
+    }
+
+    /**
+     * {@code GS v 0 m xL xH yL yH}, with width in bytes
+     */
+    private static int rasterHeader(byte[] header, int bytesPerRow, int rows) {
+        header[0] = 0x1D;
+        header[1] = 0x76;
+        header[2] = 0x30;
+        header[3] = 0x00; // normal scale
+        header[4] = (byte)(bytesPerRow & 0xFF);
+        header[5] = (byte)(bytesPerRow >> 8);
+        header[6] = (byte)(rows & 0xFF);
+        header[7] = (byte)(rows >> 8);
+        return 8;
+    }
+
+    /**
+     * {@code GS ( L} (or {@code GS 8 L} when larger) fn 112, storing a raster graphic, with width in dots
+     */
+    private static int graphicsHeader(byte[] header, int width, int rows, int dataLength) {
+        int parameters = GRAPHICS_HEADER + dataLength;
+        int i = 0;
+        header[i++] = 0x1D;
+        if (parameters <= MAX_SHORT_PARAMETERS) {
+            header[i++] = 0x28;
+            header[i++] = 0x4C;
+            header[i++] = (byte)(parameters & 0xFF);
+            header[i++] = (byte)(parameters >> 8);
+        } else {
+            header[i++] = 0x38;
+            header[i++] = 0x4C;
+            header[i++] = (byte)(parameters & 0xFF);
+            header[i++] = (byte)(parameters >> 8);
+            header[i++] = (byte)(parameters >> 16);
+            header[i++] = (byte)(parameters >> 24);
+        }
+        header[i++] = 0x30; // m
+        header[i++] = 0x70; // fn 112
+        header[i++] = 0x30; // monochrome
+        header[i++] = 0x01; // bx
+        header[i++] = 0x01; // by
+        header[i++] = 0x31; // color 1
+        header[i++] = (byte)(width & 0xFF);
+        header[i++] = (byte)(width >> 8);
+        header[i++] = (byte)(rows & 0xFF);
+        header[i++] = (byte)(rows >> 8);
+        return i;
+    }
+
+}
@@ -73,19 +73,21 @@ public class ImageWrapper {
     public static final int CHECK_ALPHA = 2;
 
     private int lumaThreshold = 127;
-    private boolean[] imageAsBooleanArray;        //Image representation as an array of boolean, with true values representing imageAsBooleanArray dots
-    private int[] imageAsIntArray;                //Image representation as an array of ints, with each bit representing a imageAsBooleanArray dot
+    private MonochromeImage monochrome;           //Image representation as packed rows, with each set bit representing a printed dot
     private ByteArrayBuilder byteBuffer = new ByteArrayBuilder();
     private int alphaThreshold = 127;
     private BufferedImage bufferedImage;
     private LanguageType languageType;
     private Charset charset = Charset.defaultCharset();
     private int imageQuantizationMethod = CHECK_LUMA;
+    private Dither dither = Dither.NONE;
     private int xPos = 0;   // X coordinate used for EPL2, CPCL.  Irrelevant for ZPLII, ESC/POS, etc
     private int yPos = 0;   // Y coordinate used for EPL2, CPCL.  Irrelevant for ZPLII, ESC/POS, etc
     private String logoId = "";  // PGL only, the logo ID
     private boolean igpDots = false; // PGL only, toggle IGP/PGL default resolution of 72dpi
+    private ZplGraphicEncoder.Compression zplCompression = ZplGraphicEncoder.Compression.NONE; // ZPL only, ^GFA data compression
     private int dotDensity = 32;  // Generally 32 = Single (normal) 33 = Double (higher res) for ESC/POS.  Irrelevant for all other languages.
+    private EscPosRasterEncoder.Mode escPosMode = EscPosRasterEncoder.Mode.COLUMN; // ESC/POS only, column slices or raster graphics
 
     private boolean legacyMode = false; // Use newlines for ESC/POS spacing; simulates <=2.0.11 behavior
 
@@ -198,6 +200,23 @@ public class ImageWrapper {
         this.alphaThreshold = alphaThreshold;
     }
 
+    public Dither getDither() {
+        return dither;
+    }
+
+    /**
+     * Sets the dithering used to convert the image to monochrome, converting it again if changed. Anything other than
+     * {@code Dither.NONE} replaces the quantization method.
+     *
+     * @param dither the dithering to use
+     */
+    public void setDither(Dither dither) {
+        if (dither != this.dither) {
+            this.dither = dither;
+            init();
+        }
+    }
+
     public int getDotDensity() {
         return dotDensity;
     }
@@ -207,6 +226,14 @@ public class ImageWrapper {
         this.dotDensity = Math.abs(dotDensity);
     }
 
+    public EscPosRasterEncoder.Mode getEscPosMode() {
+        return escPosMode;
+    }
+
+    public void setEscPosMode(EscPosRasterEncoder.Mode escPosMode) {
+        this.escPosMode = escPosMode;
+    }
+
     public void setLogoId(String logoId) {
         this.logoId = logoId;
     }
@@ -223,6 +250,18 @@ public class ImageWrapper {
         return igpDots;
     }
 
+    public LanguageType getLanguageType() {
+        return languageType;
+    }
+
+    public ZplGraphicEncoder.Compression getZplCompression() {
+        return zplCompression;
+    }
+
+    public void setZplCompression(ZplGraphicEncoder.Compression zplCompression) {
+        this.zplCompression = zplCompression;
+    }
+
     public int getxPos() {
         return xPos;
     }
@@ -240,89 +279,41 @@ public class ImageWrapper {
     }
 
     /**
-     * Tests if a given pixel should be black. Multiple quantization algorithms
-     * are available. The quantization method should be adjusted with
-     * setQuantizationMethod. Should an invalid value be set as the
-     * quantization method, CHECK_BLACK will be used
-     *
-     * @param rgbPixel the color of the pixel as defined in getRGB()
-     * @return true if the pixel should be black, false otherwise
+     * Converts the image to packed monochrome rows.
+     * <p/>
+     * It makes most sense to have black pixels as 1's and white pixels
+     * as zero's, however some printer manufacturers had this reversed
+     * and used 0's for the black pixels.  EPL is a common language that
+     * uses 0's for black pixels.
+     * See also: https://support.zebra.com/cpws/docs/eltron/gw_command.htm
      */
-    private boolean isBlack(int rgbPixel) {
-        Color color = new Color(rgbPixel, true);
-
-        int r = color.getRed();
-        int g = color.getGreen();
-        int b = color.getBlue();
-        int a = color.getAlpha();
-        switch(getImageQuantizationMethod()) {
-            case CHECK_LUMA:
-                if (a < getLumaThreshold()) {
-                    return false; // assume pixels that are less opaque than the luma threshold should be considered to be white
-                }
-
-                int luma = ((r * 299) + (g * 587) + (b * 114)) / 1000; //luma formula
-                return luma < getLumaThreshold(); //pixels that have less luma than the threshold are black
-            case CHECK_ALPHA:
-                return a > getAlphaThreshold(); //pixels that are more opaque than the threshold are black
-            case CHECK_BLACK: //only fully black pixels are black
-            default:
-                return color.equals(Color.BLACK); //The default
-
+    private MonochromeImage generateBlackPixels(BufferedImage bi) {
+        if (dither != Dither.NONE) {
+            log.info("Converting image to monochrome with {} dithering", dither);
+            return MonochromeImage.convert(bi, dither, languageType.requiresImageOutputInverted());
         }
-    }
-
-    /**
-     * Sets ImageAsBooleanArray. boolean is used instead of int for memory
-     * considerations.
-     */
-    private boolean[] generateBlackPixels(BufferedImage bi) {
         log.info("Converting image to monochrome");
-        int h = bi.getHeight();
-        int w = bi.getWidth();
-        int[] rgbPixels = bi.getRGB(0, 0, w, h, null, 0, w);
-
-        /*
-         * It makes most sense to have black pixels as 1's and white pixels
-         * as zero's, however some printer manufacturers had this reversed
-         * and used 0's for the black pixels.  EPL is a common language that
-         * uses 0's for black pixels.
-         * See also: https://support.zebra.com/cpws/docs/eltron/gw_command.htm
-         */
-        boolean[] pixels = new boolean[rgbPixels.length];
-        for(int i = 0; i < rgbPixels.length; i++) {
-            pixels[i] = languageType.requiresImageOutputInverted() != isBlack(rgbPixels[i]);
-        }
-
-        return pixels;
+        return MonochromeImage.convert(bi, getImageQuantizationMethod(), getLumaThreshold(), getAlphaThreshold(),
+                                       languageType.requiresImageOutputInverted());
     }
 
     /**
-     * Converts the internal representation of the image into an array of bytes,
-     * suitable to be sent to a raw printer.
+     * Returns the packed rows of the image, suitable to be sent to a raw printer.
      *
      * @return The raw bytes that compose the image
      */
     private byte[] getBytes() {
-        log.info("Generating byte array");
-        int[] ints = getImageAsIntArray();
-        byte[] bytes = new byte[ints.length];
-        for(int i = 0; i < ints.length; i++) {
-            bytes[i] = (byte)ints[i];
-        }
-
-        return bytes;
+        return getMonochrome().getData();
     }
 
-    private void generateIntArray() {
-        log.info("Packing bits");
-        imageAsIntArray = new int[imageAsBooleanArray.length / 8];
-        // Convert every eight zero's to a full byte, in decimal
-        for(int i = 0; i < imageAsIntArray.length; i++) {
-            for(int k = 0; k < 8; k++) {
-                imageAsIntArray[i] += (imageAsBooleanArray[8 * i + k]? 1:0) << 7 - k;
-            }
+    /**
+     * @return the packed rows, converting the image on first use
+     */
+    private MonochromeImage getMonochrome() {
+        if (monochrome == null) {
+            monochrome = generateBlackPixels(bufferedImage);
         }
+        return monochrome;
     }
 
     /**
@@ -337,17 +328,14 @@ public class ImageWrapper {
 
         switch(languageType) {
             case ESCP:
-                appendEpsonSlices(getByteBuffer());
+                if (escPosMode == EscPosRasterEncoder.Mode.COLUMN) {
+                    appendEpsonSlices(getByteBuffer());
+                } else {
+                    appendEscPosRaster(getByteBuffer());
+                }
                 break;
             case ZPL:
-                String zplHexAsString = ByteUtilities.getHexString(getImageAsIntArray());
-                int byteLen = zplHexAsString.length() / 2;
-                int perRow = byteLen / getHeight();
-                StringBuilder zpl = new StringBuilder("^GFA,")
-                        .append(byteLen).append(",").append(byteLen).append(",")
-                        .append(perRow).append(",").append(zplHexAsString);
-
-                getByteBuffer().append(zpl, charset);
+                getByteBuffer().append(ZplGraphicEncoder.encode(getMonochrome(), zplCompression), charset);
                 break;
             case EPL:
                 StringBuilder epl = new StringBuilder("GW")
@@ -356,10 +344,10 @@ public class ImageWrapper {
                         .append(getWidth() / 8).append(",")
                         .append(getHeight()).append(",");
 
-                getByteBuffer().append(epl, charset).append(getBytes()).append(new byte[] {10});
+                getByteBuffer().append(epl, charset).append(getBytes()).append((byte)10);
                 break;
             case CPCL:
-                String cpclHexAsString = ByteUtilities.getHexString(getImageAsIntArray());
+                String cpclHexAsString = ByteUtilities.bytesToHex(getBytes());
                 StringBuilder cpcl = new StringBuilder("EG ")
                         .append(getWidth() / 8).append(" ")
                         .append(getHeight()).append(" ")
@@ -395,7 +383,7 @@ public class ImageWrapper {
 
                 break;
             case SBPL:
-                String sbplHexAsString = ByteUtilities.getHexString(getImageAsIntArray());
+                String sbplHexAsString = ByteUtilities.bytesToHex(getBytes());
                 StringBuilder sbpl = new StringBuilder("GH")
                         .append(String.format("%03d", getWidth() / 8))
                         .append(String.format("%03d", getHeight() / 8))
@@ -445,10 +433,10 @@ public class ImageWrapper {
     }
 
     /**
-     * @return the image as an array of booleans
+     * @return the image as packed monochrome rows
      */
-    private boolean[] getImageAsBooleanArray() {
-        return imageAsBooleanArray;
+    public MonochromeImage getMonochromeImage() {
+        return getMonochrome();
     }
 
     /**
@@ -460,7 +448,6 @@ public class ImageWrapper {
      */
     private String getImageAsPGLDots() {
         StringBuilder pglDots = new StringBuilder();
-        int pixelIndex = 0;
         for(int h = 1; h <= getHeight(); h++) {
             StringBuilder line = new StringBuilder();
 
@@ -468,7 +455,7 @@ public class ImageWrapper {
             int end = -1;
 
             for(int w = 1; w <= getWidth(); w++) {
-                if(imageAsBooleanArray[pixelIndex]) {
+                if(getMonochrome().isSet(w - 1, h - 1)) {
                     System.out.print(".");
                     if(start == -1) {
                         start = w;
@@ -496,7 +483,6 @@ public class ImageWrapper {
                     start = -1;
                     end = -1;
                 }
-                pixelIndex++;
             }
             System.out.print("\n");
             if(line.length() > 0) {
@@ -517,37 +503,15 @@ public class ImageWrapper {
     }
 
     /**
-     * @param imageAsBooleanArray the imageAsBooleanArray to set
-     */
-    private void setImageAsBooleanArray(boolean[] imageAsBooleanArray) {
-        this.imageAsBooleanArray = imageAsBooleanArray;
-    }
-
-    /**
-     * @return the imageAsIntArray
-     */
-    private int[] getImageAsIntArray() {
-        return imageAsIntArray;
-    }
-
-    /**
-     * @param imageAsIntArray the imageAsIntArray to set
-     */
-    private void setImageAsIntArray(int[] imageAsIntArray) {
-        this.imageAsIntArray = imageAsIntArray;
-    }
-
-    /**
-     * Initializes the ImageWrapper. This populates the internal structures with
-     * the data created from the original image. It is normally called by the
-     * constructor, but if for any reason you change the image contents (for
-     * example, if you resize the image), it must be initialized again prior to
-     * calling getImageCommand()
+     * Initializes the ImageWrapper. This clears the internal structures created
+     * from the original image, which are rebuilt the next time they're needed.
+     * It is normally called by the constructor, but if for any reason you change
+     * the image contents (for example, if you resize the image), it must be
+     * initialized again prior to calling getImageCommand()
      */
     private void init() {
         log.info("Initializing Image Fields");
-        setImageAsBooleanArray(generateBlackPixels(bufferedImage));
-        generateIntArray();
+        monochrome = null;
     }
 
     public Charset getCharset() {
@@ -589,6 +553,7 @@ public class ImageWrapper {
      * @param builder the ByteArrayBuilder to use
      */
     private void appendEpsonSlices(ByteArrayBuilder builder) {
+        MonochromeImage monochrome = getMonochrome();
         // set line height to the size of each chunk we will be sending
         int segmentHeight = dotDensity > 1 ? 24 : (dotDensity == 1 ? 8 : 16); // height will be handled explicitly below if striping
         // Impact printers (U220, etc) benefit from double-pass striping (odd/even) for higher quality (dotDensity = 1)
@@ -618,15 +583,14 @@ public class ImageWrapper {
                         // get the y position of the current pixel being found
                         int y = offset + ((bite * 8) + bit);
 
-                        // calculate the location of the pixel we want in the bit array and update the slice if it is supposed to be black
-                        int i = (y * getWidth()) + x;
-                        if (i < imageAsBooleanArray.length && imageAsBooleanArray[i]) {
+                        // update the slice if the pixel is supposed to be black, rows past the end of the image are blank
+                        if (monochrome.isSet(x, y)) {
                             // append desired bit to current byte being built, remembering that bits go right to left
                             slice |= (byte)(1 << (7 - (bit - (zeroPass? 0:1)) / (stripe? 2:1)));
                         }
                     }
 
-                    builder.append(new byte[] {slice});
+                    builder.append(slice);
                 }
             }
 
@@ -658,6 +622,33 @@ public class ImageWrapper {
         }
     }
 
+    /**
+     * Appends the image as ESC/POS raster graphics. Unless the whole image is already converted, or the dithering
+     * needs the rows above, each band of rows is only converted as it's appended.
+     *
+     * @param builder the ByteArrayBuilder to use
+     */
+    private void appendEscPosRaster(ByteArrayBuilder builder) throws InvalidRawImageException {
+        try {
+            if (monochrome != null || dither.isErrorDiffusion()) {
+                EscPosRasterEncoder.encode(getMonochrome(), escPosMode, builder.asOutputStream());
+            } else {
+                log.info("Converting image to monochrome by band");
+                boolean invert = languageType.requiresImageOutputInverted();
+                EscPosRasterEncoder.encode((y, rows) -> {
+                    BufferedImage band = bufferedImage.getSubimage(0, y, getWidth(), rows);
+                    if (dither != Dither.NONE) {
+                        return MonochromeImage.convert(band, dither, invert);
+                    }
+                    return MonochromeImage.convert(band, getImageQuantizationMethod(), getLumaThreshold(), getAlphaThreshold(), invert);
+                }, getWidth(), getHeight(), escPosMode, builder.asOutputStream());
+            }
+        }
+        catch(IOException e) {
+            throw new InvalidRawImageException(e.getMessage(), e);
+        }
+    }
+
     private ArrayList<float[]> convertToCYMK() throws IOException {
         int[] pixels = bufferedImage.getRGB(0, 0, getWidth(), getHeight(), null, 0, getWidth());
 
@@ -707,9 +698,9 @@ public class ImageWrapper {
             }
         } else if (overlay instanceof String) {
             //image mask
-            boolean[] mask = generateBlackPixels(ImageIO.read(new URL((String)overlay)));
+            MonochromeImage mask = generateBlackPixels(ImageIO.read(new URL((String)overlay)));
             for(int i = 0; i < overlayData.length; i++) {
-                overlayData[i] = (mask[i]? 1.0f:0.0f);
+                overlayData[i] = (mask.isSet(i % getWidth(), i / getWidth())? 1.0f:0.0f);
             }
         } else if (overlay instanceof Boolean && (boolean)overlay) {
             //boolean coat
@@ -725,12 +716,12 @@ public class ImageWrapper {
         log.debug("Building ribbon 'Db;{};{};..'", ribbon, precision);
 
         getByteBuffer().append("\u001BDb;" + ribbon + ";" + precision + ";", charset);
-        getByteBuffer().append(compactBits(precision, colorData));
-        getByteBuffer().append(new byte[] {0x0D});
+        compactBits(precision, colorData, getByteBuffer());
+        getByteBuffer().append((byte)0x0D);
     }
 
-    private ArrayList<Byte> compactBits(int precision, float[] colorData) {
-        ArrayList<Byte> bytes = new ArrayList<>();
+    private void compactBits(int precision, float[] colorData, ByteArrayBuilder bytes) {
+        bytes.ensureCapacity(bytes.getLength() + colorData.length);
 
         int bits = precisionBits(precision);
         int empty = 8 - bits;
@@ -757,10 +748,8 @@ public class ImageWrapper {
                 if (empty > 8) { empty -= 8; } //wrap around so we never shift over a byte length
             }
 
-            bytes.add(b);
+            bytes.append(b);
         }
-
-        return bytes;
     }
 
     private int precisionBits(int precision) {
@@ -0,0 +1,267 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action.raw;
+
+import java.awt.image.*;
+import java.util.stream.IntStream;
+
+/**
+ * Monochrome representation of an image as packed rows of bits, most significant bit first.
+ * <p>
+ * Each row occupies {@code (width + 7) / 8} bytes with any unused trailing bits left clear. Conversion reads the
+ * image's {@code DataBuffer} directly for common image types, falling back to {@code getRGB} one row at a time
+ * otherwise, and splits tall images into bands processed on the common {@code ForkJoinPool}.
+ */
+public class MonochromeImage {
+
+    // below this many pixels, splitting into bands costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 512 * 512;
+    private static final int BAND_HEIGHT = 64;
+
+    private final int width;
+    private final int height;
+    private final int bytesPerRow;
+    private final byte[] data;
+
+    public MonochromeImage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        bytesPerRow = (width + 7) / 8;
+        data = new byte[bytesPerRow * height];
+    }
+
+    /**
+     * Converts {@code image} to packed rows, setting a bit for every pixel considered black.
+     *
+     * @param image          Image to convert
+     * @param method         One of {@code ImageWrapper.CHECK_BLACK}, {@code CHECK_LUMA} or {@code CHECK_ALPHA}
+     * @param lumaThreshold  Threshold used by {@code CHECK_LUMA}
+     * @param alphaThreshold Threshold used by {@code CHECK_ALPHA}
+     * @param invert         Set bits for white pixels instead, for languages which use 0's for black
+     */
+    public static MonochromeImage convert(BufferedImage image, int method, int lumaThreshold, int alphaThreshold, boolean invert) {
+        MonochromeImage mono = new MonochromeImage(image.getWidth(), image.getHeight());
+        Quantizer quantizer = new Quantizer(method, lumaThreshold, alphaThreshold, invert);
+        RowConverter converter = rowConverter(image, quantizer);
+
+        int bands = (mono.height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        if ((long)mono.width * mono.height >= PARALLEL_THRESHOLD && bands > 1) {
+            IntStream.range(0, bands).parallel().forEach(band -> mono.convertBand(converter, band));
+        } else {
+            for(int band = 0; band < bands; band++) {
+                mono.convertBand(converter, band);
+            }
+        }
+
+        return mono;
+    }
+
+    /**
+     * Converts {@code image} to packed rows using {@code dither}, setting a bit for every dot that should print black.
+     *
+     * @param invert Set bits for white dots instead, for languages which use 0's for black
+     */
+    public static MonochromeImage convert(BufferedImage image, Dither dither, boolean invert) {
+        return Ditherer.dither(image, dither, invert);
+    }
+
+    private void convertBand(RowConverter converter, int band) {
+        int end = Math.min(height, (band + 1) * BAND_HEIGHT);
+        for(int y = band * BAND_HEIGHT; y < end; y++) {
+            converter.convert(y, data, y * bytesPerRow);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBytesPerRow() {
+        return bytesPerRow;
+    }
+
+    /**
+     * @return The packed rows backing this image; not a copy
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return Whether the bit for pixel ({@code x}, {@code y}) is set, {@code false} for coordinates outside the image
+     */
+    public boolean isSet(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) { return false; }
+        return (data[y * bytesPerRow + (x >> 3)] & (0x80 >>> (x & 7))) != 0;
+    }
+
+    public void set(int x, int y) {
+        data[y * bytesPerRow + (x >> 3)] |= (byte)(0x80 >>> (x & 7));
+    }
+
+
+    /**
+     * Pixel quantization, mirroring the rules documented on {@code ImageWrapper} without allocating per pixel
+     */
+    static final class Quantizer {
+        private final int method;
+        private final int lumaThreshold;
+        private final int alphaThreshold;
+        private final boolean invert;
+
+        Quantizer(int method, int lumaThreshold, int alphaThreshold, boolean invert) {
+            this.method = method;
+            this.lumaThreshold = lumaThreshold;
+            this.alphaThreshold = alphaThreshold;
+            this.invert = invert;
+        }
+
+        boolean isBlack(int r, int g, int b, int a) {
+            switch(method) {
+                case ImageWrapper.CHECK_LUMA:
+                    if (a < lumaThreshold) {
+                        return false; // assume pixels that are less opaque than the luma threshold should be considered to be white
+                    }
+                    return ((r * 299) + (g * 587) + (b * 114)) / 1000 < lumaThreshold;
+                case ImageWrapper.CHECK_ALPHA:
+                    return a > alphaThreshold;
+                case ImageWrapper.CHECK_BLACK:
+                default:
+                    return a == 0xFF && r == 0 && g == 0 && b == 0;
+            }
+        }
+
+        boolean isBlack(int argb) {
+            return isBlack((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, argb >>> 24);
+        }
+
+        /**
+         * @return Whether the bit for a pixel with the given color should be set
+         */
+        boolean isSet(int argb) {
+            return invert != isBlack(argb);
+        }
+
+        boolean isSet(int r, int g, int b, int a) {
+            return invert != isBlack(r, g, b, a);
+        }
+
+        /**
+         * Precomputes {@link #isSet(int)} for every index of a color model, for gray and indexed images
+         */
+        boolean[] lookupTable(ColorModel cm, int size) {
+            boolean[] table = new boolean[size];
+            for(int i = 0; i < size; i++) {
+                table[i] = isSet(cm.getRGB(i));
+            }
+            return table;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowConverter {
+        /**
+         * Packs row {@code y} into {@code dest} starting at {@code offset}
+         */
+        void convert(int y, byte[] dest, int offset);
+    }
+
+    private static RowConverter rowConverter(BufferedImage image, Quantizer q) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int w = image.getWidth();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+
+        switch(image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                if (!(sm instanceof SinglePixelPackedSampleModel) || !(db instanceof DataBufferInt)) { break; }
+                int[] pixels = ((DataBufferInt)db).getData();
+                int stride = ((SinglePixelPackedSampleModel)sm).getScanlineStride();
+                int base = db.getOffset() + ((SinglePixelPackedSampleModel)sm).getOffset(-tx, -ty);
+                int opaque = image.getType() == BufferedImage.TYPE_INT_RGB? 0xFF000000:0;
+                return (y, dest, offset) -> {
+                    int p = base + y * stride;
+                    for(int x = 0; x < w; x++) {
+                        if (q.isSet(pixels[p + x] | opaque)) { dest[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7)); }
+                    }
+                };
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                if (!(sm instanceof PixelInterleavedSampleModel) || !(db instanceof DataBufferByte)) { break; }
+                PixelInterleavedSampleModel pism = (PixelInterleavedSampleModel)sm;
+                byte[] pixels = ((DataBufferByte)db).getData();
+                int stride = pism.getScanlineStride();
+                int pixelStride = pism.getPixelStride();
+                int[] bands = pism.getBandOffsets();
+                int base = db.getOffset() + (-ty) * stride + (-tx) * pixelStride;
+                boolean alpha = bands.length > 3;
+                return (y, dest, offset) -> {
+                    int p = base + y * stride;
+                    for(int x = 0; x < w; x++, p += pixelStride) {
+                        int r = pixels[p + bands[0]] & 0xFF;
+                        int g = pixels[p + bands[1]] & 0xFF;
+                        int b = pixels[p + bands[2]] & 0xFF;
+                        int a = alpha? pixels[p + bands[3]] & 0xFF:0xFF;
+                        if (q.isSet(r, g, b, a)) { dest[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7)); }
+                    }
+                };
+            }
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_BYTE_INDEXED: {
+                if (!(sm instanceof ComponentSampleModel) || !(db instanceof DataBufferByte)) { break; }
+                ComponentSampleModel csm = (ComponentSampleModel)sm;
+                byte[] pixels = ((DataBufferByte)db).getData();
+                int stride = csm.getScanlineStride();
+                int pixelStride = csm.getPixelStride();
+                int base = db.getOffset() + (-ty) * stride + (-tx) * pixelStride + csm.getBandOffsets()[0];
+                // gray samples go through the color space just like getRGB(), so look them up rather than using them as luma
+                boolean[] table = q.lookupTable(image.getColorModel(), 256);
+                return (y, dest, offset) -> {
+                    int p = base + y * stride;
+                    for(int x = 0; x < w; x++, p += pixelStride) {
+                        if (table[pixels[p] & 0xFF]) { dest[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7)); }
+                    }
+                };
+            }
+            case BufferedImage.TYPE_BYTE_BINARY: {
+                if (!(sm instanceof MultiPixelPackedSampleModel) || !(db instanceof DataBufferByte)) { break; }
+                MultiPixelPackedSampleModel mpsm = (MultiPixelPackedSampleModel)sm;
+                byte[] pixels = ((DataBufferByte)db).getData();
+                int stride = mpsm.getScanlineStride();
+                int bits = mpsm.getPixelBitStride();
+                int mask = (1 << bits) - 1;
+                int bitOffset = mpsm.getDataBitOffset() + (-tx) * bits;
+                int base = db.getOffset() + (-ty) * stride;
+                boolean[] table = q.lookupTable(image.getColorModel(), 1 << bits);
+                return (y, dest, offset) -> {
+                    int row = base + y * stride;
+                    for(int x = 0; x < w; x++) {
+                        int bit = bitOffset + x * bits;
+                        int index = (pixels[row + (bit >> 3)] >> (8 - bits - (bit & 7))) & mask;
+                        if (table[index]) { dest[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7)); }
+                    }
+                };
+            }
+        }
+
+        // any other layout; still avoids per-pixel allocations
+        return (y, dest, offset) -> {
+            int[] row = image.getRGB(0, y, w, 1, null, 0, w);
+            for(int x = 0; x < w; x++) {
+                if (q.isSet(row[x])) { dest[offset + (x >> 3)] |= (byte)(0x80 >>> (x & 7)); }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * LGPL 2.1 This is free software.  This software and source code are released under
+ * the "LGPL 2.1 License".  A copy of this license should be distributed with
+ * this software. http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package qz.printer.action.raw;
+
+import qz.common.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes packed monochrome rows as a ZPL {@code ^GFA} graphic field, optionally compressed.
+ */
+public class ZplGraphicEncoder {
+
+    public enum Compression {
+        /** Plain ASCII hex, two characters per byte */
+        NONE,
+        /** Zebra's run-length compressed ASCII hex */
+        ASCII,
+        /** {@code :B64:} base64 of the raw bytes with a CRC */
+        B64,
+        /** {@code :Z64:} base64 of the zlib deflated bytes with a CRC */
+        Z64;
+
+        public static Compression parse(String value) {
+            if (value == null || value.isEmpty()) { return NONE; }
+            switch(value.toUpperCase(Locale.ENGLISH)) {
+                case "ASCII":
+                case "RLE":
+                case "ACS":
+                    return ASCII;
+                case "B64":
+                case ":B64":
+                case "BASE64":
+                    return B64;
+                case "Z64":
+                case ":Z64":
+                    return Z64;
+                case "NONE":
+                case "HEX":
+                case "FALSE":
+                    return NONE;
+                default:
+                    throw new IllegalArgumentException("Unknown ZPL compression \"" + value + "\"");
+            }
+        }
+    }
+
+    // repeat count characters: 'G'-'Y' for 1-19, 'g'-'z' for multiples of 20 up to 400
+    private static final int MAX_LOW_REPEAT = 19;
+    private static final int MAX_HIGH_REPEAT = 400;
+
+    /**
+     * @return The complete {@code ^GFA} command for {@code image}
+     */
+    public static StringBuilder encode(MonochromeImage image, Compression compression) {
+        byte[] data = image.getData();
+        StringBuilder zpl = new StringBuilder("^GFA,")
+                .append(data.length).append(",").append(data.length).append(",")
+                .append(image.getBytesPerRow()).append(",");
+
+        appendData(zpl, image, compression);
+        return zpl;
+    }
+
+    /**
+     * @param name Object name on the printer, with its device but without an extension, e.g. {@code R:LOGO}
+     * @return The command storing {@code image} in printer memory as {@code name.GRF}: {@code ~DG} for hex data, or
+     * {@code ~DY} for base64 data, which {@code ~DG} doesn't accept
+     */
+    public static StringBuilder encodeDownload(MonochromeImage image, Compression compression, String name) {
+        int length = image.getData().length;
+        StringBuilder zpl = new StringBuilder();
+        if (compression == Compression.B64 || compression == Compression.Z64) {
+            zpl.append("~DY").append(name).append(",A,G,");
+        } else {
+            zpl.append("~DG").append(name).append(".GRF,");
+        }
+        zpl.append(length).append(",").append(image.getBytesPerRow()).append(",");
+
+        appendData(zpl, image, compression);
+        return zpl;
+    }
+
+    /**
+     * @return The {@code ^XG} command recalling a graphic stored with {@link #encodeDownload}, in place of {@code ^GFA}
+     */
+    public static String encodeRecall(String name) {
+        return "^XG" + name + ".GRF,1,1";
+    }
+
+    /**
+     * @return The label format deleting a stored graphic from printer memory
+     */
+    public static String encodeDelete(String name) {
+        return "^XA^ID" + name + ".GRF^FS^XZ";
+    }
+
+    private static void appendData(StringBuilder zpl, MonochromeImage image, Compression compression) {
+        byte[] data = image.getData();
+        switch(compression) {
+            case ASCII:
+                appendAscii(zpl, data, image.getBytesPerRow());
+                break;
+            case B64:
+                appendBase64(zpl, ":B64:", data);
+                break;
+            case Z64:
+                appendBase64(zpl, ":Z64:", deflate(data));
+                break;
+            case NONE:
+            default:
+                appendHex(zpl, data, 0, data.length);
+        }
+    }
+
+    private static void appendHex(StringBuilder out, byte[] data, int offset, int len) {
+        out.ensureCapacity(out.length() + len * 2);
+        for(int i = offset; i < offset + len; i++) {
+            out.append(Constants.HEXES_ARRAY[(data[i] & 0xF0) >> 4]).append(Constants.HEXES_ARRAY[data[i] & 0x0F]);
+        }
+    }
+
+    /**
+     * Zebra's compressed ASCII hex: runs of a repeated hex digit are prefixed with a repeat count, a row that
+     * ends in all 0's or all F's is cut short with {@code ,} or {@code !}, and a row identical to the one above it is
+     * sent as a single {@code :}
+     */
+    private static void appendAscii(StringBuilder out, byte[] data, int perRow) {
+        char[] row = new char[perRow * 2];
+
+        for(int offset = 0; offset < data.length; offset += perRow) {
+            if (offset > 0 && rowEquals(data, offset - perRow, offset, perRow)) {
+                out.append(':');
+                continue;
+            }
+
+            for(int i = 0; i < perRow; i++) {
+                int b = data[offset + i] & 0xFF;
+                row[i * 2] = Constants.HEXES_ARRAY[b >>> 4];
+                row[i * 2 + 1] = Constants.HEXES_ARRAY[b & 0x0F];
+            }
+
+            int pos = 0;
+            while(pos < row.length) {
+                char c = row[pos];
+                int run = 1;
+                while(pos + run < row.length && row[pos + run] == c) { run++; }
+
+                if (pos + run == row.length && (c == '0' || c == 'F')) {
+                    // rest of the row is all white or all black
+                    out.append(c == '0'? ',':'!');
+                    break;
+                }
+
+                appendRun(out, c, run);
+                pos += run;
+            }
+        }
+    }
+
+    private static boolean rowEquals(byte[] data, int a, int b, int len) {
+        for(int i = 0; i < len; i++) {
+            if (data[a + i] != data[b + i]) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a run of {@code count} copies of {@code c}, split into several runs if a single repeat count can't express it
+     */
+    private static void appendRun(StringBuilder out, char c, int count) {
+        while(count > 0) {
+            int chunk = Math.min(count, MAX_HIGH_REPEAT + MAX_LOW_REPEAT);
+            if (chunk >= 20) {
+                out.append((char)('g' + (chunk / 20) - 1));
+            }
+            if (chunk > 1 && chunk % 20 > 0) {
+                out.append((char)('G' + (chunk % 20) - 1));
+            }
+            out.append(c);
+            count -= chunk;
+        }
+    }
+
+    private static void appendBase64(StringBuilder out, String prefix, byte[] data) {
+        String encoded = Base64.getEncoder().encodeToString(data);
+        out.append(prefix).append(encoded).append(':')
+                .append(String.format("%04X", crc16(encoded)));
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 8));
+            byte[] buffer = new byte[Constants.BYTE_BUFFER_SIZE];
+            while(!deflater.finished()) {
+                int len = deflater.deflate(buffer);
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * CRC-16/CCITT (polynomial 0x1021, initial value 0) of the base64 text, as expected after {@code :B64:} and {@code :Z64:} data
+     */
+    static int crc16(String encoded) {
+        int crc = 0;
+        for(int i = 0; i < encoded.length(); i++) {
+            crc ^= (encoded.charAt(i) & 0xFF) << 8;
+            for(int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0? (crc << 1) ^ 0x1021:crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+}
@@ -8,9 +8,9 @@ import javax.print.attribute.PrintServiceAttributeSet;
 import javax.print.event.PrintServiceAttributeListener;
 
 import qz.common.CachedObject;
+import qz.common.ConcurrentCachedObject;
 
-import java.util.HashMap;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <code>PrintService.getName()</code> is slow, and gets increasingly slower the more times it's called.
@@ -25,13 +25,13 @@ public class CachedPrintService implements PrintService {
     private final long lifespan;
     private final CachedObject<String> cachedName;
     private final CachedObject<PrintServiceAttributeSet> cachedAttributeSet;
-    private final HashMap<Class<?>, CachedObject<?>> cachedAttributes = new HashMap<>();
+    private final ConcurrentHashMap<Class<?>, CachedObject<?>> cachedAttributes = new ConcurrentHashMap<>();
 
     public CachedPrintService(PrintService printService, long lifespan) {
         this.printService = printService;
         this.lifespan = lifespan;
-        cachedName = new CachedObject<>(this.printService::getName, lifespan);
-        cachedAttributeSet = new CachedObject<>(this.printService::getAttributes, lifespan);
+        cachedName = new ConcurrentCachedObject<>(this.printService::getName, lifespan);
+        cachedAttributeSet = new ConcurrentCachedObject<>(this.printService::getAttributes, lifespan);
     }
 
     public CachedPrintService(PrintService printService) {
@@ -69,12 +69,8 @@ public class CachedPrintService implements PrintService {
 
     @Override
     public <T extends PrintServiceAttribute> T getAttribute(Class<T> category) {
-        if (!cachedAttributes.containsKey(category)) {
-            Supplier<T> supplier = () -> printService.getAttribute(category);
-            CachedObject<T> cachedObject = new CachedObject<>(supplier, lifespan);
-            cachedAttributes.put(category, cachedObject);
-        }
-        return category.cast(cachedAttributes.get(category).get());
+        CachedObject<?> cachedObject = cachedAttributes.computeIfAbsent(category, c -> new ConcurrentCachedObject<>(() -> printService.getAttribute(category), lifespan));
+        return category.cast(cachedObject.get());
     }
 
     @Override
@@ -4,6 +4,7 @@ import javax.print.PrintService;
 import javax.print.PrintServiceLookup;
 
 import qz.common.CachedObject;
+import qz.common.ConcurrentCachedObject;
 
 /**
  * PrintService[] cache to workaround JDK-7001133
@@ -11,11 +12,12 @@ import qz.common.CachedObject;
  * See also <code>CachedPrintService</code>
  */
 public class CachedPrintServiceLookup {
-    private static final CachedObject<CachedPrintService> cachedDefault = new CachedObject<>(CachedPrintServiceLookup::wrapDefaultPrintService);
-    private static final CachedObject<CachedPrintService[]> cachedPrintServices = new CachedObject<>(CachedPrintServiceLookup::wrapPrintServices);
+    // Served stale while refreshed in the background, so callers rarely wait on the lookup
+    private static final ConcurrentCachedObject<CachedPrintService> cachedDefault = new ConcurrentCachedObject<>(CachedPrintServiceLookup::wrapDefaultPrintService);
+    private static final ConcurrentCachedObject<CachedPrintService[]> cachedPrintServices = new ConcurrentCachedObject<>(CachedPrintServiceLookup::wrapPrintServices);
 
     // Keep CachedPrintService object references between calls to supplier
-    private static CachedPrintService[] cachedPrintServicesCopy = {};
+    private static volatile CachedPrintService[] cachedPrintServicesCopy = {};
 
     static {
         setLifespan(CachedObject.DEFAULT_LIFESPAN);
@@ -34,6 +36,20 @@ public class CachedPrintServiceLookup {
         return cachedPrintServices.get();
     }
 
+    /**
+     * @return Cache statistics for the printer list lookup
+     */
+    public static String getPrintServicesStats() {
+        return cachedPrintServices.toString();
+    }
+
+    /**
+     * @return Cache statistics for the default printer lookup
+     */
+    public static String getDefaultStats() {
+        return cachedDefault.toString();
+    }
+
     private static CachedPrintService wrapDefaultPrintService() {
         PrintService javaxPrintService = PrintServiceLookup.lookupDefaultPrintService();
         // CachedObject's supplier returns null
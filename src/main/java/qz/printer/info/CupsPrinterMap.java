@@ -3,6 +3,7 @@ package qz.printer.info;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import qz.printer.status.CupsUtils;
 import qz.utils.ShellUtilities;
 
 import javax.print.PrintService;
@@ -20,12 +21,53 @@ public class CupsPrinterMap extends NativePrinterMap {
     private static final String DEFAULT_CUPS_DRIVER = "TEXTONLY.ppd";
     private static final Logger log = LogManager.getLogger(CupsPrinterMap.class);
     private Map<NativePrinter, List<PrinterResolution>> resolutionMap = new HashMap<>();
+    // printers whose connection was already reported by CUPS-Get-Printers
+    private Set<NativePrinter> ippPrinters = new HashSet<>();
 
     public synchronized NativePrinterMap putAll(boolean exhaustive, PrintService... services) {
         ArrayList<PrintService> missing = findMissing(exhaustive, services);
         if (missing.isEmpty()) { return this; }
 
-        String output = "\n" + ShellUtilities.executeRaw(new String[] {"lpstat", "-l", "-p"});
+        for(Map.Entry<NativePrinter, CupsUtils.PrinterAttributes> entry : findPrinters().entrySet()) {
+            NativePrinter printer = entry.getKey();
+            CupsUtils.PrinterAttributes attributes = entry.getValue();
+
+            if (match(printer, missing) && attributes != null) {
+                if (attributes.getDefaultResolution() != null) {
+                    printer.setResolution(attributes.getDefaultResolution());
+                    addResolution(printer, attributes.getDefaultResolution());
+                }
+                for(PrinterResolution resolution : attributes.getResolutions()) {
+                    addResolution(printer, resolution);
+                }
+                ippPrinters.add(printer);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Lists every CUPS queue, with the IPP attributes it was described from, or {@code null} attributes when IPP was
+     * unavailable and {@code lpstat} was used instead
+     */
+    LinkedHashMap<NativePrinter, CupsUtils.PrinterAttributes> findPrinters() {
+        LinkedHashMap<NativePrinter, CupsUtils.PrinterAttributes> printers = new LinkedHashMap<>();
+        try {
+            for(CupsUtils.PrinterAttributes attributes : getPrinterAttributes()) {
+                NativePrinter printer = new NativePrinter(attributes.getName());
+                printer.setDescription(attributes.getInfo());
+                File ppdFile = attributes.getPpdFile();
+                printer.setDriverFile(ppdFile.exists()? ppdFile.getPath():null);
+                printer.setConnection(attributes.getDeviceUri());
+                printers.put(printer, attributes);
+            }
+            return printers;
+        }
+        catch(IOException | LinkageError e) {
+            log.warn("Unable to list printers over IPP, falling back to lpstat", e);
+        }
+
+        String output = "\n" + lpstat();
         String[] devices = output.split("[\\r\\n]printer ");
 
         for (String device : devices) {
@@ -55,20 +97,34 @@ public class CupsPrinterMap extends NativePrinterMap {
                 }
             }
 
-            for (PrintService service : missing) {
-                if ((false && printer.getDescription().equals(service.getName()))
-                        || (SystemUtilities.isLinux() && printer.getPrinterId().equals(service.getName()))) {
-                    printer.setPrintService(service);
-                    missing.remove(service);
-                    break;
-                }
-            }
+            printers.put(printer, null);
+        }
+        return printers;
+    }
+
+    ArrayList<CupsUtils.PrinterAttributes> getPrinterAttributes() throws IOException {
+        return CupsUtils.getPrinterAttributes();
+    }
+
+    String lpstat() {
+        return ShellUtilities.executeRaw(new String[] {"lpstat", "-l", "-p"});
+    }
 
-            if (!printer.getPrintService().isNull()) {
-                put(printer.getPrinterId(), printer);
+    private boolean match(NativePrinter printer, ArrayList<PrintService> missing) {
+        for (PrintService service : missing) {
+            if ((false && printer.getDescription().equals(service.getName()))
+                    || (SystemUtilities.isLinux() && printer.getPrinterId().equals(service.getName()))) {
+                printer.setPrintService(service);
+                missing.remove(service);
+                break;
             }
         }
-        return this;
+
+        if (!printer.getPrintService().isNull()) {
+            put(printer.getPrinterId(), printer);
+            return true;
+        }
+        return false;
     }
 
     synchronized void addResolution(NativePrinter printer, PrinterResolution resolution) {
@@ -93,6 +149,7 @@ public class CupsPrinterMap extends NativePrinterMap {
     public boolean remove(Object key, Object value) {
         if(value instanceof NativePrinter) {
             resolutionMap.remove(value);
+            ippPrinters.remove(value);
         }
         return super.remove(key, value);
     }
@@ -133,21 +190,25 @@ public class CupsPrinterMap extends NativePrinterMap {
     }
 
     synchronized void fillAttributes(NativePrinter printer) {
-        String options = ShellUtilities.executeRaw("lpoptions", "-p", printer.getPrinterId());
-        String connection = null;
-        int start;
-        int end;
-        String section;
-        if((start = options.indexOf("device-uri=")) != -1) {
-            section = options.substring(start);
-            if((end = section.indexOf(' ')) > 0) {
-                connection = section.substring(section.indexOf("=") + 1, end);
-            } else {
-                connection = section.substring(section.indexOf("=") + 1);
+        if (!ippPrinters.contains(printer)) {
+            String options = ShellUtilities.executeRaw("lpoptions", "-p", printer.getPrinterId());
+            String connection = null;
+            int start;
+            int end;
+            String section;
+            if((start = options.indexOf("device-uri=")) != -1) {
+                section = options.substring(start);
+                if((end = section.indexOf(' ')) > 0) {
+                    connection = section.substring(section.indexOf("=") + 1, end);
+                } else {
+                    connection = section.substring(section.indexOf("=") + 1);
+                }
             }
+            printer.setConnection(connection);
         }
-        printer.setConnection(connection);
 
+        // resolutions reported by IPP leave only the driver name to be read from the PPD
+        boolean hasResolutions = resolutionMap.get(printer) != null && !resolutionMap.get(printer).isEmpty();
         if (!printer.getDriverFile().isNull()) {
             File ppdFile = new File(printer.getDriverFile().value());
             try {
@@ -155,7 +216,13 @@ public class CupsPrinterMap extends NativePrinterMap {
                 String line;
 
                 while((line = buffer.readLine()) != null) {
-                    if (line.contains("*DefaultResolution:")) {
+                    if (hasResolutions) {
+                        if (line.contains("*PCFileName:")) {
+                            String[] split = line.split("\\*PCFileName:");
+                            printer.setDriver(split[split.length - 1].replace("\"", "").trim());
+                            break;
+                        }
+                    } else if (line.contains("*DefaultResolution:")) {
                         // Parse default printer resolution
                         PrinterResolution defaultRes = parseDefaultResolution(line);
                         if(defaultRes != null) {
@@ -8,7 +8,7 @@ import javax.print.PrintService;
 import qz.utils.SystemUtilities;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -17,6 +17,8 @@ public abstract class NativePrinterMap extends ConcurrentHashMap<String, NativeP
 
     private static NativePrinterMap instance;
 
+    private final PrinterIndex index = new PrinterIndex();
+
     public abstract NativePrinterMap putAll(boolean exhaustive, PrintService... services);
 
     abstract void fillAttributes(NativePrinter printer);
@@ -34,32 +36,71 @@ public abstract class NativePrinterMap extends ConcurrentHashMap<String, NativeP
         return instance;
     }
 
+    @Override
+    public NativePrinter put(String key, NativePrinter printer) {
+        NativePrinter previous = super.put(key, printer);
+        if (previous != null) { index.remove(previous); }
+        index.add(printer);
+        return previous;
+    }
+
+    @Override
+    public NativePrinter remove(Object key) {
+        NativePrinter removed = super.remove(key);
+        if (removed != null) { index.remove(removed); }
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (super.remove(key, value)) {
+            index.remove((NativePrinter)value);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        index.clear();
+    }
+
     public String lookupPrinterId(String description) {
-        for(Map.Entry<String,NativePrinter> entry : entrySet()) {
-            NativePrinter info = entry.getValue();
-            if (description.equals(info.getPrintService().value().getName())) {
-                return entry.getKey();
-            }
+        NativePrinter info = index.get(description);
+        if (info != null) {
+            return info.getPrinterId();
         }
         log.warn("Could not find printerId for " + description);
         return null;
     }
 
+    /**
+     * Closest printer to {@code query}, see {@link PrinterIndex#find(String)}
+     */
+    public NativePrinter search(String query) {
+        return index.find(query);
+    }
+
     /**
      * WARNING: Despite the function's name, if <code>exhaustive</code> is true, it will treat the listing as exhaustive and remove
      * any PrintServices that are not part of this HashMap.
      */
     public ArrayList<PrintService> findMissing(boolean exhaustive, PrintService[] services) {
-        ArrayList<PrintService> serviceList = new ArrayList<>(Arrays.asList(services)); // shrinking list drastically improves performance
+        // PrintService equality is by name, look each up once rather than comparing every pair
+        LinkedHashMap<String,PrintService> serviceMap = new LinkedHashMap<>();
+        for(PrintService service : services) {
+            serviceMap.putIfAbsent(service.getName(), service);
+        }
 
         for(NativePrinter printer : values()) {
-            int index = serviceList.indexOf(printer.getPrintService());
-            if (index >= 0) {
+            String name = index.nameOf(printer);
+            PrintService match = name == null? null:serviceMap.remove(name);
+            if (match != null) {
                 // Java's `PrintService.equals(o)` method uses getName().equals(). This causes issues if a stale PrintService has been replaced
                 // by a new PrintService of the same name. For that reason, we always refresh the PrintService reference in NativePrinter.
                 // See: https://github.com/qzind/tray/issues/1259
-                printer.setPrintService(serviceList.get(index));
-                serviceList.remove(printer.getPrintService()); // existing match
+                printer.setPrintService(match); // existing match
             } else {
                 if(exhaustive) {
                     printer.setOutdated(true); // no matches, mark to be removed
@@ -75,23 +116,17 @@ public abstract class NativePrinterMap extends ConcurrentHashMap<String, NativeP
         }
 
         // any remaining services are new/missing
-        return serviceList;
+        return new ArrayList<>(serviceMap.values());
     }
 
     public boolean contains(PrintService service) {
-        for (NativePrinter printer : values()) {
-            if (printer.getPrintService().equals(service)) {
-                return true;
-            }
-        }
-        return false;
+        return get(service) != null;
     }
 
     public NativePrinter get(PrintService service) {
-        for (NativePrinter printer : values()) {
-            if (printer.getPrintService().equals(service)) {
-                return printer;
-            }
+        NativePrinter printer = index.get(service.getName());
+        if (printer != null && printer.getPrintService().equals(service)) {
+            return printer;
         }
         return null;
     }
@@ -0,0 +1,145 @@
+package qz.printer.info;
+
+import java.util.*;
+
+/**
+ * Name lookups over a {@code NativePrinterMap}, updated as printers are added and removed instead of scanning every
+ * printer per search.
+ * <p>
+ * Names are indexed as-is for {@code PrintService} equality, lower-cased in a sorted map for exact and prefix searches,
+ * and split into trigrams so substring searches only verify printers sharing every trigram of the query.
+ */
+public class PrinterIndex {
+
+    private static final int GRAM = 3;
+
+    private final HashMap<String,NativePrinter> byName = new HashMap<>();
+    private final TreeMap<String,List<NativePrinter>> byFolded = new TreeMap<>();
+    private final HashMap<String,Set<String>> grams = new HashMap<>();
+    // name each printer was indexed under, its PrintService may be swapped out later
+    private final IdentityHashMap<NativePrinter,String> indexed = new IdentityHashMap<>();
+
+    public synchronized void add(NativePrinter printer) {
+        String name = printer.getName();
+        if (name == null || indexed.containsKey(printer)) { return; }
+
+        indexed.put(printer, name);
+        byName.put(name, printer);
+
+        String folded = fold(name);
+        List<NativePrinter> same = byFolded.computeIfAbsent(folded, k -> new ArrayList<>(1));
+        same.add(printer);
+        if (same.size() == 1) {
+            for(String gram : grams(folded)) {
+                grams.computeIfAbsent(gram, k -> new HashSet<>()).add(folded);
+            }
+        }
+    }
+
+    public synchronized void remove(NativePrinter printer) {
+        String name = indexed.remove(printer);
+        if (name == null) { return; }
+
+        byName.remove(name, printer);
+
+        String folded = fold(name);
+        List<NativePrinter> same = byFolded.get(folded);
+        if (same != null && same.remove(printer) && same.isEmpty()) {
+            byFolded.remove(folded);
+            for(String gram : grams(folded)) {
+                Set<String> names = grams.get(gram);
+                if (names != null && names.remove(folded) && names.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        byName.clear();
+        byFolded.clear();
+        grams.clear();
+        indexed.clear();
+    }
+
+    /**
+     * @return The printer with exactly this name, case-sensitive
+     */
+    public synchronized NativePrinter get(String name) {
+        return name == null? null:byName.get(name);
+    }
+
+    /**
+     * @return The name {@code printer} was indexed under, or {@code null} if it isn't indexed
+     */
+    public synchronized String nameOf(NativePrinter printer) {
+        return indexed.get(printer);
+    }
+
+    /**
+     * Closest printer to {@code query}, ignoring case: an exact match, else the shortest name starting with it, else the
+     * shortest name containing it
+     */
+    public synchronized NativePrinter find(String query) {
+        if (query == null) { return null; }
+        String search = fold(query);
+
+        List<NativePrinter> exact = byFolded.get(search);
+        if (exact != null) {
+            NativePrinter printer = byName.get(query);
+            return printer != null? printer:exact.get(0);
+        }
+
+        String begins = null;
+        for(String folded : byFolded.tailMap(search, false).keySet()) {
+            if (!folded.startsWith(search)) { break; }
+            if (begins == null || folded.length() < begins.length()) { begins = folded; }
+        }
+        if (begins != null) {
+            return byFolded.get(begins).get(0);
+        }
+
+        String partial = null;
+        for(String folded : candidates(search)) {
+            if (folded.contains(search) && (partial == null || folded.length() < partial.length()
+                    || (folded.length() == partial.length() && folded.compareTo(partial) < 0))) {
+                partial = folded;
+            }
+        }
+        return partial == null? null:byFolded.get(partial).get(0);
+    }
+
+    public synchronized int size() {
+        return indexed.size();
+    }
+
+    /**
+     * Names that could contain {@code search}, those holding its rarest trigram, or all of them for short searches
+     */
+    private Collection<String> candidates(String search) {
+        if (search.length() < GRAM) {
+            return byFolded.keySet();
+        }
+
+        Set<String> smallest = null;
+        for(String gram : grams(search)) {
+            Set<String> names = grams.get(gram);
+            if (names == null) { return Collections.emptySet(); }
+            if (smallest == null || names.size() < smallest.size()) { smallest = names; }
+        }
+        return smallest;
+    }
+
+    private static Set<String> grams(String folded) {
+        Set<String> found = new HashSet<>();
+        for(int i = 0; i + GRAM <= folded.length(); i++) {
+            found.add(folded.substring(i, i + GRAM));
+        }
+        return found;
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+}
@@ -1,6 +1,7 @@
 package qz.printer.status;
 
 import com.sun.jna.*;
+import com.sun.jna.ptr.IntByReference;
 
 /**
  * Created by kyle on 3/14/17.
@@ -24,6 +25,8 @@ public interface Cups extends Library {
         public static int TAG_ENUM = INSTANCE.ippTagValue("enum");
         public static int TAG_SUBSCRIPTION = INSTANCE.ippTagValue("Subscription");
         public static int TAG_MIMETYPE = INSTANCE.ippTagValue("mimetype");
+        public static int TAG_PRINTER = INSTANCE.ippTagValue("Printer");
+        public static int TAG_RESOLUTION = INSTANCE.ippTagValue("resolution");
         public static int GET_PRINTERS = INSTANCE.ippOpValue("CUPS-Get-Printers");
         public static int GET_PRINTER_ATTRIBUTES = INSTANCE.ippOpValue("Get-Printer-Attributes");
         public static int GET_JOB_ATTRIBUTES = INSTANCE.ippOpValue("Get-Job-Attributes");
@@ -39,6 +42,11 @@ public interface Cups extends Library {
         public static final int INT_ERROR = 0;
         public static final int INT_UNDEFINED = -1;
 
+        public static final int RES_PER_INCH = 3;
+        public static final int RES_PER_CM = 4;
+
+        public static final int STATUS_OK_MAX = 0x00FF; // successful-ok status codes, anything above is an error
+
         public static final String CUPS_FORMAT_TEXT = "application/vnd.cups-raw";
     }
 
@@ -56,6 +64,7 @@ public interface Cups extends Library {
     Pointer ippFindNextAttribute(Pointer ipp, String name, int type);
 
     String cupsServer();
+    String cupsLastErrorString();
     String ippTagString(int tag);
     String ippGetName(Pointer attr);
     String ippGetString(Pointer attr, int element, String language);
@@ -72,6 +81,9 @@ public interface Cups extends Library {
     int ippGetCount(Pointer attr);
     int ippGetValueTag(Pointer ipp);
     int ippGetInteger(Pointer attr, int element);
+    int ippGetGroupTag(Pointer attr);
+    int ippGetStatusCode(Pointer ipp);
+    int ippGetResolution(Pointer attr, int element, IntByReference yres, IntByReference units);
 
     void ippDelete(Pointer ipp);
     void httpClose(Pointer http);
@@ -2,6 +2,7 @@ package qz.printer.status;
 
 import com.sun.jna.Pointer;
 import com.sun.jna.StringArray;
+import com.sun.jna.ptr.IntByReference;
 import org.eclipse.jetty.util.URIUtil;
 
 import qz.printer.info.NativePrinter;
@@ -11,6 +12,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.print.PrintException;
+import javax.print.attribute.standard.PrinterResolution;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -35,6 +37,14 @@ public class CupsUtils {
         return http;
     }
 
+    /**
+     * Sends requests to {@code host:port} in place of the default CUPS server, such as a stub server when testing
+     */
+    static synchronized void connect(String host, int port) {
+        freeIppObjs();
+        http = cups.httpConnectEncrypt(host, port, cups.cupsEncryption());
+    }
+
     static synchronized Pointer doRequest(Pointer request, String resource) {
         return cups.cupsDoRequest(getCupsHttp(), request, resource);
     }
@@ -139,6 +149,145 @@ public class CupsUtils {
         return statuses;
     }
 
+    /**
+     * Describes every CUPS queue using a single CUPS-Get-Printers request, in place of running {@code lpstat} and
+     * {@code lpoptions} for each printer
+     *
+     * @throws IOException if the CUPS server could not be reached
+     */
+    public static ArrayList<PrinterAttributes> getPrinterAttributes() throws IOException {
+        ArrayList<PrinterAttributes> printers = new ArrayList<>();
+        Pointer request = cups.ippNewRequest(IPP.GET_PRINTERS);
+
+        cups.ippAddString(request, IPP.TAG_OPERATION, IPP.TAG_NAME, "requesting-user-name", CHARSET, USER);
+        cups.ippAddStrings(request, IPP.TAG_OPERATION, IPP.TAG_KEYWORD, "requested-attributes", PrinterAttributes.REQUESTED.length, CHARSET,
+                           new StringArray(PrinterAttributes.REQUESTED));
+
+        Pointer response = doRequest(request, "/");
+        if (response == Pointer.NULL) {
+            throw new IOException("CUPS-Get-Printers failed: " + cups.cupsLastErrorString());
+        }
+        if (cups.ippGetStatusCode(response) > IPP.STATUS_OK_MAX) {
+            cups.ippDelete(response);
+            throw new IOException("CUPS-Get-Printers failed: " + cups.cupsLastErrorString());
+        }
+
+        try {
+            // each printer is its own group of attributes, consecutive groups are split by a nameless separator
+            PrinterAttributes printer = null;
+            for(Pointer attr : getAttributes(response)) {
+                String name = cups.ippGetName(attr);
+                if (name == null || cups.ippGetGroupTag(attr) != IPP.TAG_PRINTER) {
+                    printer = null;
+                    continue;
+                }
+                if (printer == null) {
+                    printer = new PrinterAttributes();
+                    printers.add(printer);
+                }
+
+                switch(name) {
+                    case "printer-name":
+                        printer.name = cups.ippGetString(attr, 0, "");
+                        break;
+                    case "printer-info":
+                        printer.info = cups.ippGetString(attr, 0, "");
+                        break;
+                    case "device-uri":
+                        printer.deviceUri = cups.ippGetString(attr, 0, "");
+                        break;
+                    case "printer-make-and-model":
+                        printer.makeAndModel = cups.ippGetString(attr, 0, "");
+                        break;
+                    case "printer-state":
+                        printer.state = cups.ippEnumString(name, cups.ippGetInteger(attr, 0));
+                        break;
+                    case "printer-resolution-default":
+                        printer.defaultResolution = getResolution(attr, 0);
+                        break;
+                    case "printer-resolution-supported":
+                        for(int i = 0; i < cups.ippGetCount(attr); i++) {
+                            PrinterResolution resolution = getResolution(attr, i);
+                            if (resolution != null && !printer.resolutions.contains(resolution)) {
+                                printer.resolutions.add(resolution);
+                            }
+                        }
+                        break;
+                    default:
+                }
+            }
+        }
+        finally {
+            cups.ippDelete(response);
+        }
+
+        printers.removeIf(p -> p.name == null || p.name.isEmpty());
+        return printers;
+    }
+
+    private static PrinterResolution getResolution(Pointer attr, int element) {
+        if (cups.ippGetValueTag(attr) != IPP.TAG_RESOLUTION) { return null; }
+
+        IntByReference feed = new IntByReference();
+        IntByReference units = new IntByReference();
+        int cross = cups.ippGetResolution(attr, element, feed, units);
+        if (cross <= 0 || feed.getValue() <= 0) { return null; }
+
+        return new PrinterResolution(cross, feed.getValue(), units.getValue() == IPP.RES_PER_CM? PrinterResolution.DPCM:PrinterResolution.DPI);
+    }
+
+    /**
+     * A printer as reported by CUPS-Get-Printers
+     */
+    public static class PrinterAttributes {
+        static final String[] REQUESTED = {"printer-name", "printer-info", "device-uri", "printer-make-and-model", "printer-state",
+                "printer-resolution-default", "printer-resolution-supported"};
+
+        private String name;
+        private String info;
+        private String deviceUri;
+        private String makeAndModel;
+        private String state;
+        private PrinterResolution defaultResolution;
+        private final ArrayList<PrinterResolution> resolutions = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public String getInfo() {
+            return info;
+        }
+
+        public String getDeviceUri() {
+            return deviceUri;
+        }
+
+        public String getMakeAndModel() {
+            return makeAndModel;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public PrinterResolution getDefaultResolution() {
+            return defaultResolution;
+        }
+
+        public ArrayList<PrinterResolution> getResolutions() {
+            return resolutions;
+        }
+
+        /**
+         * Location of the queue's PPD, the same file {@code lpstat -l} reports as its "Interface"
+         */
+        public File getPpdFile() {
+            String root = System.getenv("CUPS_SERVERROOT");
+            return new File(root == null || root.isEmpty()? "/etc/cups":root, "ppd" + File.separator + name + ".ppd");
+        }
+    }
+
     public static boolean clearSubscriptions() {
         Pointer response = listSubscriptions();
         Pointer attr = cups.ippFindAttribute(response, "notify-recipient-uri", IPP.TAG_URI);
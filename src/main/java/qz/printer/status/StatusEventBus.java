@@ -0,0 +1,162 @@
+package qz.printer.status;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded ring buffer carrying printer statuses from any number of CUPS/WMI producers to a single dispatch thread.
+ * <p>
+ * Producers claim a slot with a single CAS and never block; when the buffer is full the status is dropped and counted.
+ * The dispatch thread parks while the buffer is empty and is only woken by producers when it is actually waiting.
+ */
+public class StatusEventBus {
+    private static final Logger log = LogManager.getLogger(StatusEventBus.class);
+
+    private final Status[] buffer;
+    // slot i is writable for position p when sequence == p, readable when sequence == p + 1
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // dispatch thread only
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Consumer<Status> handler;
+    private final String threadName;
+    private volatile Thread consumer;
+    private volatile boolean waiting;
+
+    /**
+     * @param capacity Number of statuses buffered before new ones are dropped, rounded up to a power of two
+     * @param handler  Called on the dispatch thread for each status, in the order they were published
+     */
+    public StatusEventBus(int capacity, String threadName, Consumer<Status> handler) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        buffer = new Status[size];
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+
+        this.threadName = threadName;
+        this.handler = handler;
+    }
+
+    /**
+     * Queues {@code status} for dispatch, starting the dispatch thread if needed
+     *
+     * @return {@code false} if the buffer was full and the status was dropped
+     */
+    public boolean publish(Status status) {
+        while(true) {
+            long pos = tail.get();
+            int index = (int)(pos & mask);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[index] = status;
+                    sequences.set(index, pos + 1);
+                    published.incrementAndGet();
+                    signal();
+                    return true;
+                }
+            } else if (diff < 0) {
+                // the slot from a full lap ago hasn't been consumed yet
+                if (dropped.getAndIncrement() % 100 == 0) {
+                    log.warn("Status queue is full, dropped {} status event(s)", dropped.get());
+                }
+                signal();
+                return false;
+            }
+            // otherwise another producer claimed this position first, try the next one
+        }
+    }
+
+    private Status poll() {
+        int index = (int)(head & mask);
+        if (sequences.get(index) != head + 1) { return null; }
+
+        Status status = buffer[index];
+        buffer[index] = null;
+        sequences.set(index, head + buffer.length);
+        head++;
+        return status;
+    }
+
+    private Status take() throws InterruptedException {
+        while(true) {
+            Status status = poll();
+            if (status != null) { return status; }
+
+            waiting = true;
+            try {
+                // re-check after announcing, a producer that missed the flag has already published
+                status = poll();
+                if (status != null) { return status; }
+                LockSupport.park(this);
+            }
+            finally {
+                waiting = false;
+            }
+
+            if (Thread.interrupted()) { throw new InterruptedException(); }
+        }
+    }
+
+    private void signal() {
+        Thread thread = consumer;
+        if (thread == null) {
+            start();
+        } else if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private synchronized void start() {
+        if (consumer != null) { return; }
+
+        Thread thread = new Thread(() -> {
+            try {
+                while(!Thread.currentThread().isInterrupted()) {
+                    Status status = take();
+                    try {
+                        handler.accept(status);
+                    }
+                    catch(Exception e) {
+                        log.error("Failed to dispatch status {}", status, e);
+                    }
+                }
+            }
+            catch(InterruptedException ignore) {}
+            log.warn("{} interrupted", threadName);
+            synchronized(this) {
+                consumer = null;
+            }
+        }, threadName);
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+}
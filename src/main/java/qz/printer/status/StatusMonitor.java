@@ -9,7 +9,10 @@ import org.codehaus.jettison.json.JSONObject;
 import org.eclipse.jetty.util.MultiMap;
 
 import qz.printer.PrintServiceMatcher;
+import qz.printer.action.ZplGraphicCache;
 import qz.printer.info.NativePrinterMap;
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
 import qz.utils.PrintingUtilities;
 import qz.ws.SocketConnection;
 
@@ -31,11 +34,11 @@ public class StatusMonitor {
     public static final String ALL_PRINTERS = "";
 
     private static Thread printerConnectionsThread;
-    private static Thread statusEventDispatchThread;
     private static final HashMap<String,Thread> notificationThreadCollection = new HashMap<>();
     private static final HashMap<SocketConnection, StatusSession> statusSessions = new HashMap<>();
     private static final MultiMap<SocketConnection> clientPrinterConnections = new MultiMap<>();
-    private static final LinkedList<Status> statusQueue = new LinkedList<>();
+    private static final StatusEventBus statusBus = new StatusEventBus(PrefsSearch.getInt(ArgValue.PRINTER_STATUS_QUEUE),
+                                                                       "statusEventDispatchThread", StatusMonitor::dispatchStatusEvent);
 
     public synchronized static boolean launchNotificationThreads() {
         ArrayList<String> printerNameList = new ArrayList<>();
@@ -131,27 +134,31 @@ public class StatusMonitor {
         }
     }
 
-    public synchronized static void sendStatuses(SocketConnection connection) {
-        boolean sendForAllPrinters = false;
+    public static void sendStatuses(SocketConnection connection) {
         ArrayList<Status> statuses = isWindows() ? WmiPrinterStatusThread.getAllStatuses(): CupsUtils.getAllStatuses();
+        ArrayList<Status> matched = new ArrayList<>();
+        StatusSession statusSession;
 
-        // First check if we're listening on all printers for this connection
-        List<SocketConnection> connections = clientPrinterConnections.get(ALL_PRINTERS);
-        if (connections != null) {
-            sendForAllPrinters = connections.contains(connection);
-        }
+        synchronized(StatusMonitor.class) {
+            statusSession = statusSessions.get(connection);
+            if (statusSession == null) { return; }
 
-        for (Status status : statuses) {
-            if (sendForAllPrinters) {
-                statusSessions.get(connection).statusChanged(status, () -> stopListening(connection));
-            } else {
+            // First check if we're listening on all printers for this connection
+            List<SocketConnection> connections = clientPrinterConnections.get(ALL_PRINTERS);
+            boolean sendForAllPrinters = connections != null && connections.contains(connection);
+
+            for (Status status : statuses) {
                 // Only send the status of the printers requested
                 connections = clientPrinterConnections.get(status.getPrinter());
-                if ((connections != null) && connections.contains(connection)) {
-                    statusSessions.get(connection).statusChanged(status, () -> stopListening(connection));
+                if (sendForAllPrinters || (connections != null && connections.contains(connection))) {
+                    matched.add(status);
                 }
             }
         }
+
+        for (Status status : matched) {
+            statusSession.statusChanged(status, () -> stopListening(connection));
+        }
     }
 
     public synchronized static void closeListener(SocketConnection connection) {
@@ -167,55 +174,49 @@ public class StatusMonitor {
         }
     }
 
-    private synchronized static void launchStatusEventDispatchThread() {
-        // Null is our main test to see if the thread needs to restart. If the thread was suspended, it won't be null, so check to see if it is alive as well.
-        if (statusEventDispatchThread != null && statusEventDispatchThread.isAlive()) return;
-        statusEventDispatchThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted() && dispatchStatusEvent()) {
-                // If we don't yield, this will constantly run dispatchStatusEvent and lock up the class, even though this thread isn't synchronized.
-                Thread.yield();
-            }
-            if (Thread.currentThread().isInterrupted()) log.warn("statusEventDispatchThread Interrupted");
-        }, "statusEventDispatchThread");
-        statusEventDispatchThread.start();
+    public static void statusChanged(Status[] statuses) {
+        // statusEventDispatchThread picks these up in order, no lock needed to hand them off
+        for (Status status : statuses) {
+            ZplGraphicCache.statusChanged(status);
+            statusBus.publish(status);
+        }
     }
 
-    public synchronized static void statusChanged(Status[] statuses) {
-        // Add statuses to the queue, statusEventDispatchThread will resolve these one at a time until the queue is empty
-        Collections.addAll(statusQueue, statuses);
-        if (!statusQueue.isEmpty()) {
-            // If statusEventDispatchThread isn't already running, launch it
-            launchStatusEventDispatchThread();
-        }
+    /**
+     * @return Number of statuses dropped because listeners could not keep up
+     */
+    public static long getDroppedStatusCount() {
+        return statusBus.getDroppedCount();
     }
 
     // This is the main body of the statusEventDispatchThread.
     // Dispatch one status event to n clients connection, based on clientPrinterConnections
-    // Returns false when there are no more statuses in the queue
-    private synchronized static boolean dispatchStatusEvent() {
-        if (statusQueue.isEmpty()) {
-            // Returning false will kill statusEventDispatchThread, but we also want to null out the value while we are still in a synchronized method
-            statusEventDispatchThread = null;
-            return false;
-        }
-        Status status = statusQueue.removeFirst();
+    private static void dispatchStatusEvent(Status status) {
+        HashMap<SocketConnection, StatusSession> listening = new HashMap<>();
+
+        // Only hold the lock long enough to find the listeners, sending happens on each connection's own queue
+        synchronized(StatusMonitor.class) {
+            HashSet<SocketConnection> listeningConnections = new HashSet<>();
+            if (clientPrinterConnections.containsKey(status.getPrinter())) {
+                // Find every client that subscribed to this printer
+                listeningConnections.addAll(clientPrinterConnections.get(status.getPrinter()));
+            }
+            if (clientPrinterConnections.containsKey(ALL_PRINTERS)) {
+                // And find every client that subscribed to all printers
+                listeningConnections.addAll(clientPrinterConnections.get(ALL_PRINTERS));
+            }
 
-        HashSet<SocketConnection> listeningConnections = new HashSet<>();
-        if (clientPrinterConnections.containsKey(status.getPrinter())) {
-            // Find every client that subscribed to this printer
-            listeningConnections.addAll(clientPrinterConnections.get(status.getPrinter()));
-        }
-        if (clientPrinterConnections.containsKey(ALL_PRINTERS)) {
-            // And find every client that subscribed to all printers
-            listeningConnections.addAll(clientPrinterConnections.get(ALL_PRINTERS));
+            for (SocketConnection connection : listeningConnections) {
+                StatusSession statusSession = statusSessions.get(connection);
+                if (statusSession != null) { listening.put(connection, statusSession); }
+            }
         }
 
         // Notify each client hook
-        for (SocketConnection connection : listeningConnections) {
-            statusSessions.get(connection).statusChanged(status, () -> stopListening(connection));
+        for (Map.Entry<SocketConnection, StatusSession> entry : listening.entrySet()) {
+            SocketConnection connection = entry.getKey();
+            entry.getValue().statusChanged(status, () -> stopListening(connection));
         }
-
-        return true;
     }
 
     private static String macNameFix(String printerName) {
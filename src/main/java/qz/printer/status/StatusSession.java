@@ -14,19 +14,19 @@ import static qz.printer.status.StatusMonitor.ALL_PRINTERS;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import qz.utils.SystemUtilities;
 
 public class StatusSession {
     private static final Logger log = LogManager.getLogger(StatusSession.class);
     private Session session;
-    private HashMap<String, Spooler> printerSpoolerMap = new HashMap<>();
+    // written while handling requests, read and filled in as statuses are dispatched
+    private final ConcurrentHashMap<String, Spooler> printerSpoolerMap = new ConcurrentHashMap<>();
 
     private class Spooler implements Cloneable {
-        public Path path;
-        public int maxJobData;
+        public volatile Path path;
+        public volatile int maxJobData;
         public PrintingUtilities.Flavor dataFlavor;
 
         public Spooler() {
@@ -61,16 +61,15 @@ public class StatusSession {
         if (!SystemUtilities.isWindows()) {
             throw new UnsupportedOperationException("Job data listeners are only supported on Windows");
         }
-        if (printerSpoolerMap.containsKey(printer)) {
-            printerSpoolerMap.get(printer).maxJobData = maxJobData;
-        } else {
-            // Lookup spooler path lazily
-            printerSpoolerMap.put(printer, new Spooler(null, maxJobData, dataFlavor));
+        // Lookup spooler path lazily
+        Spooler existing = printerSpoolerMap.putIfAbsent(printer, new Spooler(null, maxJobData, dataFlavor));
+        if (existing != null) {
+            existing.maxJobData = maxJobData;
         }
         if (printer.equals(ALL_PRINTERS)) {
             // If we have started job-data listening on all printer, the new parameters need to be added to all existing printers
-            for(Map.Entry<String, Spooler> entry : printerSpoolerMap.entrySet()) {
-                entry.getValue().maxJobData = maxJobData;
+            for(Spooler spooler : printerSpoolerMap.values()) {
+                spooler.maxJobData = maxJobData;
             }
         }
     }
@@ -105,18 +104,12 @@ public class StatusSession {
     private String getJobData(int jobId, String printer) {
         String data = null;
         try {
-            if (!printerSpoolerMap.containsKey(printer)) {
+            Spooler spooler = printerSpoolerMap.computeIfAbsent(printer, p -> {
                 // If not listening on this printer, assume we're listening on ALL_PRINTERS
-                Spooler spooler;
-                if(printerSpoolerMap.containsKey(ALL_PRINTERS)) {
-                    spooler = printerSpoolerMap.get(ALL_PRINTERS).clone();
-                } else {
-                    // we should never get here
-                    spooler = new Spooler();
-                }
-                printerSpoolerMap.put(printer, spooler);
-            }
-            Spooler spooler = printerSpoolerMap.get(printer);
+                Spooler all = printerSpoolerMap.get(ALL_PRINTERS);
+                // we should never get a null here
+                return all != null? all.clone():new Spooler();
+            });
             if (spooler.path == null) spooler.path = WindowsUtilities.getSpoolerLocation(printer);
             if (spooler.maxJobData != -1 && Files.size(spooler.path) > spooler.maxJobData) {
                 throw new IOException("File too large, omitting result. Size:" + Files.size(spooler.path) + " MaxJobData:" + spooler.maxJobData);
@@ -68,6 +68,10 @@ public enum ArgValue {
         "tray.idle.printers"),
     TRAY_IDLE_JAVAFX(PREFERENCES, "Enable/disable idle starting of JavaFX for better initial performance", null, true,
         "tray.idle.javafx"),
+    HTML_ENGINES(PREFERENCES, "Maximum number of HTML pages rendered at once, limited by available memory", null, 4,
+        "html.engines"),
+    HTML_ENGINES_RECYCLE(PREFERENCES, "Number of pages an HTML render engine loads before it is replaced, 0 to never replace", null, 50,
+        "html.engines.recycle"),
     SECURITY_FILE_ENABLED(PREFERENCES, "Enable/disable all File Communications features", null, true,
         "security.file.enabled"),
     SECURITY_FILE_STRICT(PREFERENCES, "Enable/disable signing requirements for File Communications features", null, true,
@@ -78,6 +82,11 @@ public enum ArgValue {
     SECURITY_SUBSTITUTIONS_STRICT(PREFERENCES, "Enable/disable restrictions for materially changing JSON substitutions such as \"copies\":, \"data\": { \"data\": ... } blobs", null, true,
         "security.substitutions.strict"),
 
+    SECURITY_CERT_CACHE_TTL(PREFERENCES, "Time (in seconds) a validated client certificate is remembered, 0 to validate on every connection", null, 600,
+        "security.cert.cache.ttl"),
+    SECURITY_CERT_CACHE_SIZE(PREFERENCES, "Maximum number of validated client certificates remembered", null, 256,
+        "security.cert.cache.size"),
+
     SECURITY_DATA_PROTOCOLS(PREFERENCES, "URL protocols allowed for print, serial, etc", null, "http,https",
         "security.data.protocols"),
     SECURITY_PRINT_TOFILE(PREFERENCES, "Enable/disable printing directly to file paths", null, false,
@@ -90,6 +99,14 @@ public enum ArgValue {
                            "websocket.secure.ports"),
     WEBSOCKET_INSECURE_PORTS(PREFERENCES, "Comma separated list of insecure websocket (ws://) ports to use", null, StringUtils.join(Constants.DEFAULT_WS_PORTS, ","),
                            "websocket.insecure.ports"),
+    WEBSOCKET_DISPATCH_CONNECTION(PREFERENCES, "Maximum number of requests a single websocket connection may have in progress", null, 16,
+                           "websocket.dispatch.connection"),
+    WEBSOCKET_DISPATCH_GLOBAL(PREFERENCES, "Maximum number of requests processed concurrently across all websocket connections", null, 64,
+                           "websocket.dispatch.global"),
+    WEBSOCKET_DISPATCH_QUEUE(PREFERENCES, "Maximum number of requests waiting for processing before new requests are rejected", null, 256,
+                           "websocket.dispatch.queue"),
+    WEBSOCKET_SEND_HIGHWATER(PREFERENCES, "Number of pending outbound messages per connection before replies wait and stream events are dropped", null, 1024,
+                           "websocket.send.highwater"),
     LOG_DISABLE(PREFERENCES, "Disable/enable logging features", null, false,
         "log.disable"),
     LOG_ROTATE(PREFERENCES, "Number of log files to retain when the size fills up", null, 5,
@@ -99,7 +116,29 @@ public enum ArgValue {
     AUTHCERT_OVERRIDE(PREFERENCES, "Override the trusted root certificate in the software.", null, null,
         "authcert.override", "trustedRootCert"),
     PRINTER_STATUS_JOB_DATA(PREFERENCES, "Return all raw (binary) job data with job statuses (use with caution)", null, false,
-        "printer.status.jobdata");
+        "printer.status.jobdata"),
+    PRINTER_STATUS_QUEUE(PREFERENCES, "Number of printer status events buffered for listeners before new events are dropped", null, 4096,
+        "printer.status.queue"),
+    PRINTER_HOST_CONNECTIONS(PREFERENCES, "Maximum number of open connections kept per raw network printer (host:port), 0 to reconnect for every job", null, 1,
+        "printer.host.connections"),
+    PRINTER_HOST_IDLE(PREFERENCES, "Time (in milliseconds) an unused raw network printer connection is kept open, other clients can't connect to most printers meanwhile", null, 250,
+        "printer.host.idle"),
+    PRINTER_HOST_WAIT(PREFERENCES, "Time (in milliseconds) a raw job waits for a network printer connection in use by another job", null, 30000,
+        "printer.host.wait"),
+    PRINTER_JOB_TIMEOUT(PREFERENCES, "Time (in milliseconds) to wait for the print spooler to accept a raw job, 0 to wait indefinitely", null, 0,
+        "printer.job.timeout"),
+    PRINTER_PDF_MEMORY(PREFERENCES, "Memory (in megabytes) each PDF may use while loading before the rest is buffered to a temporary file, 0 for no limit", null, 16,
+        "printer.pdf.memory"),
+    PRINTER_MEMORY_BUDGET(PREFERENCES, "Percentage of the maximum heap that print jobs may reserve at once", null, 75,
+        "printer.memory.budget"),
+    PRINTER_MEMORY_WAIT(PREFERENCES, "Time (in milliseconds) a print job waits for memory held by other jobs before being rejected", null, 60000,
+        "printer.memory.wait"),
+    PRINTER_GRAPHIC_MEMORY(PREFERENCES, "Printer memory (in kilobytes) used per printer for ZPL graphics sent with storeGraphic, 0 to always send them inline", null, 1024,
+        "printer.graphic.memory"),
+    PRINTER_RAW_CACHE_MEMORY(PREFERENCES, "Memory (in megabytes) used to keep converted raw images, PDFs and HTML for reuse by later jobs, 0 to convert every job", null, 32,
+        "printer.raw.cache.memory"),
+    PRINTER_RAW_CACHE_DISK(PREFERENCES, "Disk space (in megabytes) used to keep converted raw images, PDFs and HTML across restarts, 0 to keep them in memory only", null, 0,
+        "printer.raw.cache.disk");
 
     private ArgType argType;
     private String description;
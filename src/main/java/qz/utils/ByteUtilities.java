@@ -197,9 +197,7 @@ public class ByteUtilities {
 
         for(int i : split) {
             //copy everything from the last pattern (or the start) to the end of this pattern
-            byte[] temp = new byte[i - prev + pattern.length];
-            System.arraycopy(src, prev, temp, 0, temp.length);
-            builder.append(temp);
+            builder.append(src, prev, i - prev + pattern.length);
 
             //if we have 'count' matches, add it to list and start a new builder
             if (counted < count) {
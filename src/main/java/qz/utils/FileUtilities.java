@@ -18,10 +18,6 @@ import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import qz.auth.Certificate;
 import qz.auth.RequestState;
@@ -30,14 +26,17 @@ import qz.common.PropertyHelper;
 import qz.common.CertificateProvider;
 import qz.exception.NullCommandException;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import qz.common.Constants;
 
 import java.io.*;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.net.URL;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.text.SimpleDateFormat;
@@ -514,9 +513,7 @@ public class FileUtilities {
 
         int len;
         while ((len = in.read(buffer)) > -1) {
-            byte[] temp = new byte[len];
-            System.arraycopy(buffer, 0, temp, 0, len);
-            cmds.append(temp);
+            cmds.append(buffer, 0, len);
         }
         in.close();
 
@@ -530,20 +527,37 @@ public class FileUtilities {
     /**
      * Reads an XML file from URL, searches for the tag specified by {@code dataTag}
      * tag name and returns the {@code String} value of that tag.
+     * <p>
+     * The file is streamed, only the text of the matching tag is kept in memory.
      *
      * @param url     location of the xml file to be read
      * @param dataTag tag in the file to be searched
      * @return value of the tag if found
      */
-    public static String readXMLFile(String url, String dataTag)
-            throws DOMException, IOException, NullCommandException, ParserConfigurationException, SAXException {
-        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(url);
-        doc.getDocumentElement().normalize();
-        log.info("Root element " + doc.getDocumentElement().getNodeName());
-
-        NodeList nodeList = doc.getElementsByTagName(dataTag);
-        if (nodeList.getLength() > 0) {
-            return nodeList.item(0).getTextContent();
+    public static String readXMLFile(String url, String dataTag) throws IOException, NullCommandException, XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try(InputStream in = new URL(url).openStream()) {
+            XMLStreamReader reader = factory.createXMLStreamReader(url, in);
+            try {
+                boolean root = true;
+                while(reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) { continue; }
+
+                    String name = reader.getPrefix() == null || reader.getPrefix().isEmpty()? reader.getLocalName():reader.getPrefix() + ":" + reader.getLocalName();
+                    if (root) {
+                        log.info("Root element " + name);
+                        root = false;
+                    }
+                    if (name.equals(dataTag)) {
+                        return reader.getElementText();
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
         }
 
         throw new NullCommandException(String.format("Node \"%s\" could not be found in XML file specified", dataTag));
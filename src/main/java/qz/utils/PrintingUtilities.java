@@ -3,6 +3,7 @@ package qz.utils;
 import qz.utils.FileUtilities;
 import qz.utils.SystemUtilities;
 import com.sun.jna.platform.win32.*;
+import org.apache.commons.io.input.CharSequenceInputStream;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import java.util.Base64;
 import org.codehaus.jettison.json.JSONArray;
@@ -10,12 +11,17 @@ import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.eclipse.jetty.ee9.websocket.api.Session;
 
-import qz.common.Constants;
+import qz.common.Base64TextInputStream;
+import qz.common.HexInputStream;
 import qz.communication.WinspoolEx;
+import qz.exception.PrintRejectedException;
+import qz.printer.PrintAdmission;
 import qz.printer.PrintOptions;
 import qz.printer.PrintOutput;
 import qz.printer.PrintServiceMatcher;
+import qz.printer.action.LabelTemplate;
 import qz.printer.action.PrintProcessor;
+import qz.printer.action.PrintRaw;
 import qz.printer.action.ProcessorFactory;
 import qz.printer.info.NativePrinter;
 import qz.printer.status.CupsUtils;
@@ -26,7 +32,9 @@ import org.apache.logging.log4j.Logger;
 
 import javax.print.PrintException;
 import java.awt.print.PrinterAbortException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -76,6 +84,38 @@ public class PrintingUtilities {
             return read(data, null);
         }
 
+        /**
+         * Opens {@code data} as a stream which decodes as it's read, so the decoded payload is never held in memory at once.
+         * Base64 is checked before the stream is returned, whitespace in it is ignored. Other decoding errors surface as
+         * an {@code IOException} while reading.
+         */
+        public InputStream open(String data, String xmlTag) throws IOException {
+            try {
+                switch(this) {
+                    case BASE64:
+                        return Base64.getDecoder().wrap(new Base64TextInputStream(data));
+                    case FILE:
+                        return ConnectionUtilities.getInputStream(data, true);
+                    case HEX:
+                        if (data.trim().length() <= 2) {
+                            return new ByteArrayInputStream(ByteUtilities.hexStringToByteArray(data.trim()));
+                        }
+                        return new HexInputStream(data);
+                    case XML:
+                        // Assume base64 encoded string inside the specified XML tag
+                        return Base64.getDecoder().wrap(new Base64TextInputStream(FileUtilities.readXMLFile(data, xmlTag)));
+                    case PLAIN:
+                    default:
+                        return CharSequenceInputStream.builder().setCharSequence(data).setCharset(StandardCharsets.UTF_8).get();
+                }
+            } catch(IOException e) {
+                throw e;
+            } catch(Exception e) {
+                log.warn("An error occurred parsing data from " + this.name(), e);
+                throw new IOException("Error parsing data from " + this.name());
+            }
+        }
+
         public byte[] read(String data, String xmlTag) throws IOException {
             try {
                 switch(this) {
@@ -117,31 +157,29 @@ public class PrintingUtilities {
         }
     }
 
-    public synchronized static PrintProcessor getPrintProcessor(Format format) {
+    public static PrintProcessor getPrintProcessor(Format format) {
         try {
-            if (processorPool == null) {
-                processorPool = new GenericKeyedObjectPool<>(new ProcessorFactory());
-
-                long memory = Runtime.getRuntime().maxMemory() / 1000000;
-                if (memory < Constants.MEMORY_PER_PRINT) {
-                    log.warn("Memory available is less than minimum required ({}/{} MB)", memory, Constants.MEMORY_PER_PRINT);
-                }
-                if (memory < Long.MAX_VALUE) {
-                    int maxInst = Math.max(1, (int)(memory / Constants.MEMORY_PER_PRINT));
-                    log.debug("Allowing {} simultaneous processors based on memory available ({} MB)", maxInst, memory);
-                    processorPool.setMaxTotal(maxInst);
-                    processorPool.setMaxTotalPerKey(maxInst);
-                }
-            }
-
-            log.trace("Waiting for processor, {}/{} already in use", processorPool.getNumActive(), processorPool.getMaxTotal());
-            return processorPool.borrowObject(format);
+            GenericKeyedObjectPool<Format,PrintProcessor> pool = getProcessorPool();
+            log.trace("Borrowing processor, {} already in use", pool.getNumActive());
+            return pool.borrowObject(format);
         }
         catch(Exception e) {
             throw new IllegalArgumentException(String.format("Unable to find processor for %s type", format.name()));
         }
     }
 
+    /**
+     * Processors only hold a job's state, memory use is bounded by {@code PrintAdmission} instead of the pool size
+     */
+    private synchronized static GenericKeyedObjectPool<Format,PrintProcessor> getProcessorPool() {
+        if (processorPool == null) {
+            processorPool = new GenericKeyedObjectPool<>(new ProcessorFactory());
+            processorPool.setMaxTotal(-1);
+            processorPool.setMaxTotalPerKey(-1);
+        }
+        return processorPool;
+    }
+
     /**
      * Version 2.1 introduced the flavor attribute to apply better control on raw data.
      * Essentially format became flavor, type become format, and type was rewritten.
@@ -208,10 +246,71 @@ public class PrintingUtilities {
         Type type = getPrintType(firstData);
         Format format = getPrintFormat(type, firstData);
 
-        PrintProcessor processor = PrintingUtilities.getPrintProcessor(format);
-        log.debug("Using {} to print", processor.getClass().getName());
+        PrintAdmission.Reservation reservation;
+        try {
+            reservation = PrintAdmission.reserve(type, format, printData);
+        }
+        catch(PrintRejectedException e) {
+            log.warn("Print job rejected: {}", e.getMessage());
+            PrintSocketClient.sendError(session, UID, e);
+            return false;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            PrintSocketClient.sendError(session, UID, "Printing cancelled");
+            return false;
+        }
+
+        return print(session, UID, params, type, format, reservation, (processor, options) -> processor.parseData(printData, options));
+    }
 
+    /**
+     * Merge records into a label template and send them to the printer
+     *
+     * @param session  WebSocket session
+     * @param UID      ID of call from web API
+     * @param template Template registered by the connection, or shared
+     * @param params   Params of call from web API
+     * @return {@code true} if print completed successfully, {@code false} on error or cancellation
+     */
+    public static boolean processTemplateRequest(Session session, String UID, LabelTemplate template, JSONObject params) throws JSONException {
+        JSONArray records = params.getJSONArray("records");
+
+        PrintAdmission.Reservation reservation;
         try {
+            reservation = PrintAdmission.reserveCommands(template.estimateLength(records));
+        }
+        catch(PrintRejectedException e) {
+            log.warn("Print job rejected: {}", e.getMessage());
+            PrintSocketClient.sendError(session, UID, e);
+            return false;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            PrintSocketClient.sendError(session, UID, "Printing cancelled");
+            return false;
+        }
+
+        log.debug("Merging {} record(s) into template {}", records.length(), template.getName());
+        return print(session, UID, params, Type.RAW, Format.COMMAND, reservation,
+                     (processor, options) -> ((PrintRaw)processor).parseTemplate(template, records, options));
+    }
+
+    /**
+     * Fills a job's processor with its data
+     */
+    @FunctionalInterface
+    private interface DataParser {
+        void parse(PrintProcessor processor, PrintOptions options) throws Exception;
+    }
+
+    private static boolean print(Session session, String UID, JSONObject params, Type type, Format format, PrintAdmission.Reservation reservation, DataParser parser) {
+        PrintProcessor processor = null;
+
+        try {
+            processor = PrintingUtilities.getPrintProcessor(format);
+            log.debug("Using {} to print", processor.getClass().getName());
+
             PrintOutput output = new PrintOutput(params.optJSONObject("printer"));
             PrintOptions options = new PrintOptions(params.optJSONObject("options"), output, format);
 
@@ -219,7 +318,7 @@ public class PrintingUtilities {
                 throw new Exception(String.format("%s cannot print to a raw %s", type, output.isSetFile() ? "file" : "host"));
             }
 
-            processor.parseData(params.getJSONArray("data"), options);
+            parser.parse(processor, options);
             processor.print(output, options);
             log.info("Printing complete");
 
@@ -237,7 +336,10 @@ public class PrintingUtilities {
             return false;
         }
         finally {
-            PrintingUtilities.releasePrintProcessor(processor);
+            if (processor != null) {
+                PrintingUtilities.releasePrintProcessor(processor);
+            }
+            reservation.close();
         }
     }
 
@@ -0,0 +1,161 @@
+package qz.ws;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches websocket messages onto virtual threads while bounding how much work may be in flight.
+ * <p>
+ * Each connection may only have {@code websocket.dispatch.connection} messages in flight at once, anything beyond that
+ * is rejected immediately. Accepted messages then wait for one of {@code websocket.dispatch.global} global permits;
+ * at most {@code websocket.dispatch.queue} messages may be waiting at a time before new ones are rejected as well.
+ */
+public class MessageDispatcher {
+
+    private static final Logger log = LogManager.getLogger(MessageDispatcher.class);
+
+    private static MessageDispatcher instance;
+
+    // set on the threads running dispatched messages, which may block; Jetty's own threads must not
+    private static final ThreadLocal<Boolean> dispatchThread = new ThreadLocal<>();
+
+    private final ExecutorService executor;
+    private final Semaphore globalPermits;
+    private final int connectionLimit;
+    private final int globalLimit;
+    private final int queueLimit;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    public MessageDispatcher(int connectionLimit, int globalLimit, int queueLimit) {
+        this.connectionLimit = Math.max(1, connectionLimit);
+        this.globalLimit = Math.max(1, globalLimit);
+        this.queueLimit = Math.max(0, queueLimit);
+
+        globalPermits = new Semaphore(this.globalLimit, true);
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-dispatch-", 0).factory());
+    }
+
+    public static synchronized MessageDispatcher getInstance() {
+        if (instance == null) {
+            instance = new MessageDispatcher(PrefsSearch.getInt(ArgValue.WEBSOCKET_DISPATCH_CONNECTION),
+                                             PrefsSearch.getInt(ArgValue.WEBSOCKET_DISPATCH_GLOBAL),
+                                             PrefsSearch.getInt(ArgValue.WEBSOCKET_DISPATCH_QUEUE));
+            log.info("Websocket dispatcher started (per connection: {}, global: {}, queue: {})",
+                     instance.connectionLimit, instance.globalLimit, instance.queueLimit);
+        }
+        return instance;
+    }
+
+    /**
+     * Schedules {@code task} on a virtual thread on behalf of {@code connection}.
+     *
+     * @return {@code null} if the task was accepted, otherwise the reason it was rejected
+     */
+    public String dispatch(SocketConnection connection, Runnable task) {
+        if (!connection.tryBeginMessage(connectionLimit)) {
+            rejected.incrementAndGet();
+            return String.format("Too many requests in progress for this connection (limit %s)", connectionLimit);
+        }
+
+        boolean acquired = globalPermits.tryAcquire();
+        if (!acquired) {
+            int depth = queueDepth.incrementAndGet();
+            if (depth > queueLimit) {
+                queueDepth.decrementAndGet();
+                connection.endMessage();
+                rejected.incrementAndGet();
+                return String.format("Too many requests in progress (limit %s, queued %s)", globalLimit, queueLimit);
+            }
+            peakQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        try {
+            executor.execute(() -> {
+                if (!acquired) {
+                    try {
+                        globalPermits.acquire();
+                    } catch(InterruptedException e) {
+                        log.warn("Interrupted while waiting to process message", e);
+                        connection.endMessage();
+                        return;
+                    } finally {
+                        queueDepth.decrementAndGet();
+                    }
+                }
+
+                dispatchThread.set(Boolean.TRUE);
+                try {
+                    task.run();
+                } finally {
+                    globalPermits.release();
+                    connection.endMessage();
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            if (acquired) {
+                globalPermits.release();
+            } else {
+                queueDepth.decrementAndGet();
+            }
+            connection.endMessage();
+            rejected.incrementAndGet();
+            return "Message dispatcher is shut down";
+        }
+
+        return null;
+    }
+
+    /**
+     * @return {@code true} if called while processing a dispatched message, where it's safe to block
+     */
+    public static boolean isDispatchThread() {
+        return dispatchThread.get() != null;
+    }
+
+    /**
+     * @return Number of accepted messages still waiting for a global permit
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * @return Number of messages currently being processed across all connections
+     */
+    public int getInFlight() {
+        return globalLimit - globalPermits.availablePermits();
+    }
+
+    public int getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops accepting messages once the server has stopped, letting those in flight finish. A restarted server gets a
+     * new dispatcher.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.executor.shutdown();
+            instance = null;
+            log.info("Websocket dispatcher stopped");
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package qz.ws;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.ee9.websocket.api.Session;
+import org.eclipse.jetty.ee9.websocket.api.StatusCode;
+import org.eclipse.jetty.ee9.websocket.api.WriteCallback;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-session outbound message queue.
+ * <p>
+ * Messages are written with Jetty's asynchronous {@code sendString}, one at a time and in order, so a slow client only
+ * ever holds up its own replies. Once {@code highWaterMark} messages are pending, replies sent while processing a
+ * message wait for the queue to drain, while stream events are dropped, since newer events supersede them anyway.
+ * Replies sent from any other thread, such as Jetty's own, can't wait without stalling the websocket, so a client that
+ * far behind is disconnected instead.
+ * <p>
+ * Waiting uses a lock rather than {@code synchronized}, so a reply waiting on a virtual dispatch thread doesn't pin its
+ * carrier.
+ */
+public class OutboundQueue implements WriteCallback {
+
+    private static final Logger log = LogManager.getLogger(OutboundQueue.class);
+
+    private final Session session;
+    private final int highWaterMark;
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+
+    private boolean writing;
+    private boolean sending;
+    private boolean closed;
+    private long dropped;
+
+    public OutboundQueue(Session session, int highWaterMark) {
+        this.session = session;
+        this.highWaterMark = Math.max(1, highWaterMark);
+    }
+
+    /**
+     * Queues a reply, waiting for room if the queue is above its high-water mark
+     *
+     * @throws ClosedChannelException if the session is closed, or was closed because the queue is full and this thread
+     *                                can't wait for room
+     */
+    public void send(String message) throws ClosedChannelException {
+        lock.lock();
+        try {
+            if (!isClosed() && pending.size() >= highWaterMark && !MessageDispatcher.isDispatchThread()) {
+                log.warn("Outbound queue for {} is full, closing the connection rather than blocking", session.getRemoteAddress());
+                close();
+                session.close(StatusCode.TRY_AGAIN_LATER, "Client is not reading replies");
+                throw new ClosedChannelException();
+            }
+            while(!isClosed() && pending.size() >= highWaterMark) {
+                try {
+                    drained.await();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ClosedChannelException();
+                }
+            }
+            enqueue(message);
+        }
+        finally {
+            lock.unlock();
+        }
+        flush();
+    }
+
+    /**
+     * Queues a stream event, dropping it if the queue is above its high-water mark
+     */
+    public void sendStream(String message) throws ClosedChannelException {
+        lock.lock();
+        try {
+            if (!isClosed() && pending.size() >= highWaterMark) {
+                if (dropped++ % 100 == 0) {
+                    log.warn("Outbound queue for {} is full, dropped {} stream event(s)", session.getRemoteAddress(), dropped);
+                }
+                return;
+            }
+            enqueue(message);
+        }
+        finally {
+            lock.unlock();
+        }
+        flush();
+    }
+
+    private void enqueue(String message) throws ClosedChannelException {
+        if (isClosed()) {
+            throw new ClosedChannelException();
+        }
+        pending.add(message);
+    }
+
+    private boolean isClosed() {
+        if (!closed && !session.isOpen()) {
+            close();
+        }
+        return closed;
+    }
+
+    private void flush() {
+        while(true) {
+            String next;
+            lock.lock();
+            try {
+                if (writing || closed || pending.isEmpty()) { return; }
+                writing = true;
+                sending = true;
+                next = pending.poll();
+                drained.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+
+            try {
+                session.getRemote().sendString(next, this);
+            }
+            catch(Exception e) {
+                writeFailed(e);
+            }
+
+            lock.lock();
+            try {
+                sending = false;
+                // callback hasn't fired yet, it will resume flushing once the write completes
+                if (writing) { return; }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void writeSuccess() {
+        lock.lock();
+        try {
+            writing = false;
+            // completed synchronously, let the loop in flush() pick up the next message
+            if (sending) { return; }
+        }
+        finally {
+            lock.unlock();
+        }
+        flush();
+    }
+
+    @Override
+    public void writeFailed(Throwable x) {
+        if (x instanceof ClosedChannelException || x.getCause() instanceof ClosedChannelException || !session.isOpen()) {
+            log.warn("Connection to {} closed with {} message(s) still queued", session.getRemoteAddress(), size());
+            close();
+        } else {
+            log.error("Could not send message", x);
+        }
+        writeSuccess();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards anything still queued and wakes any senders waiting for room
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            pending.clear();
+            drained.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -8,9 +8,9 @@ import java.net.InetSocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeoutException;
 
@@ -31,12 +31,16 @@ import org.eclipse.jetty.ee9.websocket.api.exceptions.WebSocketException;
 import org.eclipse.jetty.server.Server;
 
 import qz.auth.Certificate;
+import qz.auth.CertificateCache;
 import qz.auth.RequestState;
 import qz.common.Constants;
 import qz.communication.DeviceException;
 import qz.communication.DeviceListener;
 import qz.printer.PrintServiceMatcher;
+import qz.printer.action.LabelTemplate;
 import qz.printer.status.StatusMonitor;
+import qz.utils.ArgValue;
+import qz.utils.PrefsSearch;
 import qz.utils.PrintingUtilities;
 import qz.ws.PrintValidationHook.RegisteredComponent;
 import qz.ws.substitutions.Substitutions;
@@ -53,7 +57,7 @@ public class PrintSocketClient {
     private static final Semaphore dialogAvailable = new Semaphore(1, true);
 
     // websocket port -> Connection
-    private static final HashMap<Integer, SocketConnection> openConnections = new HashMap<>();
+    private static final ConcurrentHashMap<Integer, SocketConnection> openConnections = new ConcurrentHashMap<>();
     
     // List of listeners to be notified when messages are processed
     private static final List<MessageProcessedListener> messageProcessedListeners = new ArrayList<>();
@@ -76,6 +80,22 @@ public class PrintSocketClient {
         log.info("Subscription info updated in PrintSocketClient ");
         
     }
+
+    public static int getConnectionCount() {
+        return openConnections.size();
+    }
+
+    /**
+     * @return The most messages any single connection has in flight, to compare against its per connection limit
+     */
+    public static int getBusiestConnection() {
+        int busiest = 0;
+        for(SocketConnection connection : openConnections.values()) {
+            busiest = Math.max(busiest, connection.getMessagesInFlight());
+        }
+        return busiest;
+    }
+
     /**
      * Adds a listener to be notified when messages are processed.
      *
@@ -225,6 +245,7 @@ public class PrintSocketClient {
             }
         }
         connection.setUserAgent(userAgent);
+        connection.setOutbound(new OutboundQueue(session, PrefsSearch.getInt(ArgValue.WEBSOCKET_SEND_HIGHWATER)));
         
         Integer remotePort = ((InetSocketAddress) session.getRemoteAddress()).getPort();
         
@@ -314,24 +335,23 @@ public class PrintSocketClient {
 
         String UID = null;
         try {
-            JSONObject json = cleanupMessage(new JSONObject(message));
+            SocketMessage parsed = SocketMessage.parse(message);
+            JSONObject json = parsed.getJson();
             log.debug("Message: {}", json);
-            UID = json.optString("uid");
+            UID = parsed.getUid();
 
             Integer connectionPort = ((InetSocketAddress) session.getRemoteAddress()).getPort();
             SocketConnection connection = openConnections.get(connectionPort);
             RequestState request = new RequestState(connection.getCertificate(), json);
-            String callAttr = json.optString("call", "");
-            var params = json.optJSONObject("params");
-            var dataArray = params != null ? params.optJSONArray("data") : null;
-            var dataObj = dataArray != null && dataArray.length() > 0 ? dataArray.optJSONObject(0) : null;
+            String callAttr = parsed.getCallName();
+            var dataObj = parsed.getFirstData();
 
             String deviceFingerprint = dataObj != null ? dataObj.optString("deviceFingerprint", "") : "";
             if (deviceFingerprint == null) {
                 var deviceInfo = json.optJSONObject("hostInfo");
                 deviceFingerprint = deviceInfo != null ? deviceInfo.optString("fingerprint", "") : null;
             }
-            SocketMethod call = SocketMethod.findFromCall(callAttr);
+            SocketMethod call = parsed.getCall();
             if (call.isFingerPrintRequired()) {
                 // Validate fingerprints if they are present in the message
                 if (deviceFingerprint == null) {
@@ -354,7 +374,7 @@ public class PrintSocketClient {
             // if sent a certificate use that instead for this connection
             if (json.has("certificate")) {
                 try {
-                    Certificate certificate = new Certificate(json.optString("certificate"));
+                    Certificate certificate = CertificateCache.get(json.optString("certificate"));
                     connection.setCertificate(certificate);
 
                     request.markNewConnection(certificate);
@@ -392,9 +412,9 @@ public class PrintSocketClient {
                 }
             }
 
-            // spawn thread to prevent long processes from blocking
+            // dispatch to prevent long processes from blocking
             final String tUID = UID;
-            new Thread(() -> {
+            String rejection = MessageDispatcher.getInstance().dispatch(connection, () -> {
                 try {
                     processMessage(session, json, connection, request);
                 } catch (JSONException e) {
@@ -404,7 +424,11 @@ public class PrintSocketClient {
                     log.error("Problem processing message", e);
                     sendError(session, tUID, e);
                 }
-            }).start();
+            });
+            if (rejection != null) {
+                log.warn("Rejected {} from {}: {}", callAttr, session.getRemoteAddress(), rejection);
+                sendError(session, UID, rejection);
+            }
         } catch (JSONException e) {
             log.error("Bad JSON: {}", e.getMessage());
             sendError(session, UID, e);
@@ -414,19 +438,6 @@ public class PrintSocketClient {
         }
     }
 
-    private JSONObject cleanupMessage(JSONObject msg) {
-        msg.remove("promise"); // never needed java side
-
-        // remove unused properties from older js api's
-        SocketMethod call = SocketMethod.findFromCall(msg.optString("call"));
-        if (!call.isFingerPrintRequired()) {
-            msg.remove("signature");
-            msg.remove("signAlgorithm");
-        }
-
-        return msg;
-    }
-
     private boolean validSignature(Certificate certificate, JSONObject message) throws JSONException {
         JSONObject copy = new JSONObject(message, new String[] { "call", "params", "timestamp" });
         String signature = message.optString("signature");
@@ -474,7 +485,7 @@ public class PrintSocketClient {
         }
 
         String prompt = call.getPromptMessage();
-        if (call == SocketMethod.PRINT) {
+        if (call == SocketMethod.PRINT || call == SocketMethod.TEMPLATES_PRINT) {
             // special formatting for print dialogs
             JSONObject pr = params.optJSONObject("printer");
             if (pr != null) {
@@ -750,6 +761,33 @@ public class PrintSocketClient {
             boolean printSuccess = PrintingUtilities.processPrintRequest(session, UID, params);
             notifyPrintMetrics(printMetricsPrinterName, printSuccess);
             break;
+        case TEMPLATES_REGISTER:
+            try {
+                connection.addTemplate(LabelTemplate.compile(params.optString("name", null), params.getString("data")));
+                sendResult(session, UID, null);
+            }
+            catch(IllegalArgumentException e) {
+                sendError(session, UID, e);
+            }
+            break;
+        case TEMPLATES_PRINT:
+            LabelTemplate template;
+            try {
+                template = connection.findTemplate(params.optString("name", null));
+            }
+            catch(IllegalArgumentException e) {
+                sendError(session, UID, e);
+                break;
+            }
+            if (template == null) {
+                sendError(session, UID, "Template \"" + params.optString("name") + "\" is not registered or shared");
+                break;
+            }
+
+            JSONObject templatePrinter = params.optJSONObject("printer");
+            boolean templateSuccess = PrintingUtilities.processTemplateRequest(session, UID, template, params);
+            notifyPrintMetrics(templatePrinter != null? templatePrinter.optString("name", null):null, templateSuccess);
+            break;
 
         case GET_VERSION:
             sendResult(session, UID, Constants.VERSION);
@@ -879,9 +917,7 @@ public class PrintSocketClient {
      */
     public static void sendResult(Session session, String messageUID, Object returnValue) {
         try {
-            JSONObject reply = new JSONObject();
-            reply.put("uid", messageUID);
-            reply.put("result", returnValue);
+            JSONObject reply = SocketMessage.result(messageUID, returnValue);
             send(session, reply);
             log.debug("Sent result: {}", reply);
         } catch (JSONException | ClosedChannelException e) {
@@ -914,10 +950,7 @@ public class PrintSocketClient {
      */
     public static void sendError(Session session, String messageUID, String errorMsg) {
         try {
-            JSONObject reply = new JSONObject();
-            reply.putOpt("uid", messageUID);
-            reply.put("error", errorMsg);
-            send(session, reply);
+            send(session, SocketMessage.error(messageUID, errorMsg));
         } catch (JSONException | ClosedChannelException e) {
             log.error("Send error failed", e);
         }
@@ -935,7 +968,7 @@ public class PrintSocketClient {
             JSONObject stream = new JSONObject();
             stream.put("type", event.getStreamType());
             stream.put("event", event.toJSON());
-            send(session, stream);
+            send(session, stream, true);
         } catch (JSONException e) {
             log.error("Send stream failed", e);
         }
@@ -1065,17 +1098,41 @@ public class PrintSocketClient {
      * @param session WebSocket session
      * @param reply   JSON Object of reply to web API
      */
-    private static synchronized void send(Session session, JSONObject reply)
+    private static void send(Session session, JSONObject reply) throws WebSocketException, ClosedChannelException {
+        send(session, reply, false);
+    }
+
+    /**
+     * Raw send method, queued on the session's own outbound queue so a slow client cannot hold up the others
+     *
+     * @param session WebSocket session
+     * @param reply   JSON Object of reply to web API
+     * @param stream  Whether this is a stream event that may be dropped when the client falls too far behind
+     */
+    private static void send(Session session, JSONObject reply, boolean stream)
             throws WebSocketException, ClosedChannelException {
-        try {
-            session.getRemote().sendString(reply.toString());
-        } catch (IOException e) {
-            if (e instanceof ClosedChannelException) {
-                throw (ClosedChannelException) e;
-            } else if (e.getCause() instanceof ClosedChannelException) {
-                throw (ClosedChannelException) e.getCause();
+        SocketConnection connection = openConnections.get(((InetSocketAddress)session.getRemoteAddress()).getPort());
+        if (connection != null && connection.getOutbound() != null) {
+            if (stream) {
+                connection.getOutbound().sendStream(reply.toString());
+            } else {
+                connection.getOutbound().send(reply.toString());
+            }
+            return;
+        }
+
+        // connection isn't tracked (yet), fall back to a blocking send
+        synchronized(session) {
+            try {
+                session.getRemote().sendString(reply.toString());
+            } catch (IOException e) {
+                if (e instanceof ClosedChannelException) {
+                    throw (ClosedChannelException) e;
+                } else if (e.getCause() instanceof ClosedChannelException) {
+                    throw (ClosedChannelException) e.getCause();
+                }
+                log.error("Could not send message", e);
             }
-            log.error("Could not send message", e);
         }
     }
 
@@ -40,6 +40,7 @@ import lombok.NonNull;
 import lombok.extern.log4j.Log4j2;
 import qz.utils.ArgValue;
 import qz.utils.PrefsSearch;
+import qz.ws.substitutions.Substitutions;
 
 /**
  * Abstract base WebSocket server for handling print operations.
@@ -224,6 +225,9 @@ public abstract class PrintSocketServer {
 
                 server.setHandler(context);
                 server.setStopAtShutdown(true);
+
+                // load substitutions before accepting connections, rather than on the first message
+                Substitutions.watch();
                 server.start();
 
                 setupReloadThread();
@@ -270,6 +274,7 @@ public abstract class PrintSocketServer {
                         log.info("Server join thread started - waiting for server to stop");
                         server.join();
                         log.info("Server has stopped");
+                        MessageDispatcher.shutdown();
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                         log.info("Server join thread was interrupted");
@@ -5,10 +5,13 @@ import org.apache.logging.log4j.Logger;
 
 import qz.auth.Certificate;
 import qz.communication.*;
+import qz.printer.action.LabelTemplate;
 import qz.printer.status.StatusMonitor;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SocketConnection {
 
@@ -23,6 +26,14 @@ public class SocketConnection {
 
     private DeviceListener deviceListener;
 
+    private OutboundQueue outbound;
+
+    // label templates registered by this connection, by name
+    private final Map<String,LabelTemplate> templates = new ConcurrentHashMap<>();
+
+    // messages accepted by the dispatcher but not yet finished
+    private final AtomicInteger messagesInFlight = new AtomicInteger();
+
 
     public SocketConnection(Certificate cert) {
         certificate = cert;
@@ -54,6 +65,14 @@ public class SocketConnection {
     
     // Removed fingerprint getters and setters as they should be handled per-message
 
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    public void setOutbound(OutboundQueue outbound) {
+        this.outbound = outbound;
+    }
+
 
     public boolean isDeviceListening() {
         return deviceListener != null;
@@ -71,6 +90,42 @@ public class SocketConnection {
     }
 
 
+    public void addTemplate(LabelTemplate template) {
+        templates.put(template.getName(), template);
+    }
+
+    /**
+     * @return The template this connection registered as {@code name}, or else the shared one, or {@code null} if neither exists
+     */
+    public LabelTemplate findTemplate(String name) throws IOException {
+        LabelTemplate template = templates.get(name);
+        return template != null? template:LabelTemplate.findShared(name);
+    }
+
+
+    /**
+     * Reserves a dispatch slot for a new message, unless {@code limit} messages are already in flight
+     */
+    boolean tryBeginMessage(int limit) {
+        int current;
+        do {
+            current = messagesInFlight.get();
+            if (current >= limit) { return false; }
+        }
+        while(!messagesInFlight.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    void endMessage() {
+        messagesInFlight.decrementAndGet();
+    }
+
+    public int getMessagesInFlight() {
+        return messagesInFlight.get();
+    }
+
+
     /**
      * Explicitly closes all open network and usb connections setup through this object
      */
@@ -79,6 +134,10 @@ public class SocketConnection {
 
         stopDeviceListening();
         StatusMonitor.stopListening(this);
+
+        if (outbound != null) {
+            outbound.close();
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package qz.ws;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * A request from the web API, parsed and routed to its {@link SocketMethod}, along with the replies sent back for it.
+ * <p>
+ * This is the part of {@code PrintSocketClient.onMessage} every request goes through before it is dispatched, kept
+ * apart from the session handling so it can be measured on its own.
+ */
+public class SocketMessage {
+
+    private final JSONObject json;
+    private final String uid;
+    private final SocketMethod call;
+    private final JSONObject params;
+
+    private SocketMessage(JSONObject json) {
+        this.json = json;
+        uid = json.optString("uid");
+        call = SocketMethod.findFromCall(json.optString("call"));
+        params = json.optJSONObject("params");
+    }
+
+    /**
+     * Parses {@code message}, dropping properties that are never needed java side
+     */
+    public static SocketMessage parse(String message) throws JSONException {
+        JSONObject json = new JSONObject(message);
+        json.remove("promise");
+
+        // remove unused properties from older js api's
+        if (!SocketMethod.findFromCall(json.optString("call")).isFingerPrintRequired()) {
+            json.remove("signature");
+            json.remove("signAlgorithm");
+        }
+
+        return new SocketMessage(json);
+    }
+
+    public JSONObject getJson() {
+        return json;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public String getCallName() {
+        return json.optString("call", "");
+    }
+
+    public SocketMethod getCall() {
+        return call;
+    }
+
+    /**
+     * @return The call's params, or {@code null} if none were sent
+     */
+    public JSONObject getParams() {
+        return params;
+    }
+
+    /**
+     * @return The first item of a print call's data, which decides the type and format of the whole job, or {@code null}
+     */
+    public JSONObject getFirstData() {
+        JSONArray data = params != null? params.optJSONArray("data"):null;
+        return data != null && data.length() > 0? data.optJSONObject(0):null;
+    }
+
+    /**
+     * @return The reply to call {@code uid}, with its return value, which can be {@code null}
+     */
+    public static JSONObject result(String uid, Object returnValue) throws JSONException {
+        JSONObject reply = new JSONObject();
+        reply.put("uid", uid);
+        reply.put("result", returnValue);
+        return reply;
+    }
+
+    /**
+     * @return The reply to call {@code uid} when it failed
+     */
+    public static JSONObject error(String uid, String errorMsg) throws JSONException {
+        JSONObject reply = new JSONObject();
+        reply.putOpt("uid", uid);
+        reply.put("error", errorMsg);
+        return reply;
+    }
+
+}
@@ -6,6 +6,8 @@ public enum SocketMethod {
     PRINTERS_GET_STATUS("printers.getStatus", false, true, false),
     PRINTERS_STOP_LISTENING("printers.stopListening", false, true, false),
     PRINT("print", true, true, false, "print to %s"),
+    TEMPLATES_REGISTER("templates.register", false, true, false),
+    TEMPLATES_PRINT("templates.print", true, true, false, "print to %s"),
 
     // Fingerprint management methods
     FINGERPRINT_REGISTER_DEVICE("fingerprint.registerDevice", false, true, false, "register a device fingerprint"),
@@ -0,0 +1,191 @@
+package qz.ws.substitutions;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+import qz.utils.ByteUtilities;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A substitution rule's {@code "for"} section compiled once at load, so matching a request doesn't re-read the rule's
+ * JSON. Follows the same rules as the original tree search: every key of an object must match, any element of an array
+ * may match any element of the request's array, and literals compare as numbers or (case-insensitive) strings.
+ */
+abstract class Matcher {
+
+    // marks a step into any element of an array in a Path
+    static final String ANY_ELEMENT = null;
+
+    /**
+     * The keys leading from the root of a request to a literal, with {@link #ANY_ELEMENT} for array steps
+     */
+    static final class Path {
+        final List<String> steps;
+        final Literal literal;
+
+        Path(List<String> steps, Literal literal) {
+            this.steps = steps;
+            this.literal = literal;
+        }
+
+        int arraySteps() {
+            int count = 0;
+            for(String step : steps) {
+                if (step == ANY_ELEMENT) { count++; }
+            }
+            return count;
+        }
+    }
+
+    abstract boolean matches(Object base);
+
+    /**
+     * Adds every literal that must be present at a fixed path for this to match
+     */
+    abstract void requiredPaths(List<String> prefix, List<Path> found);
+
+    static Matcher compile(Object json, boolean caseSensitive) throws JSONException {
+        if (json instanceof JSONObject) {
+            return new ObjectMatcher((JSONObject)json, caseSensitive);
+        } else if (json instanceof JSONArray) {
+            return new ArrayMatcher((JSONArray)json, caseSensitive);
+        }
+        return new Literal(json, caseSensitive);
+    }
+
+    /**
+     * Lower-cases {@code value} the way {@code String.equalsIgnoreCase} compares, so equal keys mean equal-ignoring-case
+     */
+    static String fold(String value) {
+        StringBuilder folded = new StringBuilder(value.length());
+        value.codePoints().forEach(c -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return folded.toString();
+    }
+
+    private static boolean isPrimitive(Object o) {
+        return !(o instanceof JSONObject || o instanceof JSONArray);
+    }
+
+    private static List<String> append(List<String> prefix, String step) {
+        List<String> steps = new ArrayList<>(prefix.size() + 1);
+        steps.addAll(prefix);
+        steps.add(step);
+        return steps;
+    }
+
+    static final class ObjectMatcher extends Matcher {
+        final String[] keys;
+        final Matcher[] values;
+        private final Literal asLiteral;
+
+        ObjectMatcher(JSONObject json, boolean caseSensitive) throws JSONException {
+            keys = new String[json.length()];
+            values = new Matcher[keys.length];
+            int i = 0;
+            for(Iterator it = json.keys(); it.hasNext(); i++) {
+                keys[i] = it.next().toString();
+                values[i] = compile(json.get(keys[i]), caseSensitive);
+            }
+            asLiteral = new Literal(json.toString(), caseSensitive);
+        }
+
+        @Override
+        boolean matches(Object base) {
+            if (base instanceof JSONObject) {
+                JSONObject jsonBase = (JSONObject)base;
+                for(int i = 0; i < keys.length; i++) {
+                    Object value = jsonBase.opt(keys[i]);
+                    if (value == null || !values[i].matches(value)) { return false; }
+                }
+                return true;
+            }
+            return isPrimitive(base) && asLiteral.matches(base);
+        }
+
+        @Override
+        void requiredPaths(List<String> prefix, List<Path> found) {
+            for(int i = 0; i < keys.length; i++) {
+                values[i].requiredPaths(append(prefix, keys[i]), found);
+            }
+        }
+    }
+
+    static final class ArrayMatcher extends Matcher {
+        final Matcher[] elements;
+        private final Literal asLiteral;
+
+        ArrayMatcher(JSONArray json, boolean caseSensitive) throws JSONException {
+            elements = new Matcher[json.length()];
+            for(int i = 0; i < elements.length; i++) {
+                elements[i] = compile(json.get(i), caseSensitive);
+            }
+            asLiteral = new Literal(json.toString(), caseSensitive);
+        }
+
+        @Override
+        boolean matches(Object base) {
+            if (base instanceof JSONArray) {
+                JSONArray baseArray = (JSONArray)base;
+                for(Matcher element : elements) {
+                    for(int j = 0; j < baseArray.length(); j++) {
+                        if (element.matches(baseArray.opt(j))) { return true; }
+                    }
+                }
+                return false;
+            }
+            return isPrimitive(base) && asLiteral.matches(base);
+        }
+
+        @Override
+        void requiredPaths(List<String> prefix, List<Path> found) {
+            // with several elements any one may match, so none of them is required
+            if (elements.length == 1) {
+                elements[0].requiredPaths(append(prefix, ANY_ELEMENT), found);
+            }
+        }
+    }
+
+    static final class Literal extends Matcher {
+        final Object value;
+        final String text;
+        final boolean caseSensitive;
+
+        Literal(Object value, boolean caseSensitive) {
+            this.value = value;
+            this.text = value.toString();
+            this.caseSensitive = caseSensitive;
+        }
+
+        /**
+         * Whether this can be found by its folded text, numbers instead compare by value
+         */
+        boolean isIndexable() {
+            return !(value instanceof Number);
+        }
+
+        String folded() {
+            return fold(text);
+        }
+
+        @Override
+        boolean matches(Object base) {
+            if (!isPrimitive(base)) { return false; }
+            if (value instanceof Number || base instanceof Number) {
+                return ByteUtilities.numberEquals(value, base);
+            }
+            return caseSensitive? text.equals(base.toString()):text.equalsIgnoreCase(base.toString());
+        }
+
+        @Override
+        void requiredPaths(List<String> prefix, List<Path> found) {
+            if (isIndexable()) {
+                found.add(new Path(prefix, this));
+            }
+        }
+    }
+
+}
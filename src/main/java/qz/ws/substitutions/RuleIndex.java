@@ -0,0 +1,151 @@
+package qz.ws.substitutions;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Narrows the substitution rules worth checking against a request, so it costs a few lookups rather than a search of
+ * the whole request per rule.
+ * <p>
+ * Rules are grouped by the {@code "call"} they're limited to, then filed under one literal they require, at a fixed
+ * path such as {@code params.printer.name}, lower-cased. A request only checks the rules filed under the values it has
+ * at those paths, plus any rule without such a literal.
+ */
+class RuleIndex {
+
+    private static final List<String> CALL = Collections.singletonList("call");
+    // a plain value found part way along a path, which a rule can still match by comparing its text as a whole
+    private static final Object PARTIAL = new Object();
+
+    private final HashMap<String,Group> byCall = new HashMap<>();
+    private final Group anyCall = new Group();
+
+    /**
+     * Rules filed by the value at each path
+     */
+    private static class Group {
+        final HashMap<List<String>,HashMap<String,List<Integer>>> byPath = new HashMap<>();
+        // every rule filed under a path, for request values that can't be looked up by text
+        final HashMap<List<String>,List<Integer>> allByPath = new HashMap<>();
+        final List<Integer> unindexed = new ArrayList<>();
+
+        void add(int rule, Matcher.Path path) {
+            if (path == null) {
+                unindexed.add(rule);
+                return;
+            }
+            byPath.computeIfAbsent(path.steps, k -> new HashMap<>())
+                    .computeIfAbsent(path.literal.folded(), k -> new ArrayList<>(1)).add(rule);
+            allByPath.computeIfAbsent(path.steps, k -> new ArrayList<>()).add(rule);
+        }
+
+        void collect(JSONObject request, int after, NavigableSet<Integer> into) {
+            addAfter(unindexed, after, into);
+            for(Map.Entry<List<String>,HashMap<String,List<Integer>>> entry : byPath.entrySet()) {
+                for(Object value : resolve(request, entry.getKey())) {
+                    if (value instanceof JSONObject || value instanceof JSONArray) { continue; }
+                    if (value == PARTIAL || value instanceof Number) {
+                        // "5" or "5.0" may match, only a full check can tell
+                        addAfter(allByPath.get(entry.getKey()), after, into);
+                    } else {
+                        addAfter(entry.getValue().get(Matcher.fold(value.toString())), after, into);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param matchers Each rule's compiled {@code "for"} section, in rule order
+     */
+    RuleIndex(List<Matcher> matchers) {
+        for(int rule = 0; rule < matchers.size(); rule++) {
+            List<Matcher.Path> required = new ArrayList<>();
+            matchers.get(rule).requiredPaths(Collections.emptyList(), required);
+
+            String call = null;
+            Matcher.Path best = null;
+            for(Matcher.Path path : required) {
+                if (path.steps.equals(CALL)) {
+                    call = path.literal.folded();
+                } else if (best == null || isBetter(path, best)) {
+                    best = path;
+                }
+            }
+
+            Group group = call == null? anyCall:byCall.computeIfAbsent(call, k -> new Group());
+            group.add(rule, best);
+        }
+    }
+
+    /**
+     * Rules after {@code after} that may match {@code request}, in rule order
+     */
+    NavigableSet<Integer> candidates(JSONObject request, int after) {
+        TreeSet<Integer> found = new TreeSet<>();
+        collect(request, after, found);
+        return found;
+    }
+
+    /**
+     * Adds rules after {@code after} that may match {@code request}, such as once a substitution has changed it
+     */
+    void collect(JSONObject request, int after, NavigableSet<Integer> into) {
+        anyCall.collect(request, after, into);
+        if (!byCall.isEmpty()) {
+            Object call = request.opt("call");
+            Group group = call == null? null:byCall.get(Matcher.fold(call.toString()));
+            if (group != null) {
+                group.collect(request, after, into);
+            }
+        }
+    }
+
+    /**
+     * Prefer paths that don't fan out into arrays, then the most specific
+     */
+    private static boolean isBetter(Matcher.Path path, Matcher.Path than) {
+        int arrays = path.arraySteps() - than.arraySteps();
+        if (arrays != 0) { return arrays < 0; }
+        return path.steps.size() > than.steps.size();
+    }
+
+    private static void addAfter(List<Integer> rules, int after, NavigableSet<Integer> into) {
+        if (rules == null) { return; }
+        for(int rule : rules) {
+            if (rule > after) { into.add(rule); }
+        }
+    }
+
+    /**
+     * Every value in {@code request} at {@code steps}, stepping into each element of an array at {@link Matcher#ANY_ELEMENT},
+     * or {@link #PARTIAL} where a plain value stops the path short
+     */
+    private static List<Object> resolve(JSONObject request, List<String> steps) {
+        List<Object> current = Collections.singletonList(request);
+        for(String step : steps) {
+            List<Object> next = new ArrayList<>();
+            for(Object node : current) {
+                if (node == PARTIAL || !(node instanceof JSONObject || node instanceof JSONArray)) {
+                    next.add(PARTIAL);
+                } else if (step == Matcher.ANY_ELEMENT) {
+                    if (node instanceof JSONArray) {
+                        JSONArray array = (JSONArray)node;
+                        for(int i = 0; i < array.length(); i++) {
+                            next.add(array.opt(i));
+                        }
+                    }
+                } else if (node instanceof JSONObject) {
+                    Object value = ((JSONObject)node).opt(step);
+                    if (value != null) { next.add(value); }
+                }
+            }
+            if (next.isEmpty()) { return next; }
+            current = next;
+        }
+        return current;
+    }
+
+}
@@ -38,10 +38,13 @@ public class Substitutions {
         parlous.put(Type.DATA, new String[] {"data"});
     }
     private final ArrayList<Rule> rules;
-    private static Substitutions INSTANCE;
+    private final RuleIndex index;
+    private static volatile Substitutions INSTANCE;
+    // once watched, the file is only read by the watcher, never while handling a request
+    private static volatile boolean watching;
 
     public Substitutions(Path path) throws IOException, JSONException {
-        this(Files.newInputStream(path.toFile().toPath()));
+        this(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
     }
 
     public Substitutions(InputStream in) throws IOException, JSONException {
@@ -58,17 +61,32 @@ public class Substitutions {
                 rules.add(new Rule(step));
             }
         }
+
+        List<Matcher> matchers = new ArrayList<>(rules.size());
+        for(Rule rule : rules) {
+            matchers.add(rule.matcher);
+        }
+        index = new RuleIndex(matchers);
     }
 
     public JSONObject replace(InputStream in) throws IOException, JSONException {
         return replace(new JSONObject(IOUtils.toString(in, StandardCharsets.UTF_8)));
     }
 
+    /**
+     * Applies each matching rule in order. Only rules the index can't rule out are checked, and a rule matches against
+     * the request as changed by the rules before it.
+     */
     public JSONObject replace(JSONObject base) throws JSONException {
-        for(Rule rule : rules) {
-            if (find(base, rule.match, rule.caseSensitive)) {
+        NavigableSet<Integer> pending = index.candidates(base, -1);
+        Integer next;
+        while((next = pending.pollFirst()) != null) {
+            Rule rule = rules.get(next);
+            if (rule.matcher.matches(base)) {
                 log.debug("Matched {}JSON substitution rule: {}", rule.caseSensitive ? "case-sensitive " : "", rule);
                 replace(base, rule.replace);
+                // the substitution may have made later rules match
+                index.collect(base, next, pending);
             } else {
                 log.debug("Unable to match {}JSON substitution rule: {}", rule.caseSensitive ? "case-sensitive " : "", rule);
             }
@@ -76,6 +94,19 @@ public class Substitutions {
         return base;
     }
 
+    /**
+     * Applies each matching rule in order by searching the whole request for every rule, as was done before the index.
+     * Kept to check {@link #replace(JSONObject)} against.
+     */
+    JSONObject replaceUnindexed(JSONObject base) throws JSONException {
+        for(Rule rule : rules) {
+            if (find(base, rule.match, rule.caseSensitive, false)) {
+                replace(base, rule.replace);
+            }
+        }
+        return base;
+    }
+
     public static boolean isPrimitive(Object o) {
         if(o instanceof JSONObject || o instanceof JSONArray) {
             return false;
@@ -204,9 +235,6 @@ public class Substitutions {
         }
     }
 
-    private static boolean find(Object base, Object match, boolean caseSensitive) throws JSONException {
-        return find(base, match, caseSensitive, false);
-    }
     private static boolean find(Object base, Object match, boolean caseSensitive, boolean replace) throws JSONException {
         if(base instanceof JSONObject) {
             if(match instanceof JSONObject) {
@@ -308,15 +336,35 @@ public class Substitutions {
     }
 
     public static Substitutions getInstance(boolean forceRefresh) {
-        if(INSTANCE == null || forceRefresh) {
-            INSTANCE = Substitutions.newInstance();
-            if(!enabled) {
-                log.warn("Substitution file was found, but substitutions are currently disabled via \"{}=false\"", ArgValue.SECURITY_SUBSTITUTIONS_ENABLE.getMatch());
+        if((INSTANCE == null && !watching) || forceRefresh) {
+            synchronized(Substitutions.class) {
+                if((INSTANCE == null && !watching) || forceRefresh) {
+                    setInstance(Substitutions.newInstance());
+                }
             }
         }
         return INSTANCE;
     }
 
+    static void setInstance(Substitutions substitutions) {
+        INSTANCE = substitutions;
+        if(substitutions != null && !enabled) {
+            log.warn("Substitution file was found, but substitutions are currently disabled via \"{}=false\"", ArgValue.SECURITY_SUBSTITUTIONS_ENABLE.getMatch());
+        }
+    }
+
+    /**
+     * Loads the default <code>substitutions.json</code> file now, then reloads it in the background whenever it changes.
+     */
+    public static synchronized void watch() {
+        if(watching) {
+            return;
+        }
+        // watch first, so a change made while loading isn't missed
+        watching = SubstitutionsWatcher.start(DEFAULT_SUBSTITUTIONS_PATH);
+        setInstance(Substitutions.newInstance());
+    }
+
     public static boolean areActive() {
         return Substitutions.getInstance() != null && enabled;
     }
@@ -324,6 +372,7 @@ public class Substitutions {
     private class Rule {
         private boolean caseSensitive;
         private JSONObject match, replace;
+        private Matcher matcher;
 
         Rule(JSONObject json) throws JSONException {
             JSONObject replaceJSON = json.optJSONObject("use");
@@ -338,6 +387,7 @@ public class Substitutions {
                 matchJSON.remove("caseSensitive");
                 sanitize(matchJSON);
                 match = matchJSON;
+                matcher = Matcher.compile(matchJSON, caseSensitive);
             }
 
             if(match == null || replace == null) {
@@ -0,0 +1,110 @@
+package qz.ws.substitutions;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codehaus.jettison.json.JSONException;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Reloads {@code substitutions.json} in the background whenever it changes, so rules can be edited without restarting.
+ * <p>
+ * A new file is parsed and validated on the watcher thread and only then replaces the active rules, while requests keep
+ * using whichever rules were active when they arrived. A file that fails to parse is logged and the previous rules are
+ * kept; deleting the file turns substitutions off.
+ */
+class SubstitutionsWatcher implements Runnable {
+    private static final Logger log = LogManager.getLogger(SubstitutionsWatcher.class);
+
+    // editors often save in several writes, wait for them to settle before reading
+    private static final long SETTLE_MILLIS = 250;
+
+    private final Path path;
+    private final WatchService watcher;
+
+    private SubstitutionsWatcher(Path path, WatchService watcher) {
+        this.path = path;
+        this.watcher = watcher;
+    }
+
+    /**
+     * Starts watching {@code path}'s directory on a daemon thread
+     *
+     * @return {@code false} if the directory can't be watched, such as when it doesn't exist
+     */
+    static boolean start(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        try {
+            WatchService watcher = directory.getFileSystem().newWatchService();
+            directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+            Thread thread = new Thread(new SubstitutionsWatcher(path, watcher), "substitutions-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            log.debug("Watching {} for changes", path);
+            return true;
+        }
+        catch(IOException | UnsupportedOperationException e) {
+            log.warn("Unable to watch {} for changes, substitutions will only load at startup: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                do {
+                    changed |= isChange(key);
+                    if (!key.reset()) {
+                        log.warn("Stopped watching {}, its directory is no longer accessible", path);
+                        return;
+                    }
+                } while((key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+
+                if (changed) {
+                    reload();
+                }
+            }
+        }
+        catch(InterruptedException | ClosedWatchServiceException ignore) {}
+        finally {
+            try { watcher.close(); } catch(IOException ignore) {}
+        }
+    }
+
+    private boolean isChange(WatchKey key) {
+        boolean changed = false;
+        for(WatchEvent<?> event : key.pollEvents()) {
+            // on overflow events were lost, so check the file regardless
+            changed |= event.kind() == OVERFLOW || path.getFileName().equals(event.context());
+        }
+        return changed;
+    }
+
+    private void reload() {
+        if (!Files.exists(path)) {
+            log.info("Substitutions file removed, substitutions are now inactive");
+            Substitutions.setInstance(null);
+            return;
+        }
+
+        try {
+            Substitutions.setInstance(new Substitutions(path));
+            log.info("Reloaded substitutions file {}", path);
+        }
+        catch(JSONException e) {
+            log.warn("Unable to parse updated substitutions file, keeping the previous rules", e);
+        }
+        catch(IOException e) {
+            log.warn("Unable to read updated substitutions file, keeping the previous rules: {}", e.getMessage());
+        }
+    }
+
+}
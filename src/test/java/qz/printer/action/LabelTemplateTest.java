@@ -0,0 +1,110 @@
+package qz.printer.action;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import qz.common.ByteArrayBuilder;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiles templates and merges records into them, checking the result is byte for byte what encoding the fully merged
+ * text gives
+ */
+class LabelTemplateTest {
+
+    private static final String LABEL = "^XA^FO20,20^FD{{name}}^FS^FO20,60^FD{{ sku }}^FS^PQ{{qty}}^XZ\n";
+
+    @Test
+    void findsFields() {
+        LabelTemplate template = LabelTemplate.compile("label.zpl", LABEL);
+        assertArrayEquals(new String[] {"name", "sku", "qty"}, template.getFields());
+        assertEquals(0, LabelTemplate.compile("plain", "^XA^XZ").getFields().length);
+    }
+
+    @Test
+    void rejectsUnclosedField() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> LabelTemplate.compile("label", "^XA^FD{{name^FS^XZ"));
+        assertTrue(e.getMessage().contains("unclosed"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> LabelTemplate.compile("label", "^FD{{name}}^FS^FD{{sku}"));
+    }
+
+    @Test
+    void rejectsInvalidField() {
+        for(String field : new String[] {"{{}}", "{{  }}", "{{first name}}", "{{name}}{{a/b}}", "{{{name}}}"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> LabelTemplate.compile("label", field), field);
+            assertTrue(e.getMessage().contains("invalid field"), e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsInvalidName() {
+        for(String name : new String[] {null, "", "../label", "a/b", ".hidden", "-label", "label name"}) {
+            assertFalse(LabelTemplate.isValidName(name), String.valueOf(name));
+            assertThrows(IllegalArgumentException.class, () -> LabelTemplate.compile(name, LABEL), String.valueOf(name));
+        }
+        assertTrue(LabelTemplate.isValidName("shipping_4x6.v2-zpl"));
+    }
+
+    @Test
+    void missingFieldIsNotNull() throws Exception {
+        LabelTemplate template = LabelTemplate.compile("label", LABEL);
+
+        JSONArray records = new JSONArray("[{ \"name\": null, \"sku\": \"A-1\", \"qty\": 2 }]");
+        assertMerged("^XA^FO20,20^FD^FS^FO20,60^FDA-1^FS^PQ2^XZ\n", template, records, "UTF-8");
+
+        JSONArray missing = new JSONArray("[{ \"name\": \"Widget\", \"qty\": 2 }]");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> template.merge(missing, "UTF-8", new ByteArrayBuilder()));
+        assertTrue(e.getMessage().contains("\"sku\""), e.getMessage());
+
+        JSONArray notObject = new JSONArray("[\"Widget\"]");
+        assertThrows(IllegalArgumentException.class, () -> template.merge(notObject, "UTF-8", new ByteArrayBuilder()));
+    }
+
+    @Test
+    void mergesEachRecord() throws Exception {
+        LabelTemplate template = LabelTemplate.compile("label", LABEL);
+        JSONArray records = new JSONArray("[" +
+                "{ \"name\": \"Widget\", \"sku\": \"A-1\", \"qty\": 2 }," +
+                "{ \"name\": \"Grüße\", \"sku\": \"\", \"qty\": 1, \"unused\": true }" +
+                "]");
+
+        for(String encoding : new String[] {"UTF-8", "IBM437", "ISO-8859-1"}) {
+            assertMerged("^XA^FO20,20^FDWidget^FS^FO20,60^FDA-1^FS^PQ2^XZ\n" +
+                                 "^XA^FO20,20^FDGrüße^FS^FO20,60^FD^FS^PQ1^XZ\n", template, records, encoding);
+        }
+    }
+
+    @Test
+    void shapesWholeRecords() throws Exception {
+        // the name is split across two fields, so its letters join across the field boundary
+        LabelTemplate template = LabelTemplate.compile("arabic", "^XA^FD{{first}}{{rest}} {{city}}^FS^XZ\n");
+        JSONArray records = new JSONArray("[" +
+                "{ \"first\": \"مح\", \"rest\": \"مد\", \"city\": \"القاهرة\" }," +
+                "{ \"first\": \"ع\", \"rest\": \"لي\", \"city\": null }" +
+                "]");
+
+        for(String encoding : new String[] {"IBM864", "cp864", "ibm-864"}) {
+            assertMerged("^XA^FDمحمد القاهرة^FS^XZ\n" + "^XA^FDعلي ^FS^XZ\n", template, records, encoding);
+        }
+    }
+
+    /**
+     * Checks merging {@code records} gives the same bytes as encoding each record's expected text in one piece
+     *
+     * @param expected The merged text, one line per record
+     */
+    private static void assertMerged(String expected, LabelTemplate template, JSONArray records, String encoding) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for(String record : expected.split("(?<=\n)")) {
+            bytes.write(PrintRaw.getBytes(record, encoding));
+        }
+
+        ByteArrayBuilder out = new ByteArrayBuilder();
+        template.merge(records, encoding, out);
+        assertArrayEquals(bytes.toByteArray(), out.getByteArray(), encoding);
+    }
+}
@@ -0,0 +1,215 @@
+package qz.printer.action;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import qz.common.ByteArrayBuilder;
+import qz.printer.action.raw.MonochromeImage;
+import qz.printer.action.raw.ZplGraphicEncoder;
+import qz.printer.status.Status;
+import qz.printer.status.job.NativeJobStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sends jobs with stored graphics to a fake 9100 printer, checking what's downloaded, recalled and deleted
+ */
+class ZplGraphicCacheTest {
+
+    private ServerSocket printer;
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final StringBuffer received = new StringBuffer();
+    private int jobs;
+
+    @BeforeEach
+    void setup() throws IOException {
+        printer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "fake-9100");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        System.setProperty("printer.host.connections", "1");
+        System.setProperty("printer.host.idle", "60000"); // only reconnect when the printer drops the connection
+        System.setProperty("printer.graphic.memory", "1"); // room for two 512 byte graphics
+        HostConnectionPool.close(); // picks up the properties on next use
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        HostConnectionPool.close();
+        System.clearProperty("printer.host.connections");
+        System.clearProperty("printer.host.idle");
+        System.clearProperty("printer.graphic.memory");
+        printer.close();
+    }
+
+    @Test
+    void downloadsOnceThenRecalls() throws IOException {
+        ZplGraphicCache.Graphic logo = graphic(1);
+
+        String first = print(logo);
+        assertTrue(first.contains("~DG" + logo.getName() + ".GRF,"), "first job downloads the graphic");
+        assertTrue(first.contains(logo.getRecall()));
+
+        String second = print(logo);
+        assertFalse(second.contains("~DG"), "later jobs only recall it");
+        assertTrue(second.contains(logo.getRecall()));
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    void deletesLeastRecentlyUsed() throws IOException {
+        ZplGraphicCache.Graphic a = graphic(1);
+        ZplGraphicCache.Graphic b = graphic(2);
+        ZplGraphicCache.Graphic c = graphic(3);
+
+        print(a);
+        print(b);
+        print(a); // b is now the least recently used
+
+        String job = print(c);
+        assertTrue(job.contains("^ID" + b.getName() + ".GRF"), "least recently used graphic is deleted");
+        assertFalse(job.contains("^ID" + a.getName() + ".GRF"));
+        assertTrue(job.indexOf("^ID") < job.indexOf("~DG" + c.getName()), "deleted before the download needing the room");
+
+        assertFalse(print(a).contains("~DG"), "kept graphic is still recalled");
+    }
+
+    @Test
+    void downloadsAgainAfterReconnect() throws IOException {
+        ZplGraphicCache.Graphic logo = graphic(1);
+        print(logo);
+
+        // printer restarted, its memory is gone
+        for(Socket connection : connections) {
+            connection.close();
+        }
+
+        String job = print(logo);
+        assertTrue(job.contains("~DG" + logo.getName() + ".GRF,"), "new connection downloads the graphic again");
+        assertEquals(2, connections.size());
+    }
+
+    @Test
+    void downloadsAgainAfterFailure() throws IOException {
+        ZplGraphicCache.Graphic logo = graphic(1);
+        print(logo);
+
+        // another job to the same printer failed part way through
+        String target = ZplGraphicCache.hostTarget(printer.getInetAddress().getHostAddress(), printer.getLocalPort());
+        ZplGraphicCache.prepare(target, List.of(logo)).complete(false);
+
+        assertTrue(print(logo).contains("~DG" + logo.getName() + ".GRF,"), "graphics are downloaded again after a failed job");
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    void replacesGraphicWithSameName() throws IOException {
+        // names only keep part of the hash, so enough images will share one
+        Map<String,ZplGraphicCache.Graphic> named = new HashMap<>();
+        ZplGraphicCache.Graphic first, second;
+        for(int i = 0; ; i++) {
+            MonochromeImage image = new MonochromeImage(32, 1);
+            image.getData()[0] = (byte)(i >> 24);
+            image.getData()[1] = (byte)(i >> 16);
+            image.getData()[2] = (byte)(i >> 8);
+            image.getData()[3] = (byte)i;
+            second = ZplGraphicCache.graphic(image, ZplGraphicEncoder.Compression.NONE);
+            first = named.putIfAbsent(second.getName(), second);
+            if (first != null) { break; }
+        }
+        assertTrue(first.collides(second));
+        assertFalse(first.collides(first));
+
+        print(first);
+        String job = print(second);
+        assertTrue(job.contains("~DG" + second.getName() + ".GRF,"), "different image with the same name is downloaded over it");
+        assertTrue(print(first).contains("~DG" + first.getName() + ".GRF,"));
+    }
+
+    @Test
+    void forgetsGraphicsAfterCancelledJob() {
+        ZplGraphicCache.Graphic logo = graphic(1);
+        String target = ZplGraphicCache.printerTarget("Spooled");
+        ZplGraphicCache.prepare(target, List.of(logo)).complete(true); // accepted by the spooler
+
+        ZplGraphicCache.Batch batch = ZplGraphicCache.prepare(target, List.of(logo));
+        assertTrue(batch.isEmpty());
+        batch.complete(true);
+
+        ZplGraphicCache.statusChanged(new Status(NativeJobStatus.CANCELED, "Spooled", null, 1, "label"));
+        batch = ZplGraphicCache.prepare(target, List.of(logo));
+        assertFalse(batch.isEmpty(), "cancelled job may never have downloaded it");
+        batch.complete(false);
+    }
+
+    /**
+     * Prints a label recalling each of {@code graphics}
+     *
+     * @return Everything the printer received for the job
+     */
+    private String print(ZplGraphicCache.Graphic... graphics) throws IOException {
+        String end = "job " + ++jobs + "^FS^XZ";
+        StringBuilder label = new StringBuilder("^XA");
+        for(ZplGraphicCache.Graphic graphic : graphics) {
+            label.append("^FO0,0").append(graphic.getRecall()).append("^FS");
+        }
+        label.append("^FO0,100^FD").append(end);
+
+        int start = received.length();
+        ByteArrayBuilder page = new ByteArrayBuilder().append(label.toString(), StandardCharsets.US_ASCII);
+        PrintRaw.printToHost(printer.getInetAddress().getHostAddress(), printer.getLocalPort(), Arrays.asList(graphics), List.of(page), 1);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(received.indexOf(end, start) == -1) {
+            assertTrue(System.currentTimeMillis() < deadline, "printer never received the job");
+            Thread.onSpinWait();
+        }
+        return received.substring(start);
+    }
+
+    private static ZplGraphicCache.Graphic graphic(int shade) {
+        MonochromeImage image = new MonochromeImage(64, 64);
+        Arrays.fill(image.getData(), (byte)shade);
+        return ZplGraphicCache.graphic(image, ZplGraphicEncoder.Compression.ASCII);
+    }
+
+    /**
+     * Accepts every connection and keeps what's sent, like a printer with an endless buffer
+     */
+    private void accept() {
+        while(!printer.isClosed()) {
+            try {
+                Socket socket = printer.accept();
+                connections.add(socket);
+                Thread drain = new Thread(() -> {
+                    byte[] buffer = new byte[8192];
+                    try(Socket s = socket; InputStream in = s.getInputStream()) {
+                        int len;
+                        while((len = in.read(buffer)) != -1) {
+                            received.append(new String(buffer, 0, len, StandardCharsets.ISO_8859_1));
+                        }
+                    }
+                    catch(IOException ignore) {}
+                }, "fake-9100-drain");
+                drain.setDaemon(true);
+                drain.start();
+            }
+            catch(IOException ignore) {}
+        }
+    }
+
+}
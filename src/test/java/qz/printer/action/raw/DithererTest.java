@@ -0,0 +1,91 @@
+package qz.printer.action.raw;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dithers images large enough to be split across threads, checking the result matches dithering in one pass
+ */
+class DithererTest {
+
+    // a little over the threshold, with a height that doesn't fill the last band
+    private static final int WIDTH = 611;
+    private static final int HEIGHT = Ditherer.PARALLEL_THRESHOLD / WIDTH + 37;
+
+    @Test
+    void floydSteinbergMatchesSequential() {
+        assertParallelMatches(Dither.FLOYD_STEINBERG);
+    }
+
+    @Test
+    void atkinsonMatchesSequential() {
+        assertParallelMatches(Dither.ATKINSON);
+    }
+
+    @Test
+    void bayerMatchesSequential() {
+        assertParallelMatches(Dither.BAYER);
+    }
+
+    @Test
+    void blueNoiseMatchesSequential() {
+        assertParallelMatches(Dither.BLUE_NOISE);
+    }
+
+    @Test
+    void orderedHasNoSeams() {
+        // a flat gray repeats the threshold pattern exactly, including across band boundaries
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixels = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, (byte)100);
+
+        for(Dither dither : new Dither[] {Dither.BAYER, Dither.BLUE_NOISE}) {
+            MonochromeImage mono = Ditherer.dither(image, dither, false, true);
+            int size = dither.getThresholdSize();
+            int perRow = mono.getBytesPerRow();
+            byte[] data = mono.getData();
+            for(int y = size; y < HEIGHT; y++) {
+                int row = y * perRow, tile = (y % size) * perRow;
+                assertArrayEquals(Arrays.copyOfRange(data, tile, tile + perRow), Arrays.copyOfRange(data, row, row + perRow),
+                                  dither + " row " + y);
+            }
+        }
+    }
+
+    private static void assertParallelMatches(Dither dither) {
+        for(BufferedImage image : new BufferedImage[] {photo(BufferedImage.TYPE_INT_ARGB), photo(BufferedImage.TYPE_BYTE_GRAY)}) {
+            for(boolean invert : new boolean[] {false, true}) {
+                byte[] expected = Ditherer.dither(image, dither, invert, false).getData();
+                // rows race each other differently on every run
+                for(int run = 0; run < 5; run++) {
+                    assertArrayEquals(expected, Ditherer.dither(image, dither, invert, true).getData(),
+                                      dither + ", type " + image.getType() + ", invert " + invert + ", run " + run);
+                }
+            }
+        }
+    }
+
+    /**
+     * Smooth gradients with noise and some transparency, so error carries far across rows
+     */
+    private static BufferedImage photo(int type) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(WIDTH * 31 + type);
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                int r = (x * 255 / WIDTH + random.nextInt(16)) & 0xFF;
+                int g = (y * 255 / HEIGHT) & 0xFF;
+                int b = ((x + y) * 7) & 0xFF;
+                int a = x < WIDTH / 8? (y * 255 / HEIGHT):0xFF;
+                image.setRGB(x, y, a << 24 | r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+}
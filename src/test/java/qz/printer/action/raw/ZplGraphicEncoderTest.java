@@ -0,0 +1,223 @@
+package qz.printer.action.raw;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Decodes each {@code ^GFA} compression back to the bitmap it was encoded from
+ */
+class ZplGraphicEncoderTest {
+
+    @Test
+    void noneRoundTrips() {
+        MonochromeImage image = pattern(64, 24);
+        assertArrayEquals(image.getData(), decodeHex(data(image, ZplGraphicEncoder.Compression.NONE)));
+    }
+
+    @Test
+    void asciiRoundTrips() {
+        MonochromeImage image = pattern(64, 24);
+        assertArrayEquals(image.getData(), decodeAscii(data(image, ZplGraphicEncoder.Compression.ASCII), image.getBytesPerRow()));
+    }
+
+    @Test
+    void asciiRepeatCounts() {
+        // runs of 20, 400 and 450 hex digits, each followed by a different digit so no row ends in a run
+        MonochromeImage image = new MonochromeImage(8 * 448, 3);
+        int perRow = image.getBytesPerRow();
+        fillRow(image, 0, 10, (byte)0xAA);
+        fillRow(image, 1, 200, (byte)0xAA);
+        fillRow(image, 2, 225, (byte)0xAA);
+        for(int y = 0; y < 3; y++) {
+            Arrays.fill(image.getData(), y * perRow + 225, (y + 1) * perRow, (byte)0x12);
+        }
+        for(int y = 0; y < 2; y++) {
+            Arrays.fill(image.getData(), y * perRow + (y == 0? 10:200), y * perRow + 225, (byte)0x34);
+        }
+
+        String ascii = data(image, ZplGraphicEncoder.Compression.ASCII);
+        assertTrue(ascii.startsWith("gA"), "run of 20 is a single multiple of 20");
+        assertTrue(ascii.contains("zA"), "run of 400 is the largest single count");
+        assertTrue(ascii.contains("zYAgQA"), "run of 450 is split into 419 and 31");
+        assertArrayEquals(image.getData(), decodeAscii(ascii, perRow));
+    }
+
+    @Test
+    void asciiRowEndings() {
+        MonochromeImage image = new MonochromeImage(64, 4);
+        int perRow = image.getBytesPerRow();
+        byte[] data = image.getData();
+        data[0] = 0x5A; // rest of row 0 is white
+        data[perRow] = 0x5A;
+        Arrays.fill(data, perRow + 1, perRow * 2, (byte)0xFF); // rest of row 1 is black
+        System.arraycopy(data, perRow, data, perRow * 2, perRow); // row 2 repeats row 1
+        System.arraycopy(data, perRow, data, perRow * 3, perRow); // and so does row 3
+
+        String ascii = data(image, ZplGraphicEncoder.Compression.ASCII);
+        assertEquals("5A,5A!::", ascii);
+        assertArrayEquals(data, decodeAscii(ascii, perRow));
+    }
+
+    @Test
+    void base64RoundTrips() {
+        MonochromeImage image = pattern(203, 40);
+        assertArrayEquals(image.getData(), decodeBase64(data(image, ZplGraphicEncoder.Compression.B64), ":B64:"));
+    }
+
+    @Test
+    void z64RoundTrips() throws DataFormatException {
+        MonochromeImage image = pattern(203, 40);
+        assertArrayEquals(image.getData(), inflate(decodeBase64(data(image, ZplGraphicEncoder.Compression.Z64), ":Z64:")));
+    }
+
+    @Test
+    void crcMatchesCcittXmodem() {
+        // standard check value for CRC-16/XMODEM
+        assertEquals(0x31C3, ZplGraphicEncoder.crc16("123456789"));
+        assertEquals(0, ZplGraphicEncoder.crc16(""));
+    }
+
+    @Test
+    void corruptedBase64FailsCrc() {
+        String data = data(pattern(64, 8), ZplGraphicEncoder.Compression.B64);
+        int split = data.lastIndexOf(':');
+        String body = data.substring(":B64:".length(), split);
+        String corrupted = (body.charAt(0) == 'A'? 'B':'A') + body.substring(1);
+        assertNotEquals(Integer.parseInt(data.substring(split + 1), 16), ZplGraphicEncoder.crc16(corrupted));
+    }
+
+    @Test
+    void downloadUsesMatchingCommand() {
+        MonochromeImage image = pattern(16, 2);
+        assertTrue(ZplGraphicEncoder.encodeDownload(image, ZplGraphicEncoder.Compression.ASCII, "R:LOGO").toString().startsWith("~DGR:LOGO.GRF,4,2,"));
+        assertTrue(ZplGraphicEncoder.encodeDownload(image, ZplGraphicEncoder.Compression.Z64, "R:LOGO").toString().startsWith("~DYR:LOGO,A,G,4,2,:Z64:"));
+    }
+
+    /**
+     * Repeated solid rows, blank rows and varied bytes, so every encoding sees runs, row endings and repeated rows
+     */
+    private static MonochromeImage pattern(int width, int height) {
+        MonochromeImage image = new MonochromeImage(width, height);
+        byte[] data = image.getData();
+        int perRow = image.getBytesPerRow();
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < perRow; x++) {
+                switch(y % 6) {
+                    case 0:
+                    case 1: data[y * perRow + x] = (byte)0xFF; break;
+                    case 2: data[y * perRow + x] = 0; break;
+                    default: data[y * perRow + x] = (byte)(((x + y) % 5 == 0)? 0xF0:(x * 7 + y));
+                }
+            }
+            if (width % 8 != 0) {
+                data[(y + 1) * perRow - 1] &= (byte)(0xFF << (8 - width % 8));
+            }
+        }
+        return image;
+    }
+
+    private static void fillRow(MonochromeImage image, int y, int bytes, byte value) {
+        int offset = y * image.getBytesPerRow();
+        Arrays.fill(image.getData(), offset, offset + bytes, value);
+    }
+
+    /**
+     * @return The data after the {@code ^GFA,total,total,perRow,} header
+     */
+    private static String data(MonochromeImage image, ZplGraphicEncoder.Compression compression) {
+        String zpl = ZplGraphicEncoder.encode(image, compression).toString();
+        assertTrue(zpl.startsWith("^GFA," + image.getData().length + "," + image.getData().length + "," + image.getBytesPerRow() + ","));
+        int start = 0;
+        for(int commas = 0; commas < 4; commas++) {
+            start = zpl.indexOf(',', start) + 1;
+        }
+        return zpl.substring(start);
+    }
+
+    private static byte[] decodeHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Expands Zebra's compressed ASCII hex as a printer would
+     */
+    private static byte[] decodeAscii(String ascii, int perRow) {
+        int rowChars = perRow * 2;
+        StringBuilder hex = new StringBuilder();
+        String previous = null;
+        StringBuilder row = new StringBuilder();
+        int repeat = 0;
+
+        for(char c : ascii.toCharArray()) {
+            if (c >= 'G' && c <= 'Y') {
+                repeat += c - 'G' + 1;
+            } else if (c >= 'g' && c <= 'z') {
+                repeat += (c - 'g' + 1) * 20;
+            } else if (c == ',' || c == '!') {
+                assertEquals(0, repeat, "row ending after a repeat count");
+                while(row.length() < rowChars) { row.append(c == ','? '0':'F'); }
+            } else if (c == ':') {
+                assertNotNull(previous, "first row can't repeat");
+                assertEquals(0, row.length(), "repeated row in the middle of a row");
+                row.append(previous);
+            } else {
+                for(int i = 0; i < Math.max(1, repeat); i++) { row.append(c); }
+                repeat = 0;
+            }
+
+            assertTrue(row.length() <= rowChars, "row overflows");
+            if (row.length() == rowChars) {
+                previous = row.toString();
+                hex.append(previous);
+                row.setLength(0);
+            }
+        }
+        assertEquals(0, row.length(), "incomplete last row");
+
+        return decodeHex(hex.toString());
+    }
+
+    /**
+     * Checks the CRC following the base64 data and decodes it
+     */
+    private static byte[] decodeBase64(String data, String prefix) {
+        assertTrue(data.startsWith(prefix));
+        int split = data.lastIndexOf(':');
+        String encoded = data.substring(prefix.length(), split);
+        String crc = data.substring(split + 1);
+
+        assertEquals(4, crc.length());
+        assertEquals(Integer.parseInt(crc, 16), ZplGraphicEncoder.crc16(encoded));
+        return Base64.getDecoder().decode(encoded);
+    }
+
+    private static byte[] inflate(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            while(!inflater.finished()) {
+                int len = inflater.inflate(buffer);
+                if (len == 0 && inflater.needsInput()) { fail("truncated zlib data"); }
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+}
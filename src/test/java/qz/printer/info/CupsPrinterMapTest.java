@@ -0,0 +1,91 @@
+package qz.printer.info;
+
+import org.junit.jupiter.api.Test;
+
+import qz.printer.status.CupsUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Falls back to {@code lpstat} when CUPS can't be asked over IPP
+ */
+class CupsPrinterMapTest {
+
+    private static final String LPSTAT = "printer Zebra is idle.  enabled since Mon 01 Jan 2024 09:00:00 AM\n" +
+            "\tForm mounted:\n" +
+            "\tContent types: any\n" +
+            "\tDescription: Zebra ZP 450\n" +
+            "\tAlerts: none\n" +
+            "\tInterface: /etc/cups/ppd/Zebra.ppd\n" +
+            "printer Office is idle.  enabled since Mon 01 Jan 2024 09:00:00 AM\n" +
+            "\tDescription: Office Laser\n" +
+            "\tInterface: /etc/cups/ppd/Office.ppd\n";
+
+    @Test
+    void fallsBackToLpstat() {
+        CupsPrinterMap map = new CupsPrinterMap() {
+            @Override
+            ArrayList<CupsUtils.PrinterAttributes> getPrinterAttributes() throws IOException {
+                throw new IOException("CUPS-Get-Printers failed");
+            }
+
+            @Override
+            String lpstat() {
+                return LPSTAT;
+            }
+        };
+
+        LinkedHashMap<NativePrinter, CupsUtils.PrinterAttributes> printers = map.findPrinters();
+        List<NativePrinter> found = new ArrayList<>(printers.keySet());
+        assertEquals(2, found.size());
+
+        assertEquals("Zebra", found.get(0).getPrinterId());
+        assertEquals("Zebra ZP 450", found.get(0).getDescription().value());
+        assertEquals("/etc/cups/ppd/Zebra.ppd", found.get(0).getDriverFile().value());
+        assertNull(printers.get(found.get(0)), "lpstat printers have no IPP attributes");
+
+        assertEquals("Office", found.get(1).getPrinterId());
+        assertEquals("Office Laser", found.get(1).getDescription().value());
+        assertEquals("/etc/cups/ppd/Office.ppd", found.get(1).getDriverFile().value());
+    }
+
+    @Test
+    void fallsBackWithoutLibcups() {
+        CupsPrinterMap map = new CupsPrinterMap() {
+            @Override
+            ArrayList<CupsUtils.PrinterAttributes> getPrinterAttributes() {
+                throw new UnsatisfiedLinkError("Unable to load library 'cups'");
+            }
+
+            @Override
+            String lpstat() {
+                return LPSTAT;
+            }
+        };
+
+        assertEquals(2, map.findPrinters().size());
+    }
+
+    @Test
+    void skipsLpstatWhenIppAnswers() {
+        CupsPrinterMap map = new CupsPrinterMap() {
+            @Override
+            ArrayList<CupsUtils.PrinterAttributes> getPrinterAttributes() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            String lpstat() {
+                return fail("lpstat should not run when IPP answers");
+            }
+        };
+
+        assertTrue(map.findPrinters().isEmpty());
+    }
+
+}
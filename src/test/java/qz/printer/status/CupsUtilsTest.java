@@ -0,0 +1,235 @@
+package qz.printer.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.print.attribute.standard.PrinterResolution;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Lists printers from a stub IPP server answering CUPS-Get-Printers with canned attributes
+ */
+class CupsUtilsTest {
+
+    private ServerSocket server;
+    private volatile int status;
+    private volatile byte[] printers;
+
+    @BeforeEach
+    void setup() throws IOException {
+        try {
+            Cups.INSTANCE.ippPort();
+        }
+        catch(LinkageError e) {
+            assumeTrue(false, "libcups is not available");
+        }
+
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "stub-ipp");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        CupsUtils.connect(server.getInetAddress().getHostAddress(), server.getLocalPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        CupsUtils.freeIppObjs();
+        if (server != null) { server.close(); }
+    }
+
+    @Test
+    void listsCannedPrinters() throws IOException {
+        status = 0x0000; // successful-ok
+        printers = concat(
+                group(0x04,
+                      attribute(0x42, "printer-name", "Zebra"),
+                      attribute(0x41, "printer-info", "Zebra ZP 450"),
+                      attribute(0x45, "device-uri", "socket://192.168.1.20:9100"),
+                      attribute(0x41, "printer-make-and-model", "Zebra ZPL Label Printer"),
+                      attribute(0x23, "printer-state", integer(3)),
+                      attribute(0x32, "printer-resolution-default", resolution(203, 203, 3)),
+                      attribute(0x32, "printer-resolution-supported", resolution(203, 203, 3), resolution(300, 300, 3))),
+                group(0x04,
+                      attribute(0x42, "printer-name", "Office"),
+                      attribute(0x41, "printer-info", "Office Laser"),
+                      attribute(0x45, "device-uri", "ipp://office.local/ipp/print"),
+                      attribute(0x23, "printer-state", integer(5)),
+                      attribute(0x32, "printer-resolution-supported", resolution(118, 118, 4))));
+
+        ArrayList<CupsUtils.PrinterAttributes> attributes = CupsUtils.getPrinterAttributes();
+        assertEquals(2, attributes.size());
+
+        CupsUtils.PrinterAttributes zebra = attributes.get(0);
+        assertEquals("Zebra", zebra.getName());
+        assertEquals("Zebra ZP 450", zebra.getInfo());
+        assertEquals("socket://192.168.1.20:9100", zebra.getDeviceUri());
+        assertEquals("Zebra ZPL Label Printer", zebra.getMakeAndModel());
+        assertEquals("idle", zebra.getState());
+        assertEquals(new PrinterResolution(203, 203, PrinterResolution.DPI), zebra.getDefaultResolution());
+        assertEquals(List.of(new PrinterResolution(203, 203, PrinterResolution.DPI), new PrinterResolution(300, 300, PrinterResolution.DPI)),
+                     zebra.getResolutions());
+
+        CupsUtils.PrinterAttributes office = attributes.get(1);
+        assertEquals("Office", office.getName());
+        assertEquals("stopped", office.getState());
+        assertNull(office.getDefaultResolution());
+        assertEquals(List.of(new PrinterResolution(118, 118, PrinterResolution.DPCM)), office.getResolutions());
+    }
+
+    @Test
+    void errorStatusFails() {
+        status = 0x0400; // client-error-bad-request
+        printers = new byte[0];
+        assertThrows(IOException.class, CupsUtils::getPrinterAttributes);
+    }
+
+    @Test
+    void httpErrorFails() {
+        status = -1; // answered with a 500 rather than an IPP response
+        printers = new byte[0];
+        assertThrows(IOException.class, CupsUtils::getPrinterAttributes);
+    }
+
+    /**
+     * Answers every request on a connection with the canned response, keeping it open like cupsd would
+     */
+    private void accept() {
+        while(!server.isClosed()) {
+            try(Socket socket = server.accept()) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                byte[] request;
+                while((request = readRequest(in, out)) != null) {
+                    if (status < 0) {
+                        out.write("HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    } else {
+                        byte[] body = response(request);
+                        out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/ipp\r\nContent-Length: " + body.length + "\r\n\r\n")
+                                          .getBytes(StandardCharsets.US_ASCII));
+                        out.write(body);
+                    }
+                    out.flush();
+                }
+            }
+            catch(IOException ignore) {}
+        }
+    }
+
+    /**
+     * @return The IPP body of the next HTTP request, or {@code null} once the client disconnects
+     */
+    private static byte[] readRequest(InputStream in, OutputStream out) throws IOException {
+        String line = readLine(in);
+        if (line == null) { return null; }
+
+        int length = 0;
+        boolean chunked = false;
+        while((line = readLine(in)) != null && !line.isEmpty()) {
+            String header = line.toLowerCase(Locale.ENGLISH);
+            if (header.startsWith("content-length:")) {
+                length = Integer.parseInt(header.substring(header.indexOf(':') + 1).trim());
+            } else if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+                chunked = true;
+            } else if (header.startsWith("expect:") && header.contains("100-continue")) {
+                out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (chunked) {
+            int size;
+            while((size = Integer.parseInt(readLine(in).split(";")[0].trim(), 16)) > 0) {
+                body.write(in.readNBytes(size));
+                readLine(in);
+            }
+            readLine(in);
+        } else {
+            body.write(in.readNBytes(length));
+        }
+        return body.toByteArray();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') { line.append((char)c); }
+        }
+        return c == -1 && line.length() == 0? null:line.toString();
+    }
+
+    private byte[] response(byte[] request) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(1); // IPP/1.1
+        out.write(1);
+        out.write(status >> 8);
+        out.write(status);
+        out.write(request, 4, 4); // same request-id
+        out.writeBytes(group(0x01,
+                             attribute(0x47, "attributes-charset", "utf-8"),
+                             attribute(0x48, "attributes-natural-language", "en")));
+        out.writeBytes(printers);
+        out.write(0x03); // end-of-attributes
+        return out.toByteArray();
+    }
+
+    private static byte[] group(int tag, byte[]... attributes) {
+        byte[] group = concat(attributes);
+        byte[] tagged = new byte[group.length + 1];
+        tagged[0] = (byte)tag;
+        System.arraycopy(group, 0, tagged, 1, group.length);
+        return tagged;
+    }
+
+    private static byte[] attribute(int tag, String name, String value) {
+        return attribute(tag, name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Encodes an attribute, additional values follow with an empty name
+     */
+    private static byte[] attribute(int tag, String name, byte[]... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for(int i = 0; i < values.length; i++) {
+            byte[] encodedName = i == 0? name.getBytes(StandardCharsets.US_ASCII):new byte[0];
+            out.write(tag);
+            out.write(encodedName.length >> 8);
+            out.write(encodedName.length);
+            out.writeBytes(encodedName);
+            out.write(values[i].length >> 8);
+            out.write(values[i].length);
+            out.writeBytes(values[i]);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] integer(int value) {
+        return new byte[] {(byte)(value >> 24), (byte)(value >> 16), (byte)(value >> 8), (byte)value};
+    }
+
+    private static byte[] resolution(int cross, int feed, int units) {
+        return concat(integer(cross), integer(feed), new byte[] {(byte)units});
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for(byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,116 @@
+package qz.ws.substitutions;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs requests through both the indexed rule lookup and the original search of every rule, which must agree
+ */
+class SubstitutionsTest {
+
+    @Test
+    void numbersMatchStrings() throws JSONException {
+        Substitutions rules = new Substitutions("[" +
+                "{ \"for\": { \"options\": { \"density\": \"2\" } }, \"use\": { \"options\": { \"colorType\": \"grayscale\" } } }," +
+                "{ \"for\": { \"options\": { \"density\": 300 } }, \"use\": { \"options\": { \"interpolation\": \"bicubic\" } } }," +
+                "{ \"for\": { \"options\": { \"margins\": 0.25 } }, \"use\": { \"options\": { \"scaleContent\": false } } }" +
+                "]");
+
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { \"density\": 2 } } }", "grayscale");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { \"density\": \"2.0\" } } }", null);
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { \"density\": \"300\" } } }", "bicubic");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { \"density\": 300.0 } } }", "bicubic");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { \"margins\": \".25\" } } }", "scaleContent");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { \"density\": \"two\" } } }", null);
+    }
+
+    @Test
+    void nullIsNotMissing() throws JSONException {
+        Substitutions rules = new Substitutions("[" +
+                "{ \"for\": { \"printer\": null }, \"use\": { \"printer\": \"Fallback\" } }," +
+                "{ \"for\": { \"options\": { \"jobName\": \"NULL\" } }, \"use\": { \"options\": { \"jobName\": \"Untitled\" } } }" +
+                "]");
+
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"printer\": { \"name\": null } } }", "Fallback");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"printer\": { \"name\": \"null\" } } }", "Fallback");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"printer\": { } } }", null);
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { \"jobName\": null } } }", "Untitled");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"options\": { } } }", null);
+    }
+
+    @Test
+    void singleElementArrays() throws JSONException {
+        Substitutions rules = new Substitutions("[" +
+                "{ \"for\": { \"data\": { \"format\": \"pdf\" } }, \"use\": { \"options\": { \"rasterize\": true } } }," +
+                "{ \"for\": { \"data\": [{ \"flavor\": \"base64\" }] }, \"use\": { \"options\": { \"altPrinting\": true } } }," +
+                "{ \"for\": { \"data\": [\"^XA\"] }, \"use\": { \"options\": { \"encoding\": \"UTF-8\" } } }" +
+                "]");
+
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"data\": [{ \"format\": \"image\" }, { \"format\": \"PDF\" }] } }", "rasterize");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"data\": [{ \"format\": \"image\" }] } }", null);
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"data\": [{ \"flavor\": \"BASE64\", \"format\": \"pdf\" }] } }", "altPrinting");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"data\": [\"^xa\", \"^XZ\"] } }", "UTF-8");
+    }
+
+    @Test
+    void plainValuesCompareAsText() throws JSONException {
+        Substitutions rules = new Substitutions("[" +
+                "{ \"for\": { \"data\": [\"^XA\"] }, \"use\": { \"options\": { \"encoding\": \"UTF-8\" } } }," +
+                "{ \"for\": { \"printer\": \"zebra\" }, \"use\": { \"options\": { \"density\": 203 } } }" +
+                "]");
+
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"data\": \"[\\\"^XA\\\"]\" } }", "UTF-8");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"data\": \"^XA\" } }", null);
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"printer\": \"{\\\"name\\\":\\\"Zebra\\\"}\" } }", "203");
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"printer\": null } }", null);
+    }
+
+    @Test
+    void callScopedRules() throws JSONException {
+        Substitutions rules = new Substitutions("[" +
+                "{ \"for\": { \"call\": \"printers.find\", \"query\": \"zebra\" }, \"use\": { \"query\": \"ZDesigner\" } }," +
+                "{ \"for\": { \"call\": \"print\", \"printer\": \"zebra\" }, \"use\": { \"printer\": \"ZDesigner\" } }," +
+                "{ \"for\": { \"printer\": \"ZDesigner\" }, \"use\": { \"options\": { \"density\": 203 } } }" +
+                "]");
+
+        assertAgree(rules, "{ \"call\": \"PRINTERS.FIND\", \"params\": { \"query\": \"Zebra\" } }", "ZDesigner");
+        assertAgree(rules, "{ \"call\": \"printers.find\", \"params\": { \"printer\": { \"name\": \"zebra\" } } }", null);
+        assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"printer\": { \"name\": \"Zebra\" } } }", "203");
+        assertAgree(rules, "{ \"params\": { \"printer\": { \"name\": \"zebra\" } } }", null);
+    }
+
+    @Test
+    void earlierSubstitutionsMatchLaterRules() throws JSONException {
+        Substitutions rules = new Substitutions("[" +
+                "{ \"for\": { \"printer\": \"Label\" }, \"use\": { \"options\": { \"jobName\": \"labels\" } } }," +
+                "{ \"for\": { \"printer\": \"Old Label\" }, \"use\": { \"printer\": \"Label\" } }," +
+                "{ \"for\": { \"printer\": \"Label\" }, \"use\": { \"options\": { \"density\": 8 } } }," +
+                "{ \"for\": { \"options\": { \"density\": \"8\" } }, \"use\": { \"data\": [{ \"flavor\": \"plain\" }] } }," +
+                "{ \"for\": { \"data\": [{ \"flavor\": \"plain\" }] }, \"use\": { \"options\": { \"encoding\": \"IBM437\" } } }" +
+                "]");
+
+        JSONObject request = assertAgree(rules, "{ \"call\": \"print\", \"params\": { \"printer\": { \"name\": \"old label\" }, \"data\": [{ \"flavor\": \"base64\" }] } }", "IBM437");
+        // the first rule was checked before the printer was renamed
+        assertFalse(request.toString().contains("\"labels\""));
+    }
+
+    /**
+     * Runs {@code request} through both paths, checking they agree and, if not {@code null}, that {@code expected} was
+     * substituted in
+     */
+    private static JSONObject assertAgree(Substitutions rules, String request, String expected) throws JSONException {
+        JSONObject indexed = rules.replace(new JSONObject(request));
+        JSONObject unindexed = rules.replaceUnindexed(new JSONObject(request));
+
+        assertEquals(unindexed.toString(), indexed.toString(), request);
+        if (expected == null) {
+            assertEquals(new JSONObject(request).toString(), indexed.toString(), "no rule should match " + request);
+        } else {
+            assertTrue(indexed.toString().contains(expected), expected + " should be substituted into " + request);
+        }
+        return indexed;
+    }
+}